@@ -0,0 +1,269 @@
+package world.bentobox.upgrades;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.EntityType;
+import org.mockito.Answers;
+
+import world.bentobox.bentobox.BentoBox;
+import world.bentobox.bentobox.api.addons.Addon;
+import world.bentobox.bentobox.api.addons.AddonDescription;
+import world.bentobox.bentobox.api.addons.GameModeAddon;
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.bentobox.hooks.VaultHook;
+import world.bentobox.bentobox.managers.IslandWorldManager;
+import world.bentobox.level.Level;
+import world.bentobox.upgrades.api.Upgrade;
+import world.bentobox.upgrades.config.Settings;
+import world.bentobox.upgrades.dataobjects.UpgradesData;
+import world.bentobox.upgrades.metrics.MetricsRegistry;
+import world.bentobox.upgrades.metrics.SlowOperationWatchdog;
+import world.bentobox.upgrades.upgrades.BlockLimitsUpgrade;
+import world.bentobox.upgrades.upgrades.CommandUpgrade;
+import world.bentobox.upgrades.upgrades.EntityGroupLimitsUpgrade;
+import world.bentobox.upgrades.upgrades.EntityLimitsUpgrade;
+import world.bentobox.upgrades.upgrades.RangeUpgrade;
+
+/**
+ * Lightweight stand-ins for BentoBox, Level and Vault shared by the benchmarks.
+ *
+ * It generates a config.yml with the requested number of tier entries spread
+ * over every upgrade type (plus gamemode overrides), builds the real Settings
+ * and UpgradesManager on top of it and registers the real upgrades.
+ */
+public class BenchmarkFixtures {
+
+	public static final String GAMEMODE = "BSkyBlock";
+
+	public static final int TIERS_PER_UPGRADE = 5;
+
+	public BenchmarkFixtures(int tierEntries) {
+		this.config = createConfig(tierEntries);
+
+		this.plugin = mock(BentoBox.class);
+		this.addon = mock(UpgradesAddon.class);
+		when(this.addon.getPlugin()).thenReturn(this.plugin);
+		when(this.addon.getConfig()).thenReturn(this.config);
+		when(this.addon.getAddonByName("upgrades")).thenReturn(Optional.<Addon>of(this.addon));
+		when(this.addon.getMetrics()).thenReturn(new MetricsRegistry());
+
+		GameModeAddon gameMode = mock(GameModeAddon.class);
+		when(gameMode.getDescription()).thenReturn(new AddonDescription.Builder("main", GAMEMODE, "1.0").build());
+
+		this.world = mock(World.class);
+		IslandWorldManager iwm = mock(IslandWorldManager.class);
+		when(iwm.getAddon(this.world)).thenReturn(Optional.of(gameMode));
+		when(this.plugin.getIWM()).thenReturn(iwm);
+
+		Level level = mock(Level.class);
+		when(level.getIslandLevel(any(), any())).thenReturn(120L);
+		when(this.addon.isLevelProvided()).thenReturn(true);
+		when(this.addon.getLevelAddon()).thenReturn(level);
+
+		VaultHook vault = mock(VaultHook.class);
+		when(vault.has(any(), anyDouble())).thenReturn(true);
+		when(this.addon.isVaultProvided()).thenReturn(true);
+		when(this.addon.getVaultHook()).thenReturn(vault);
+
+		this.settings = new Settings(this.addon);
+		when(this.addon.getSettings()).thenReturn(this.settings);
+		when(this.addon.getSlowOperationWatchdog()).thenReturn(new SlowOperationWatchdog(this.addon));
+
+		this.upgradesManager = new UpgradesManager(this.addon);
+		this.upgradesManager.addGameModes(List.of(GAMEMODE));
+		when(this.addon.getUpgradesManager()).thenReturn(this.upgradesManager);
+
+		Map<String, UpgradesData> levels = new HashMap<>();
+		when(this.addon.getUpgradesLevels(anyString()))
+				.thenAnswer(invocation -> levels.computeIfAbsent(invocation.getArgument(0), UpgradesData::new));
+
+		this.upgrades = createUpgrades(this.addon, this.settings);
+	}
+
+	/**
+	 * @return the upgrades of every type defined in the settings
+	 */
+	public static List<Upgrade> createUpgrades(UpgradesAddon addon, Settings settings) {
+		List<Upgrade> upgrades = new ArrayList<>();
+		settings.getEntityLimitsUpgrade().forEach(ent -> upgrades.add(new EntityLimitsUpgrade(addon, ent)));
+		settings.getEntityGroupLimitsUpgrade().forEach(group -> upgrades.add(new EntityGroupLimitsUpgrade(addon, group)));
+		settings.getMaterialsLimitsUpgrade().forEach(mat -> upgrades.add(new BlockLimitsUpgrade(addon, mat)));
+		settings.getCommandUpgrade()
+				.forEach(cmd -> upgrades.add(new CommandUpgrade(addon, cmd, settings.getCommandIcon(cmd))));
+		if (settings.getHasRangeUpgrade())
+			upgrades.add(new RangeUpgrade(addon));
+		return upgrades;
+	}
+
+	/**
+	 * @return a new island stand-in with the given number of members
+	 */
+	public Island createIsland(int members) {
+		return createIsland(this.world, members);
+	}
+
+	/**
+	 * @return a new island stand-in of the world with the given number of
+	 *         members
+	 */
+	public static Island createIsland(World world, int members) {
+		Island island = mock(Island.class);
+		Set<UUID> memberSet = new HashSet<>();
+		for (int i = 0; i < members; i++)
+			memberSet.add(UUID.randomUUID());
+		when(island.getUniqueId()).thenReturn(UUID.randomUUID().toString());
+		when(island.getWorld()).thenReturn(world);
+		when(island.getMemberSet()).thenReturn(memberSet);
+		when(island.getOwner()).thenReturn(memberSet.iterator().next());
+		when(island.getGameMode()).thenReturn(GAMEMODE);
+		when(island.getProtectionRange()).thenReturn(50);
+		when(island.getRange()).thenReturn(400);
+		return island;
+	}
+
+	/**
+	 * @return a new user stand-in, translations return their reference
+	 */
+	public static User createUser() {
+		User user = mock(User.class, invocation -> {
+			if (invocation.getMethod().getReturnType() == String.class && invocation.getArguments().length > 0)
+				return String.valueOf((Object) invocation.getArgument(0));
+			return Answers.RETURNS_DEFAULTS.answer(invocation);
+		});
+		UUID uuid = UUID.randomUUID();
+		when(user.getUniqueId()).thenReturn(uuid);
+		when(user.getName()).thenReturn(uuid.toString().substring(0, 16));
+		return user;
+	}
+
+	/**
+	 * Generates a config with about tierEntries tiers. Every fifth entry goes
+	 * to the BSkyBlock overrides, the rest is spread over range, entity, entity
+	 * group, command and (mostly) block limits upgrades.
+	 */
+	public static YamlConfiguration createConfig(int tierEntries) {
+		YamlConfiguration config = new YamlConfiguration();
+		config.set("disabled-gamemodes", new ArrayList<String>());
+
+		int overrides = tierEntries / 5;
+		int entries = tierEntries - overrides;
+		int range = Math.max(1, Math.min(TIERS_PER_UPGRADE, entries / 10));
+		int entity = entries / 10;
+		int group = entries / 10;
+		int command = entries / 10;
+		int block = Math.max(1, entries - range - entity - group - command);
+
+		List<String> materials = Arrays.stream(Material.values())
+				.filter(m -> m.isBlock() && !m.isAir() && !m.isLegacy()).map(Material::name)
+				.collect(Collectors.toList());
+		List<String> entities = Arrays.stream(EntityType.values()).filter(e -> e.isAlive() && e.isSpawnable())
+				.map(EntityType::name).collect(Collectors.toList());
+		List<String> groups = new ArrayList<>();
+		List<String> commands = new ArrayList<>();
+		for (int i = 0; i < Math.max(1, group / TIERS_PER_UPGRADE); i++)
+			groups.add("group" + i);
+		for (int i = 0; i < Math.max(1, command / TIERS_PER_UPGRADE); i++)
+			commands.add("cmd" + i);
+
+		entities.forEach(ent -> config.set("entity-icon." + ent, "EGG"));
+		groups.forEach(g -> config.set("entity-group-icon." + g, "EGG"));
+		commands.forEach(cmd -> {
+			config.set("command-icon." + cmd, "GRASS_BLOCK");
+			config.set("command-upgrade." + cmd + ".name", "Command " + cmd);
+		});
+
+		for (int t = 1; t <= range; t++)
+			addTier(config, "range-upgrade.tier" + t, t, false);
+		addTiers(config, "block-limits-upgrade", materials, block, false);
+		addTiers(config, "entity-limits-upgrade", entities, entity, false);
+		addTiers(config, "entity-group-limits-upgrade", groups, group, false);
+		addTiers(config, "command-upgrade", commands, command, true);
+
+		String prefix = "gamemodes." + GAMEMODE + ".";
+		addTier(config, prefix + "range-upgrade.tier" + (range + 1), range + 1, false);
+		addTiers(config, prefix + "block-limits-upgrade", materials, Math.max(1, overrides - 1), false);
+
+		return config;
+	}
+
+	private static void addTiers(YamlConfiguration config, String path, List<String> keys, int entries,
+			boolean command) {
+		if (keys.isEmpty() || entries <= 0)
+			return;
+		int numberKeys = Math.min(keys.size(), Math.max(1, entries / TIERS_PER_UPGRADE));
+		for (int e = 0; e < entries; e++) {
+			int tier = e / numberKeys + 1;
+			addTier(config, path + "." + keys.get(e % numberKeys) + ".tier" + tier, tier, command);
+		}
+	}
+
+	private static void addTier(YamlConfiguration config, String path, int tier, boolean command) {
+		config.set(path + ".max-level", tier * 5);
+		config.set(path + ".island-min-level", "[level]*2");
+		config.set(path + ".vault-cost", "([level]-2)*[numberPlayer]*700");
+		if (command) {
+			config.set(path + ".console", true);
+			config.set(path + ".command", List.of("say [player] has upgraded to level [level]"));
+		} else {
+			config.set(path + ".upgrade", "1");
+		}
+	}
+
+	public UpgradesAddon getAddon() {
+		return this.addon;
+	}
+
+	public BentoBox getPlugin() {
+		return this.plugin;
+	}
+
+	public Settings getSettings() {
+		return this.settings;
+	}
+
+	public UpgradesManager getUpgradesManager() {
+		return this.upgradesManager;
+	}
+
+	public World getWorld() {
+		return this.world;
+	}
+
+	public List<Upgrade> getUpgrades() {
+		return this.upgrades;
+	}
+
+	private final YamlConfiguration config;
+
+	private final BentoBox plugin;
+
+	private final UpgradesAddon addon;
+
+	private final World world;
+
+	private final Settings settings;
+
+	private final UpgradesManager upgradesManager;
+
+	private final List<Upgrade> upgrades;
+
+}
@@ -0,0 +1,371 @@
+package world.bentobox.upgrades;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.PluginManager;
+
+import net.milkbowl.vault.economy.EconomyResponse;
+import world.bentobox.bentobox.BentoBox;
+import world.bentobox.bentobox.api.addons.Addon;
+import world.bentobox.bentobox.api.addons.AddonDescription;
+import world.bentobox.bentobox.api.addons.GameModeAddon;
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.bentobox.database.Database;
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.bentobox.hooks.VaultHook;
+import world.bentobox.bentobox.managers.IslandWorldManager;
+import world.bentobox.level.Level;
+import world.bentobox.limits.Limits;
+import world.bentobox.limits.listeners.BlockLimitsListener;
+import world.bentobox.limits.objects.IslandBlockCount;
+import world.bentobox.upgrades.api.Upgrade;
+import world.bentobox.upgrades.dataobjects.UpgradesData;
+import world.bentobox.upgrades.metrics.LatencyHistogram;
+import world.bentobox.upgrades.metrics.OperationTrace;
+import world.bentobox.upgrades.metrics.Phase;
+import world.bentobox.upgrades.scheduler.LocalUpgradeScheduler;
+
+/**
+ * Headless load generator used for capacity planning.
+ *
+ * The real UpgradesAddon, UpgradesManager and upgrades are run against
+ * in-memory stand-ins of the BentoBox database, Vault, Level and Limits.
+ * N islands are shared by M players that keep opening the upgrade panel and
+ * buying upgrades. Like on a server, every operation runs on a single "main"
+ * thread while the database saves are done by a small async pool. With
+ * load.regions set, operations run on the thread owning the island of a
+ * {@link LocalUpgradeScheduler}, as on a region threaded server.
+ *
+ * A panel open does what the upgrade panel does for each upgrade (values,
+ * visibility, money check) without building the inventory, a purchase does
+ * what a click in the panel does.
+ *
+ * Run with: mvn -P benchmark test-compile exec:exec@load-test
+ * [-Dload.islands=1000] [-Dload.players=200] [-Dload.members=3] [-Dload.duration=30] [-Dload.regions=0]
+ */
+public class LoadTest {
+
+	public static void main(String[] args) throws Exception {
+		LoadTest test = new LoadTest(Integer.getInteger("load.islands", 1000), Integer.getInteger("load.players", 200),
+				Integer.getInteger("load.members", 3), Integer.getInteger("load.tiers", 200),
+				Integer.getInteger("load.regions", 0));
+		test.run(Integer.getInteger("load.warmup", 10), Integer.getInteger("load.duration", 30),
+				Double.parseDouble(System.getProperty("load.purchase-ratio", "0.2")),
+				Double.parseDouble(System.getProperty("load.logout-ratio", "0.01")),
+				Long.getLong("load.db-latency", 0));
+		System.exit(0);
+	}
+
+	public LoadTest(int islands, int players, int members, int tierEntries, int regions) {
+		this.memory = ManagementFactory.getMemoryMXBean();
+		this.baseHeap = this.usedHeap();
+		this.random = new Random(42);
+		this.store = new ConcurrentHashMap<>();
+		this.ioExecutor = Executors.newFixedThreadPool(2);
+		this.panelLatency = new LatencyHistogram();
+		this.purchaseLatency = new LatencyHistogram();
+		this.panelPhases = new AtomicLongArray(Phase.values().length);
+
+		Server server = mock(Server.class);
+		when(server.getLogger()).thenReturn(Logger.getLogger("LoadTest"));
+		when(server.getPluginManager()).thenReturn(mock(PluginManager.class));
+		Bukkit.setServer(server);
+
+		this.world = mock(World.class);
+		this.addon = this.createAddon(server, BenchmarkFixtures.createConfig(tierEntries));
+		this.scheduler = regions > 0 ? new LocalUpgradeScheduler(regions) : null;
+		if (this.scheduler != null)
+			this.addon.setScheduler(this.scheduler);
+
+		this.islands = new ArrayList<>(islands);
+		for (int i = 0; i < islands; i++)
+			this.islands.add(BenchmarkFixtures.createIsland(this.world, members));
+		this.players = new ArrayList<>(players);
+		for (int i = 0; i < players; i++)
+			this.players.add(new Player(BenchmarkFixtures.createUser(), this.islands.get(i % islands)));
+
+		this.setupHeap = this.usedHeap();
+	}
+
+	private UpgradesAddon createAddon(Server server, YamlConfiguration config) {
+		UpgradesAddon upgradesAddon = spy(new UpgradesAddon());
+		BentoBox plugin = mock(BentoBox.class);
+		doReturn(plugin).when(upgradesAddon).getPlugin();
+		doReturn(server).when(upgradesAddon).getServer();
+		doReturn(config).when(upgradesAddon).getConfig();
+		doReturn(new AddonDescription.Builder("main", "Upgrades", "1.0").build()).when(upgradesAddon).getDescription();
+		doReturn(Optional.<Addon>of(upgradesAddon)).when(upgradesAddon).getAddonByName("upgrades");
+		doNothing().when(upgradesAddon).saveDefaultConfig();
+		doNothing().when(upgradesAddon).log(anyString());
+
+		GameModeAddon gameMode = mock(GameModeAddon.class);
+		when(gameMode.getDescription())
+				.thenReturn(new AddonDescription.Builder("main", BenchmarkFixtures.GAMEMODE, "1.0").build());
+		IslandWorldManager iwm = mock(IslandWorldManager.class);
+		when(iwm.getAddon(this.world)).thenReturn(Optional.of(gameMode));
+		when(plugin.getIWM()).thenReturn(iwm);
+
+		Level level = mock(Level.class);
+		when(level.getIslandLevel(any(), any())).thenReturn(120L);
+
+		Map<String, IslandBlockCount> blockCounts = new ConcurrentHashMap<>();
+		BlockLimitsListener listener = mock(BlockLimitsListener.class);
+		when(listener.getIsland(any(Island.class))).thenAnswer(invocation -> blockCounts.computeIfAbsent(
+				invocation.<Island>getArgument(0).getUniqueId(),
+				id -> new IslandBlockCount(id, BenchmarkFixtures.GAMEMODE)));
+		when(listener.getIsland(anyString())).thenAnswer(invocation -> blockCounts
+				.computeIfAbsent(invocation.getArgument(0), id -> new IslandBlockCount(id, BenchmarkFixtures.GAMEMODE)));
+		Limits limits = mock(Limits.class);
+		when(limits.getSettings()).thenReturn(mock(world.bentobox.limits.Settings.class));
+		when(limits.getBlockLimitListener()).thenReturn(listener);
+
+		VaultHook vault = mock(VaultHook.class);
+		when(vault.has(any(), anyDouble())).thenReturn(true);
+		when(vault.withdraw(any(), anyDouble())).thenAnswer(invocation -> new EconomyResponse(
+				invocation.getArgument(1), 0, EconomyResponse.ResponseType.SUCCESS, null));
+
+		// What the server does once the addon is hooked in a gamemode
+		upgradesAddon.onLoad();
+		upgradesAddon.hook(List.of(BenchmarkFixtures.GAMEMODE), this.createDatabase(), level, limits, vault);
+		upgradesAddon.registerUpgrades(BenchmarkFixtures.createUpgrades(upgradesAddon, upgradesAddon.getSettings()));
+
+		return upgradesAddon;
+	}
+
+	/**
+	 * @return a database keeping the upgrades data in memory, loads and saves
+	 *         wait for the configured latency
+	 */
+	@SuppressWarnings("unchecked")
+	private Database<UpgradesData> createDatabase() {
+		Database<UpgradesData> database = mock(Database.class);
+		when(database.objectExists(anyString())).thenAnswer(invocation -> this.store.containsKey(invocation.getArgument(0)));
+		when(database.loadObject(anyString())).thenAnswer(invocation -> {
+			this.databasePause();
+			return this.store.get(invocation.getArgument(0));
+		});
+		when(database.loadObjects()).thenAnswer(invocation -> new ArrayList<>(this.store.values()));
+		when(database.saveObjectAsync(any())).thenAnswer(invocation -> {
+			UpgradesData data = invocation.getArgument(0);
+			return CompletableFuture.supplyAsync(() -> {
+				this.databasePause();
+				this.store.put(data.getUniqueId(), data);
+				return true;
+			}, this.ioExecutor);
+		});
+		return database;
+	}
+
+	/**
+	 * Run the workload
+	 *
+	 * @param warmup        Warmup duration in seconds, not measured
+	 * @param duration      Measured duration in seconds
+	 * @param purchaseRatio Part of the operations that are purchases
+	 * @param logoutRatio   Part of the operations followed by the island being
+	 *                      uncached and saved, as when its last member leaves
+	 * @param dbLatency     Latency of the database loads and saves in microseconds
+	 */
+	public void run(int warmup, int duration, double purchaseRatio, double logoutRatio, long dbLatency)
+			throws InterruptedException {
+		this.dbLatency = TimeUnit.MICROSECONDS.toNanos(dbLatency);
+		System.out.printf(Locale.ROOT, "Islands: %d, players: %d, upgrades: %d, database latency: %d us, regions: %d%n",
+				this.islands.size(), this.players.size(), this.addon.getAvailableUpgrades().size(), dbLatency,
+				this.scheduler == null ? 0 : this.scheduler.getRegions());
+
+		this.runFor(warmup, purchaseRatio, logoutRatio);
+		this.panelLatency.reset();
+		this.purchaseLatency.reset();
+		for (int i = 0; i < this.panelPhases.length(); i++)
+			this.panelPhases.set(i, 0);
+		this.addon.getMetrics().reset();
+
+		long startHeap = this.usedHeap();
+		long start = System.nanoTime();
+		long operations = this.runFor(duration, purchaseRatio, logoutRatio);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		if (this.scheduler != null)
+			this.scheduler.shutdown(1, TimeUnit.MINUTES);
+		this.ioExecutor.shutdown();
+		this.ioExecutor.awaitTermination(1, TimeUnit.MINUTES);
+		long endHeap = this.usedHeap();
+
+		System.out.printf(Locale.ROOT, "Throughput: %.0f operations/s on %s (%.0f per 50 ms tick)%n",
+				operations / seconds, this.scheduler == null ? "the main thread" : this.scheduler.getRegions() + " regions",
+				operations / seconds / 20);
+		this.printLatency("Panel open", this.panelLatency);
+		this.printLatency("Purchase", this.purchaseLatency);
+		StringBuilder phases = new StringBuilder("Panel open phases (mean):");
+		for (Phase phase : Phase.values())
+			phases.append(' ').append(phase.getLabel()).append(' ')
+					.append(String.format(Locale.ROOT, "%.1f us", this.panelLatency.getCount() == 0 ? 0
+							: this.panelPhases.get(phase.ordinal()) / 1000d / this.panelLatency.getCount()));
+		System.out.println(phases);
+		System.out.printf(Locale.ROOT, "Heap: %.1f MB after setup (%.1f KB per island), %+.1f MB during the run%n",
+				(this.setupHeap - this.baseHeap) / 1048576d, (this.setupHeap - this.baseHeap) / 1024d / this.islands.size(),
+				(endHeap - startHeap) / 1048576d);
+		this.addon.getMetrics().report().forEach(System.out::println);
+	}
+
+	private long runFor(int seconds, double purchaseRatio, double logoutRatio) throws InterruptedException {
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		long operations = 0;
+		// Bounds the operations queued on the region threads
+		Semaphore inFlight = new Semaphore(this.scheduler == null ? 1 : this.scheduler.getRegions() * 16);
+		while (System.nanoTime() < end) {
+			Player player = this.players.get(this.random.nextInt(this.players.size()));
+			boolean purchase = this.random.nextDouble() < purchaseRatio;
+			boolean logout = this.random.nextDouble() < logoutRatio;
+			Runnable operation = () -> {
+				if (purchase)
+					this.purchase(player);
+				else
+					this.openPanel(player);
+				if (logout)
+					this.addon.uncacheIsland(player.island.getUniqueId(), true);
+			};
+
+			if (this.scheduler == null) {
+				operation.run();
+			} else {
+				inFlight.acquire();
+				this.scheduler.island(player.island).execute(() -> {
+					try {
+						operation.run();
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+			operations++;
+		}
+		// Wait for the queued operations
+		if (this.scheduler != null) {
+			int permits = this.scheduler.getRegions() * 16;
+			inFlight.acquire(permits);
+			inFlight.release(permits);
+		}
+		return operations;
+	}
+
+	private void openPanel(Player player) {
+		long start = System.nanoTime();
+		OperationTrace trace = OperationTrace.begin();
+		trace.run(() -> {
+			int islandLevel = this.addon.getUpgradesManager().getIslandLevel(player.island);
+			for (Upgrade upgrade : this.addon.getUpgradeRegistry().getCatalog(BenchmarkFixtures.GAMEMODE)) {
+				upgrade.updateUpgradeValue(player.user, player.island);
+				if (!upgrade.isShowed(player.user, player.island))
+					continue;
+				Upgrade.UpgradeValues values = upgrade.getUpgradeValues(player.user);
+				if (values != null && this.addon.isVaultProvided() && values.getIslandLevel() <= islandLevel)
+					this.addon.getVaultHook().has(player.user, values.getMoneyCost());
+			}
+		});
+		trace.end();
+		this.panelLatency.record(System.nanoTime() - start);
+		for (Phase phase : Phase.values())
+			this.panelPhases.addAndGet(phase.ordinal(), trace.getPhase(phase));
+	}
+
+	private void purchase(Player player) {
+		List<Upgrade> upgrades = this.addon.getUpgradeRegistry().getCatalog(BenchmarkFixtures.GAMEMODE);
+		Upgrade upgrade = upgrades.get(this.random.nextInt(upgrades.size()));
+		long start = System.nanoTime();
+		upgrade.updateUpgradeValue(player.user, player.island);
+		if (upgrade.getUpgradeValues(player.user) != null && upgrade.canUpgrade(player.user, player.island))
+			upgrade.doUpgrade(player.user, player.island);
+		this.purchaseLatency.record(System.nanoTime() - start);
+	}
+
+	private void printLatency(String name, LatencyHistogram histogram) {
+		System.out.printf(Locale.ROOT, "%s: %d operations, p50 %.1f us, p90 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+				name, histogram.getCount(), histogram.getValueAtPercentile(50) / 1000d,
+				histogram.getValueAtPercentile(90) / 1000d, histogram.getValueAtPercentile(99) / 1000d,
+				histogram.getValueAtPercentile(99.9) / 1000d, histogram.getMax() / 1000d);
+	}
+
+	private void databasePause() {
+		if (this.dbLatency > 0)
+			LockSupport.parkNanos(this.dbLatency);
+	}
+
+	private long usedHeap() {
+		System.gc();
+		return this.memory.getHeapMemoryUsage().getUsed();
+	}
+
+	private static class Player {
+
+		Player(User user, Island island) {
+			this.user = user;
+			this.island = island;
+		}
+
+		private final User user;
+
+		private final Island island;
+
+	}
+
+	private final MemoryMXBean memory;
+
+	private final long baseHeap;
+
+	private final long setupHeap;
+
+	private final Random random;
+
+	private final Map<String, UpgradesData> store;
+
+	private final ExecutorService ioExecutor;
+
+	private final World world;
+
+	private final UpgradesAddon addon;
+
+	private final List<Island> islands;
+
+	private final List<Player> players;
+
+	private final LatencyHistogram panelLatency;
+
+	private final LatencyHistogram purchaseLatency;
+
+	private final AtomicLongArray panelPhases;
+
+	private final LocalUpgradeScheduler scheduler;
+
+	private long dbLatency;
+
+}
@@ -0,0 +1,76 @@
+package world.bentobox.upgrades;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.upgrades.api.Upgrade;
+
+/**
+ * Benchmarks what opening the upgrade panel costs outside of the inventory
+ * itself: a full updateUpgradeValue sweep over every registered upgrade.
+ *
+ * Run with: mvn -P benchmark test-compile exec:exec -Djmh.include=PanelValueBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PanelValueBenchmark {
+
+	@Param({ "10", "200", "2000" })
+	public int tierEntries;
+
+	@Setup
+	public void setup() {
+		this.fixtures = new BenchmarkFixtures(this.tierEntries);
+		this.upgrades = this.fixtures.getUpgrades();
+		this.user = this.fixtures.createUser();
+		this.island = this.fixtures.createIsland(3);
+	}
+
+	@Benchmark
+	public void updateUpgradeValueSweep(Blackhole bh) {
+		for (Upgrade upgrade : this.upgrades) {
+			upgrade.updateUpgradeValue(this.user, this.island);
+			bh.consume(upgrade.getUpgradeValues(this.user));
+		}
+	}
+
+	@Benchmark
+	public void panelSweep(Blackhole bh) {
+		for (Upgrade upgrade : this.upgrades) {
+			upgrade.updateUpgradeValue(this.user, this.island);
+			if (!upgrade.isShowed(this.user, this.island))
+				continue;
+			bh.consume(upgrade.getOwnDescription(this.user));
+			if (upgrade.getUpgradeValues(this.user) != null)
+				bh.consume(upgrade.canUpgrade(this.user, this.island));
+		}
+	}
+
+	private BenchmarkFixtures fixtures;
+
+	private List<Upgrade> upgrades;
+
+	private User user;
+
+	private Island island;
+
+}
@@ -0,0 +1,133 @@
+package world.bentobox.upgrades;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.EntityType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the tier resolution and upgrade infos computation of
+ * UpgradesManager on small, medium and huge configs.
+ *
+ * Run with: mvn -P benchmark test-compile exec:exec -Djmh.include=TierResolutionBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TierResolutionBenchmark {
+
+	@Param({ "10", "200", "2000" })
+	public int tierEntries;
+
+	@Setup
+	public void setup() {
+		this.fixtures = new BenchmarkFixtures(this.tierEntries);
+		this.manager = this.fixtures.getUpgradesManager();
+		this.world = this.fixtures.getWorld();
+		this.materials = new ArrayList<>(this.fixtures.getSettings().getMaterialsLimitsUpgrade());
+		this.entities = new ArrayList<>(this.fixtures.getSettings().getEntityLimitsUpgrade());
+		this.groups = new ArrayList<>(this.fixtures.getSettings().getEntityGroupLimitsUpgrade());
+		this.commands = new ArrayList<>(this.fixtures.getSettings().getCommandUpgrade());
+	}
+
+	@Benchmark
+	public Object getRangeUpgradeTier() {
+		return this.manager.getRangeUpgradeTier(this.nextLevel(), this.world);
+	}
+
+	@Benchmark
+	public Object getRangeUpgradeInfos() {
+		return this.manager.getRangeUpgradeInfos(this.nextLevel(), 120, 3, this.world);
+	}
+
+	@Benchmark
+	public Object getBlockLimitsUpgradeTier() {
+		return this.manager.getBlockLimitsUpgradeTier(this.next(this.materials), this.nextLevel(), this.world);
+	}
+
+	@Benchmark
+	public Object getBlockLimitsUpgradeInfos() {
+		return this.manager.getBlockLimitsUpgradeInfos(this.next(this.materials), this.nextLevel(), 120, 3,
+				this.world);
+	}
+
+	@Benchmark
+	public Object getEntityLimitsUpgradeTier() {
+		return this.manager.getEntityLimitsUpgradeTier(this.next(this.entities), this.nextLevel(), this.world);
+	}
+
+	@Benchmark
+	public Object getEntityLimitsUpgradeInfos() {
+		return this.manager.getEntityLimitsUpgradeInfos(this.next(this.entities), this.nextLevel(), 120, 3,
+				this.world);
+	}
+
+	@Benchmark
+	public Object getEntityGroupLimitsUpgradeTier() {
+		return this.manager.getEntityGroupLimitsUpgradeTier(this.next(this.groups), this.nextLevel(), this.world);
+	}
+
+	@Benchmark
+	public Object getEntityGroupLimitsUpgradeInfos() {
+		return this.manager.getEntityGroupLimitsUpgradeInfos(this.next(this.groups), this.nextLevel(), 120, 3,
+				this.world);
+	}
+
+	@Benchmark
+	public Object getCommandUpgradeTier() {
+		return this.manager.getCommandUpgradeTier(this.next(this.commands), this.nextLevel(), this.world);
+	}
+
+	@Benchmark
+	public Object getCommandUpgradeInfos() {
+		return this.manager.getCommandUpgradeInfos(this.next(this.commands), this.nextLevel(), 120, 3, this.world);
+	}
+
+	private int nextLevel() {
+		this.level = (this.level % 20) + 1;
+		return this.level;
+	}
+
+	private <T> T next(List<T> list) {
+		if (list.isEmpty())
+			return null;
+		this.index = (this.index + 1) % list.size();
+		return list.get(this.index);
+	}
+
+	private BenchmarkFixtures fixtures;
+
+	private UpgradesManager manager;
+
+	private World world;
+
+	private List<Material> materials;
+
+	private List<EntityType> entities;
+
+	private List<String> groups;
+
+	private List<String> commands;
+
+	private int level;
+
+	private int index;
+
+}
@@ -0,0 +1,83 @@
+package world.bentobox.upgrades.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the arithmetic expression parser and the tier calculations
+ * using expressions taken from the default config.yml.
+ *
+ * Run with: mvn -P benchmark test-compile exec:exec -Djmh.include=FormulaBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormulaBenchmark {
+
+	@Param({ "5", "[level]*100", "[level]*[numberPlayer]*200", "([level]-2)*[numberPlayer]*700",
+			"sqrt([islandLevel])*[level]^2+10" })
+	public String expression;
+
+	@Setup
+	public void setup() {
+		this.tier = new Settings.UpgradeTier("tier1", "tier1", 15, 0, Settings.parse(this.expression),
+				Settings.parse(this.expression), Settings.parse(this.expression));
+	}
+
+	@Benchmark
+	public Object parse() {
+		return Settings.parse(this.expression);
+	}
+
+	@Benchmark
+	public double calculateUpgrade() {
+		return this.tier.calculateUpgrade(this.nextLevel(), 120, 3);
+	}
+
+	@Benchmark
+	public double calculateIslandMinLevel() {
+		return this.tier.calculateIslandMinLevel(this.nextLevel(), 120, 3);
+	}
+
+	@Benchmark
+	public double calculateVaultCost() {
+		return this.tier.calculateVaultCost(this.nextLevel(), 120, 3);
+	}
+
+	/**
+	 * What a single upgrade costs when the panel is opened: the three
+	 * calculations done by UpgradesManager for each upgrade info
+	 */
+	@Benchmark
+	public void calculateUpgradeInfos(Blackhole bh) {
+		int level = this.nextLevel();
+		bh.consume(this.tier.calculateIslandMinLevel(level, 120, 3));
+		bh.consume(this.tier.calculateVaultCost(level, 120, 3));
+		bh.consume(this.tier.calculateUpgrade(level, 120, 3));
+	}
+
+	private int nextLevel() {
+		this.level = (this.level % 15) + 1;
+		return this.level;
+	}
+
+	private Settings.UpgradeTier tier;
+
+	private int level;
+
+}
@@ -0,0 +1,194 @@
+package world.bentobox.upgrades;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import world.bentobox.upgrades.api.Upgrade;
+
+/**
+ * Registry of the available upgrades.
+ *
+ * Each upgrade gets a dense id, in registration order, which is also the
+ * display order. The upgrades available for a gamemode are kept in an
+ * immutable catalog built on first use and dropped when an upgrade is
+ * registered or the config is reloaded.
+ *
+ * The upgrades, their ids and their catalogs are published together as one
+ * immutable state, replaced as a whole by each change: readers never lock and
+ * always see ids and catalogs of the same upgrades.
+ */
+public class UpgradeRegistry {
+
+	public UpgradeRegistry() {
+		this.state = new State(List.of());
+	}
+
+	/**
+	 * Register an upgrade, an upgrade with the same name keeps its id
+	 *
+	 * @param upgrade Upgrade to register
+	 * @return Id of the upgrade
+	 */
+	public synchronized int register(Upgrade upgrade) {
+		State state = this.state;
+		Integer id = state.ids.get(upgrade.getName());
+		if (id != null)
+			return id;
+
+		List<Upgrade> upgrades = new ArrayList<>(state.upgrades);
+		upgrades.add(upgrade);
+		this.state = new State(upgrades);
+		return upgrades.size() - 1;
+	}
+
+	/**
+	 * Register several upgrades at once, the catalogs are only dropped once
+	 *
+	 * @param upgrades Upgrades to register, in order
+	 * @return Number of upgrades added, the ones with an already registered name
+	 *         are skipped
+	 */
+	public synchronized int registerAll(Collection<? extends Upgrade> upgrades) {
+		State state = this.state;
+		List<Upgrade> registered = new ArrayList<>(state.upgrades);
+		Set<String> names = new HashSet<>(state.ids.keySet());
+		for (Upgrade upgrade : upgrades) {
+			if (names.add(upgrade.getName()))
+				registered.add(upgrade);
+		}
+		int added = registered.size() - state.upgrades.size();
+		if (added > 0)
+			this.state = new State(registered);
+		return added;
+	}
+
+	/**
+	 * Replace the managed upgrades, after a config reload. A managed upgrade
+	 * keeps its place if one with the same name is given, it is removed
+	 * otherwise, and the remaining given upgrades are added at the end. The
+	 * upgrades that aren't managed are kept as is. Ids are given again.
+	 *
+	 * @param managed  Upgrades replaced by the given ones
+	 * @param upgrades New managed upgrades, in order
+	 */
+	public synchronized void reconcile(Predicate<Upgrade> managed, Collection<? extends Upgrade> upgrades) {
+		State state = this.state;
+		Map<String, Upgrade> remaining = new LinkedHashMap<>();
+		upgrades.forEach(upgrade -> remaining.putIfAbsent(upgrade.getName(), upgrade));
+
+		List<Upgrade> reconciled = new ArrayList<>(state.upgrades.size() + remaining.size());
+		for (Upgrade upgrade : state.upgrades) {
+			if (!managed.test(upgrade))
+				reconciled.add(upgrade);
+			else if (remaining.containsKey(upgrade.getName()))
+				reconciled.add(remaining.remove(upgrade.getName()));
+		}
+		remaining.values().stream().filter(upgrade -> !isNameOfUnmanaged(state, upgrade, managed))
+				.forEach(reconciled::add);
+
+		this.state = new State(reconciled);
+	}
+
+	/**
+	 * @return Every upgrade in registration order, index is the id
+	 */
+	public List<Upgrade> getUpgrades() {
+		return this.state.upgrades;
+	}
+
+	/**
+	 * @param gameMode Name of the gamemode
+	 * @return Upgrades available for the gamemode, in registration order
+	 */
+	public List<Upgrade> getCatalog(String gameMode) {
+		// Built from the upgrades of the same state, dropped with it
+		State state = this.state;
+		return state.catalogs.computeIfAbsent(gameMode, gm -> state.upgrades.stream()
+				.filter(upgrade -> upgrade.isAvailableFor(gm)).collect(Collectors.toUnmodifiableList()));
+	}
+
+	/**
+	 * @param id Id of the upgrade
+	 * @return The upgrade
+	 */
+	public Upgrade get(int id) {
+		return this.state.upgrades.get(id);
+	}
+
+	/**
+	 * @param upgradeName Name of the upgrade
+	 * @return The upgrade, null if not registered
+	 */
+	public Upgrade get(String upgradeName) {
+		State state = this.state;
+		Integer id = state.ids.get(upgradeName);
+		return id == null ? null : state.upgrades.get(id);
+	}
+
+	/**
+	 * Ids change when the config is reloaded, an id should be used with
+	 * {@link #get(int)} right away or {@link #get(String)} should be used.
+	 *
+	 * @param upgradeName Name of the upgrade
+	 * @return Id of the upgrade, -1 if not registered
+	 */
+	public int getId(String upgradeName) {
+		return this.state.ids.getOrDefault(upgradeName, -1);
+	}
+
+	/**
+	 * @return Number of registered upgrades, ids are below it
+	 */
+	public int size() {
+		return this.state.upgrades.size();
+	}
+
+	/**
+	 * Drop the catalogs, after a config reload
+	 */
+	public synchronized void invalidateCatalogs() {
+		this.state = new State(this.state.upgrades);
+	}
+
+	private static boolean isNameOfUnmanaged(State state, Upgrade upgrade, Predicate<Upgrade> managed) {
+		Integer id = state.ids.get(upgrade.getName());
+		return id != null && !managed.test(state.upgrades.get(id));
+	}
+
+	/**
+	 * Upgrades with their ids and their catalogs, never changed once published
+	 * except for the catalogs built on first use
+	 */
+	private static class State {
+
+		State(List<Upgrade> upgrades) {
+			this.upgrades = List.copyOf(upgrades);
+			Map<String, Integer> ids = new HashMap<>();
+			for (int id = 0; id < this.upgrades.size(); id++)
+				ids.put(this.upgrades.get(id).getName(), id);
+			this.ids = Collections.unmodifiableMap(ids);
+			this.catalogs = new ConcurrentHashMap<>();
+		}
+
+		private final List<Upgrade> upgrades;
+
+		private final Map<String, Integer> ids;
+
+		private final Map<String, List<Upgrade>> catalogs;
+
+	}
+
+	// Replaced as a whole, writers are synchronized
+	private volatile State state;
+
+}
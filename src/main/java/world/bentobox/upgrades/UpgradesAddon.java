@@ -1,30 +1,64 @@
 package world.bentobox.upgrades;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.bukkit.Material;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
 import world.bentobox.bentobox.api.addons.Addon;
+import world.bentobox.bentobox.api.addons.GameModeAddon;
 import world.bentobox.bentobox.api.flags.Flag;
 import world.bentobox.bentobox.api.flags.clicklisteners.CycleClick;
 import world.bentobox.bentobox.database.Database;
+import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.bentobox.hooks.VaultHook;
 import world.bentobox.bentobox.managers.RanksManager;
 import world.bentobox.level.Level;
 import world.bentobox.limits.Limits;
 import world.bentobox.upgrades.api.Upgrade;
+import world.bentobox.upgrades.audit.PurchaseAuditLog;
+import world.bentobox.upgrades.command.AdminUpgradeCommand;
 import world.bentobox.upgrades.command.PlayerUpgradeCommand;
 import world.bentobox.upgrades.config.Settings;
+import world.bentobox.upgrades.database.PurchaseJournal;
+import world.bentobox.upgrades.database.UpgradesIoExecutor;
 import world.bentobox.upgrades.dataobjects.UpgradesData;
+import world.bentobox.upgrades.leaderboard.UpgradeLeaderboards;
+import world.bentobox.upgrades.listeners.DataPreloadListener;
 import world.bentobox.upgrades.listeners.IslandChangeListener;
+import world.bentobox.upgrades.listeners.IslandLevelListener;
+import world.bentobox.upgrades.listeners.PlaceholderCacheListener;
+import world.bentobox.upgrades.metrics.MetricsRegistry;
+import world.bentobox.upgrades.metrics.OperationTrace;
+import world.bentobox.upgrades.metrics.Phase;
+import world.bentobox.upgrades.metrics.SlowOperationWatchdog;
+import world.bentobox.upgrades.metrics.events.DataLoadEvent;
+import world.bentobox.upgrades.metrics.events.DataSaveEvent;
+import world.bentobox.upgrades.network.FileInvalidationBus;
+import world.bentobox.upgrades.network.InvalidationBus;
+import world.bentobox.upgrades.network.LevelChange;
+import world.bentobox.upgrades.placeholders.UpgradesPlaceholders;
+import world.bentobox.upgrades.report.UpgradesReportGenerator;
+import world.bentobox.upgrades.scheduler.UpgradeScheduler;
+import world.bentobox.upgrades.timed.TimedUpgradeManager;
 import world.bentobox.upgrades.upgrades.BlockLimitsUpgrade;
 import world.bentobox.upgrades.upgrades.CommandUpgrade;
 import world.bentobox.upgrades.upgrades.EntityGroupLimitsUpgrade;
@@ -37,7 +71,11 @@ public class UpgradesAddon extends Addon {
     public void onLoad() {
         super.onLoad();
         this.saveDefaultConfig();
-        this.settings = new Settings(this);
+        Settings settings = new Settings(this);
+        this.settings.set(settings);
+        if (settings.getReusedSections() > 0)
+            this.log("Loaded " + settings.getReusedSections() + "/" + settings.getSections()
+                    + " compiled config sections from the cache");
     }
 
     @Override
@@ -48,18 +86,21 @@ public class UpgradesAddon extends Addon {
         }
 
         List<String> hookedGameModes = new ArrayList<>();
+        List<GameModeAddon> hookedGameModeAddons = new ArrayList<>();
 
         getPlugin().getAddonsManager().getGameModeAddons().stream()
-        .filter(g -> !settings.getDisabledGameModes().contains(g.getDescription().getName()))
+        .filter(g -> !this.getSettings().getDisabledGameModes().contains(g.getDescription().getName()))
         .forEach(g -> {
             if (g.getPlayerCommand().isPresent()) {
 
                 new PlayerUpgradeCommand(this, g.getPlayerCommand().get());
+                g.getAdminCommand().ifPresent(adminCommand -> new AdminUpgradeCommand(this, adminCommand));
 
                 UpgradesAddon.UPGRADES_RANK_RIGHT.addGameModeAddon(g);
 
                 this.hooked = true;
                 hookedGameModes.add(g.getDescription().getName());
+                hookedGameModeAddons.add(g);
             }
         });
 
@@ -67,10 +108,16 @@ public class UpgradesAddon extends Addon {
             this.upgradesManager = new UpgradesManager(this);
             this.upgradesManager.addGameModes(hookedGameModes);
 
-            this.upgrade = new HashSet<>();
+            this.upgradeRegistry = new UpgradeRegistry();
 
             this.database = new Database<>(this, UpgradesData.class);
-            this.upgradesCache = new HashMap<>();
+            Settings settings = this.getSettings();
+            this.ioExecutor = new UpgradesIoExecutor(this, settings.getDatabaseMaxConcurrency(),
+                    settings.isDatabaseVirtualThreads());
+            this.upgradesCache = new ConcurrentHashMap<>();
+            this.setupJournal();
+            this.setupInvalidationBus();
+            this.setupAuditLog();
 
             Optional<Addon> level = this.getAddonByName("Level");
 
@@ -95,24 +142,34 @@ public class UpgradesAddon extends Addon {
             } else
                 this.vault = vault.get();
 
-            if (this.isLimitsProvided()) {
-                this.getSettings().getEntityLimitsUpgrade().forEach(ent -> this.registerUpgrade(new EntityLimitsUpgrade(this, ent)));
-                this.getSettings().getEntityGroupLimitsUpgrade().forEach(group -> this.registerUpgrade(new EntityGroupLimitsUpgrade(this, group)));
-                this.getSettings().getMaterialsLimitsUpgrade().forEach(mat -> this.registerUpgrade(new BlockLimitsUpgrade(this, mat)));
-            }
+            long start = System.nanoTime();
+            int added = this.registerUpgrades(this.createConfigUpgrades());
+            this.log("Registered " + added + " upgrades in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+            this.placeholders = new UpgradesPlaceholders(this);
+            hookedGameModeAddons.forEach(this.placeholders::register);
 
-            this.getSettings().getCommandUpgrade().forEach(cmd -> this.registerUpgrade(new CommandUpgrade(this, cmd, this.getSettings().getCommandIcon(cmd))));
+            this.timedUpgrades = new TimedUpgradeManager(this);
+            this.timedUpgrades.start();
 
-            if (this.getSettings().getHasRangeUpgrade())
-                this.registerUpgrade(new RangeUpgrade(this));
+            this.leaderboards = new UpgradeLeaderboards(this);
+            this.leaderboards.seed();
 
             this.registerListener(new IslandChangeListener(this));
+            this.registerListener(new DataPreloadListener(this));
+            this.registerListener(new PlaceholderCacheListener(this));
+            if (this.isLevelProvided())
+                this.registerListener(new IslandLevelListener(this));
 
             //if (this.isLimitsProvided())
             //this.registerListener(new JoinPermCheckListener(this));
 
             getPlugin().getFlagsManager().registerFlag(UpgradesAddon.UPGRADES_RANK_RIGHT);
 
+            long metricsInterval = this.getSettings().getMetricsWriteInterval() * 20L;
+            if (metricsInterval > 0)
+                this.scheduler.runAsyncTimer(this::writeMetrics, metricsInterval);
+
             this.log("Upgrades addon enabled");
         } else {
             this.logError("Upgrades addon could not hook into any GameMode and therefore will not do anything");
@@ -122,24 +179,105 @@ public class UpgradesAddon extends Addon {
 
     @Override
     public void onDisable() {
+        if (this.timedUpgrades != null)
+            this.timedUpgrades.stop();
         if (this.upgradesCache != null)
-            this.upgradesCache.values().forEach(this.database::saveObjectAsync);
+            this.upgradesCache.values().forEach(this::saveUpgradesData);
+        if (this.ioExecutor != null)
+            this.ioExecutor.close(30, TimeUnit.SECONDS);
+        // After the saves, so their checkpoints are written
+        if (this.journal != null)
+            this.journal.close(30, TimeUnit.SECONDS);
+        if (this.invalidationBus != null)
+            this.invalidationBus.close();
+        if (this.auditLog != null)
+            this.auditLog.close(30, TimeUnit.SECONDS);
+        if (this.hooked)
+            this.writeMetrics();
     }
 
     @Override
     public void onReload() {
         super.onReload();
 
-        if (this.hooked)
-            this.settings = new Settings(this);
+        if (this.hooked) {
+            // Sections unchanged since the last load keep their compiled tiers
+            long start = System.nanoTime();
+            Settings previous = this.settings.get();
+            Settings settings = new Settings(this, previous);
+            if (!this.settings.compareAndSet(previous, settings)) {
+                this.logWarning("Config reloaded twice at the same time, only the first reload is applied");
+                return;
+            }
+
+            // Upgrades whose config didn't change are kept with their caches
+            Map<String, Upgrade> registered = this.upgradeRegistry.getUpgrades().stream()
+                    .filter(UpgradesAddon::isConfigUpgrade)
+                    .collect(Collectors.toMap(Upgrade::getName, upgrade -> upgrade));
+            List<Upgrade> upgrades = new ArrayList<>();
+            List<String> changed = new ArrayList<>();
+            for (Upgrade upgrade : this.createConfigUpgrades()) {
+                Upgrade current = registered.remove(upgrade.getName());
+                if (current != null && current.isUnchanged(previous)) {
+                    upgrades.add(current);
+                } else {
+                    upgrades.add(upgrade);
+                    changed.add(upgrade.getName());
+                }
+            }
+
+            this.upgradeRegistry.reconcile(UpgradesAddon::isConfigUpgrade, upgrades);
+            changed.forEach(this.placeholders::invalidateUpgrade);
+            registered.keySet().forEach(this.placeholders::invalidateUpgrade);
+            this.placeholders.refresh();
+
+            this.log("Reloaded upgrades in " + (System.nanoTime() - start) / 1000000 + " ms: "
+                    + (upgrades.size() - changed.size()) + " kept, " + changed.size() + " added or changed, "
+                    + registered.size() + " removed, " + settings.getReusedSections() + "/"
+                    + settings.getSections() + " config sections reused");
+            Set<String> restart = settings.getRestartChanges(previous);
+            if (!restart.isEmpty())
+                this.logWarning("Changes of " + String.join(", ", restart) + " are only applied after a restart");
+        }
         this.log("Island upgrade addon reloaded");
     }
 
     /**
-     * @return the settings
+     * Build the upgrades defined in the config
+     *
+     * @return New upgrades, in display order
+     */
+    private List<Upgrade> createConfigUpgrades() {
+        Settings settings = this.getSettings();
+        List<Upgrade> upgrades = new ArrayList<>();
+        if (this.isLimitsProvided()) {
+            settings.getEntityLimitsUpgrade().forEach(ent -> upgrades.add(new EntityLimitsUpgrade(this, ent)));
+            settings.getEntityGroupLimitsUpgrade().forEach(group -> upgrades.add(new EntityGroupLimitsUpgrade(this, group)));
+            settings.getMaterialsLimitsUpgrade().forEach(mat -> upgrades.add(new BlockLimitsUpgrade(this, mat)));
+        }
+
+        settings.getCommandUpgrade().forEach(cmd -> upgrades.add(new CommandUpgrade(this, cmd, settings.getCommandIcon(cmd))));
+
+        if (settings.getHasRangeUpgrade())
+            upgrades.add(new RangeUpgrade(this));
+        return upgrades;
+    }
+
+    private static boolean isConfigUpgrade(Upgrade upgrade) {
+        return upgrade instanceof EntityLimitsUpgrade || upgrade instanceof EntityGroupLimitsUpgrade
+                || upgrade instanceof BlockLimitsUpgrade || upgrade instanceof CommandUpgrade
+                || upgrade instanceof RangeUpgrade;
+    }
+
+    /**
+     * The settings are an immutable snapshot replaced as a whole on reload.
+     * Read them once and keep the reference to get a consistent view during
+     * an operation.
+     *
+     * @return the current settings
      */
     public Settings getSettings() {
-        return settings;
+        return this.settings.get();
     }
 
     /**
@@ -153,23 +291,479 @@ public class UpgradesAddon extends Addon {
         return this.database;
     }
 
+    /**
+     * @return Executor of the database loads and saves of the addon
+     */
+    public UpgradesIoExecutor getIoExecutor() {
+        return this.ioExecutor;
+    }
+
+    /**
+     * @return Audit log of the purchases, null if disabled
+     */
+    public PurchaseAuditLog getAuditLog() {
+        return this.auditLog;
+    }
+
+    /**
+     * @return Leaderboards of the islands by gamemode
+     */
+    public UpgradeLeaderboards getLeaderboards() {
+        return this.leaderboards;
+    }
+
+    /**
+     * @return Generator of the reports on the upgrades of every island
+     */
+    public UpgradesReportGenerator getReports() {
+        return this.reports;
+    }
+
+    /**
+     * @return Bonuses given to islands for a limited time
+     */
+    public TimedUpgradeManager getTimedUpgrades() {
+        return this.timedUpgrades;
+    }
+
+    /**
+     * Get the upgrades data of an island. It is read from the cache, the
+     * islands are cached by {@link #preloadUpgradesLevels} when a player joins
+     * or enters them. On a miss the data is loaded on the calling thread.
+     *
+     * @param targetIsland Unique id of the island
+     * @return Upgrades data of the island, empty if it has none
+     */
     public UpgradesData getUpgradesLevels(@NonNull String targetIsland) {
         UpgradesData upgradesData = this.upgradesCache.get(targetIsland);
-        if (upgradesData != null)
+        if (upgradesData != null) {
+            this.metrics.increment(MetricsRegistry.DATA_CACHE_HIT);
+            OperationTrace.cacheHit();
             return upgradesData;
-        UpgradesData data = this.database.objectExists(targetIsland) ?
-                Optional.ofNullable(this.database.loadObject(targetIsland)).orElse(new UpgradesData(targetIsland)) :
-                    new UpgradesData(targetIsland);
-        this.upgradesCache.put(targetIsland, data);
-        return data;
+        }
+        this.metrics.increment(MetricsRegistry.DATA_CACHE_MISS);
+        OperationTrace.cacheMiss();
+        DataLoadEvent event = new DataLoadEvent(targetIsland);
+        event.begin();
+        long start = this.metrics.start();
+        // After the saves of the island, so they are seen, but not behind the other islands
+        UpgradesData loaded = this.ioExecutor.call(targetIsland, () -> this.loadUpgradesData(targetIsland));
+        UpgradesData data = Optional.ofNullable(loaded).orElse(new UpgradesData(targetIsland));
+        this.metrics.record(MetricsRegistry.DATA_LOAD, start);
+        OperationTrace.end(Phase.DB_IO, start);
+        event.setFound(loaded != null);
+        event.commit();
+        // Preloaded meanwhile, the cached data may already be changed
+        UpgradesData previous = this.upgradesCache.putIfAbsent(targetIsland, data);
+        return previous != null ? previous : data;
+    }
+
+    /**
+     * Load the upgrades data of an island in the cache, off the server
+     * threads, so the next {@link #getUpgradesLevels(String)} doesn't wait
+     * for the database. It can be called from any thread.
+     *
+     * @param targetIsland Unique id of the island
+     * @return Future of the cached upgrades data
+     */
+    public CompletableFuture<UpgradesData> preloadUpgradesLevels(@NonNull String targetIsland) {
+        UpgradesData cached = this.upgradesCache.get(targetIsland);
+        if (cached != null)
+            return CompletableFuture.completedFuture(cached);
+
+        long start = this.metrics.start();
+        return this.ioExecutor.submit(targetIsland, () -> {
+            // Cached by a load of a server thread meanwhile
+            UpgradesData data = this.upgradesCache.get(targetIsland);
+            if (data != null)
+                return data;
+            data = Optional.ofNullable(this.loadUpgradesData(targetIsland)).orElse(new UpgradesData(targetIsland));
+            this.metrics.record(MetricsRegistry.DATA_LOAD, start);
+            UpgradesData previous = this.upgradesCache.putIfAbsent(targetIsland, data);
+            return previous != null ? previous : data;
+        });
+    }
+
+    /**
+     * Get the upgrades data of several islands, for leaderboards or admin tools.
+     *
+     * Cached islands are read from the cache, the others are loaded in the
+     * background by the io executor, behind the loads of the players, and are
+     * not added to the cache, their data should only be read. It can be
+     * called from any thread.
+     *
+     * @param targetIslands Unique ids of the islands
+     * @return Future of the upgrades data by island id, islands without data get an empty one
+     */
+    public CompletableFuture<Map<String, UpgradesData>> getUpgradesLevels(@NonNull Collection<String> targetIslands) {
+        Map<String, UpgradesData> result = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        targetIslands.forEach(island -> {
+            UpgradesData data = this.upgradesCache.get(island);
+            if (data != null)
+                result.put(island, data);
+            else
+                misses.add(island);
+        });
+
+        if (misses.isEmpty())
+            return CompletableFuture.completedFuture(Collections.unmodifiableMap(result));
+
+        long start = this.metrics.start();
+        Map<String, CompletableFuture<UpgradesData>> loads = new HashMap<>();
+        misses.forEach(island -> loads.put(island, this.ioExecutor.submitBackground(island, () -> this.loadUpgradesData(island))));
+
+        return CompletableFuture.allOf(loads.values().toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            loads.forEach((island, load) -> {
+                // The island may have been cached and changed during the load
+                UpgradesData data = this.upgradesCache.getOrDefault(island, load.join());
+                result.put(island, data != null ? data : new UpgradesData(island));
+            });
+            this.metrics.record(MetricsRegistry.DATA_BULK_LOAD, start);
+            return Collections.unmodifiableMap(result);
+        });
     }
 
     public void uncacheIsland(@Nullable String targetIsland, boolean save) {
+        if (targetIsland == null)
+            return;
+        if (this.placeholders != null)
+            this.placeholders.invalidate(targetIsland);
         UpgradesData data = this.upgradesCache.remove(targetIsland);
         if (data == null)
             return;
         if (save)
-            this.database.saveObjectAsync(data);
+            this.saveUpgradesData(data);
+    }
+
+    private UpgradesData loadUpgradesData(String island) {
+        return this.database.objectExists(island) ? this.database.loadObject(island) : null;
+    }
+
+    /**
+     * Save data with the next version. BentoBox has no conditional save, so
+     * the stored version is read first: if it changed, the levels changed
+     * since the last save of this data are applied on the stored ones. The
+     * data is then read back: if another node saved the same version without
+     * this save, the levels are applied on its save and saved again. Runs in
+     * the island lane of the io executor.
+     */
+    private boolean storeUpgradesData(UpgradesData data) {
+        // Read before the copy, the changes journaled up to it are in the copy
+        long journalSequence = this.journal == null ? 0 : this.journal.lastSequence();
+        UpgradesData stored = this.loadUpgradesData(data.getUniqueId());
+        if (stored != null && stored.getVersion() != data.getVersion())
+            this.metrics.increment(MetricsRegistry.DATA_SAVE_CONFLICT);
+
+        for (int attempt = 0; attempt < SAVE_ATTEMPTS; attempt++) {
+            UpgradesData copy = data.prepareSave(stored);
+            if (!Boolean.TRUE.equals(this.database.saveObjectAsync(copy).join()))
+                return false;
+
+            stored = this.loadUpgradesData(data.getUniqueId());
+            if (copy.isIncludedIn(stored)) {
+                data.saved(copy);
+                if (this.journal != null)
+                    this.journal.checkpoint(data.getUniqueId(), journalSequence);
+                this.publishSaved(copy);
+                return true;
+            }
+            // Overwritten by a save based on the previous version
+            this.metrics.increment(MetricsRegistry.DATA_SAVE_CONFLICT);
+        }
+        this.logWarning("Upgrades of island " + data.getUniqueId() + " overwritten by other servers "
+                + SAVE_ATTEMPTS + " times, they are saved again later");
+        return false;
+    }
+
+    /**
+     * Send the levels changed by a save to the other nodes. Only stored
+     * levels are sent: a node applying a level that isn't stored yet would
+     * save it and this node would then apply its delta on it a second time.
+     */
+    private void publishSaved(UpgradesData saved) {
+        if (this.invalidationBus == null)
+            return;
+        Map<String, Integer> levels = saved.getUpgradesLevels();
+        saved.getPendingUpgrades().forEach(upgradeName -> this.invalidationBus.publish(new LevelChange(
+                this.invalidationBus.getNodeId(), saved.getUniqueId(), upgradeName, levels.getOrDefault(upgradeName, 1))));
+    }
+
+    private void saveUpgradesData(UpgradesData data) {
+        DataSaveEvent event = new DataSaveEvent(data.getUniqueId());
+        event.begin();
+        long start = this.metrics.start();
+        // Waiting for the save keeps the next load of the island behind it
+        this.ioExecutor.submit(data.getUniqueId(), () -> this.storeUpgradesData(data))
+        .whenComplete((saved, e) -> {
+            if (e != null)
+                this.logError("Couldn't save upgrades of island " + data.getUniqueId() + ": " + e.getMessage());
+            this.metrics.record(MetricsRegistry.DATA_SAVE, start);
+            if (!Boolean.TRUE.equals(saved))
+                this.metrics.increment(MetricsRegistry.DATA_SAVE_FAILURE);
+            event.setSuccess(Boolean.TRUE.equals(saved));
+            event.commit();
+        });
+    }
+
+    /**
+     * Called when the level of an upgrade of an island changed
+     *
+     * @param islandId    Unique id of the island
+     * @param upgradeName Name of the upgrade
+     * @param oldLevel    Level before the change
+     * @param newLevel    Level after the change
+     * @param money       Money spent on the change, negative when refunded
+     * @param version     Version of the upgrades data the change was made on,
+     *                    see {@link UpgradesData#changeUpgradeLevel}
+     */
+    public void notifyUpgradeLevelChanged(String islandId, String upgradeName, int oldLevel, int newLevel, long money,
+            long version) {
+        if (this.journal != null)
+            this.journal.append(islandId, upgradeName, newLevel - oldLevel, money, version);
+        if (this.placeholders != null)
+            this.placeholders.invalidate(islandId, upgradeName);
+        if (this.invalidationBus != null) {
+            // Saved right away, the change is sent to the other nodes once stored
+            UpgradesData data = this.upgradesCache.get(islandId);
+            if (data != null)
+                this.saveUpgradesData(data);
+        }
+    }
+
+    /**
+     * @return Future completed once the level changes made before are written
+     *         to the journal, completed right away without journal
+     */
+    public CompletableFuture<Void> syncJournal() {
+        return this.journal == null ? CompletableFuture.completedFuture(null) : this.journal.sync();
+    }
+
+    /**
+     * @return Bus sharing the level changes with the other servers, null if disabled
+     */
+    public InvalidationBus getInvalidationBus() {
+        return this.invalidationBus;
+    }
+
+    /**
+     * Share the level changes through bus, to run several nodes outside of a server
+     *
+     * @param bus Bus of this node
+     */
+    public void setInvalidationBus(InvalidationBus bus) {
+        if (this.invalidationBus != null)
+            this.invalidationBus.close();
+        this.invalidationBus = bus;
+        bus.subscribe(this::onRemoteLevelChange);
+    }
+
+    private void setupInvalidationBus() {
+        Settings settings = this.getSettings();
+        String type = settings.getNetworkInvalidation();
+        if (type.equals("none"))
+            return;
+
+        if (type.equals("file")) {
+            try {
+                this.setInvalidationBus(new FileInvalidationBus(this, settings.getNetworkFile(this.getDataFolder()),
+                        settings.getNetworkNodeId(), settings.getNetworkPollInterval()));
+                this.log("Sharing upgrade changes as node " + settings.getNetworkNodeId());
+            } catch (IOException e) {
+                this.logError("Couldn't open the network invalidation file: " + e.getMessage());
+            }
+        } else
+            this.logError("Unknown network invalidation type: " + type);
+    }
+
+    /**
+     * Open the journal and save again the level changes it has after the last
+     * save of their island. The saves are queued before any load of the
+     * islands, so the loads read the replayed levels.
+     *
+     * A change is only replayed on the version it was made on. If the stored
+     * version is newer, the change was saved by this node before the crash
+     * or another node saved the island without it: this can't be told apart,
+     * so it is skipped rather than counted twice or lowering the level.
+     */
+    private void setupJournal() {
+        if (!this.getSettings().isDatabaseJournal())
+            return;
+
+        try {
+            this.journal = new PurchaseJournal(this, this.metrics, this.getDataFolder().toPath().resolve(JOURNAL_FILE));
+        } catch (IOException e) {
+            this.logError("Couldn't open the purchase journal, levels are only saved with the islands: " + e.getMessage());
+            return;
+        }
+
+        Map<String, List<PurchaseJournal.Change>> recovered = this.journal.getRecovered();
+        if (recovered.isEmpty())
+            return;
+        this.log("Saving the upgrades of " + recovered.size() + " islands from the purchase journal");
+        recovered.forEach((islandId, changes) -> this.ioExecutor.submit(islandId, () -> {
+            UpgradesData data = Optional.ofNullable(this.loadUpgradesData(islandId)).orElse(new UpgradesData(islandId));
+            int skipped = 0;
+            for (PurchaseJournal.Change change : changes) {
+                if (change.getVersion() != data.getVersion()) {
+                    skipped++;
+                    continue;
+                }
+                String name = change.getUpgradeName();
+                data.changeUpgradeLevel(name, data.getUpgradeLevel(name) + change.getDelta(), change.getMoney());
+            }
+            if (skipped > 0)
+                this.logWarning("Skipped " + skipped + " journaled upgrade changes of island " + islandId
+                        + ", the island was saved since");
+            return !data.hasPendingChanges() || this.storeUpgradesData(data);
+        }).whenComplete((saved, e) -> {
+            if (e != null || !Boolean.TRUE.equals(saved))
+                this.logError("Couldn't save the journaled upgrades of island " + islandId);
+            else
+                this.metrics.increment(MetricsRegistry.JOURNAL_REPLAY);
+        }));
+    }
+
+    private void setupAuditLog() {
+        Settings settings = this.getSettings();
+        if (!settings.isAuditEnabled())
+            return;
+
+        try {
+            this.auditLog = new PurchaseAuditLog(this, settings.getAuditFolder(this.getDataFolder()),
+                    settings.getAuditMaxSize(), settings.getAuditRotateInterval());
+        } catch (IOException e) {
+            this.logError("Couldn't open the audit log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Update the cached data of the island with a change made by another node.
+     * If the island isn't cached there is nothing to do, it will be loaded
+     * from the database.
+     */
+    private void onRemoteLevelChange(LevelChange change) {
+        if (!this.upgradesCache.containsKey(change.getIslandId()))
+            return;
+
+        this.metrics.increment(MetricsRegistry.DATA_REMOTE_CHANGE);
+        Optional<Island> island = this.getIslands().getIslandById(change.getIslandId());
+        if (island.isEmpty()) {
+            // Nowhere to apply it, the next load will read the database
+            this.upgradesCache.remove(change.getIslandId());
+            return;
+        }
+
+        // The data is only changed on the thread owning the island
+        this.scheduler.island(island.get()).execute(() -> {
+            UpgradesData data = this.upgradesCache.get(change.getIslandId());
+            if (data == null)
+                return;
+            data.setStoredUpgradeLevel(change.getUpgradeName(), change.getLevel());
+            this.leaderboards.update(island.get(), data);
+            if (this.placeholders != null)
+                this.placeholders.invalidate(change.getIslandId(), change.getUpgradeName());
+        });
+    }
+
+    /**
+     * @return the cached placeholders of the upgrades
+     */
+    public UpgradesPlaceholders getPlaceholders() {
+        return this.placeholders;
+    }
+
+    /**
+     * @return the registry of the performance metrics of the addon
+     */
+    public MetricsRegistry getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @return the watchdog logging the slow panel opens and purchases
+     */
+    public SlowOperationWatchdog getSlowOperationWatchdog() {
+        return this.slowOperationWatchdog;
+    }
+
+    private void writeMetrics() {
+        try {
+            this.metrics.writeReport(new File(this.getDataFolder(), "metrics.txt").toPath());
+        } catch (IOException e) {
+            this.logError("Couldn't write metrics file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Executor running tasks on the main thread (the global region
+     *         thread on a region threaded server), directly if already on it
+     */
+    public Executor getMainThreadExecutor() {
+        return this.scheduler.global();
+    }
+
+    /**
+     * Run supplier on the main thread
+     *
+     * @param supplier Task to run, it is run directly if already on the main thread
+     * @return Future of the supplier result
+     */
+    public <T> CompletableFuture<T> supplySync(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, this.scheduler.global());
+    }
+
+    /**
+     * Run supplier on the thread owning the island
+     *
+     * @param island   Island concerned by the task
+     * @param supplier Task to run, it is run directly if already on the owning thread
+     * @return Future of the supplier result
+     */
+    public <T> CompletableFuture<T> supplyForIsland(Island island, Supplier<T> supplier) {
+        return this.scheduler.supply(island, supplier);
+    }
+
+    /**
+     * @return Scheduler of the island scoped and async work
+     */
+    public UpgradeScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * Replace the scheduler, to run the addon outside of a server
+     *
+     * @param scheduler New scheduler
+     */
+    public void setScheduler(UpgradeScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Hook the addon in the gamemodes as onEnable does, with the given stand-ins
+     * of the server dependencies, to run it outside of a server (load test)
+     *
+     * @param gameModes   Names of the gamemodes
+     * @param database    Database of the upgrades data
+     * @param levelAddon  Level addon, null if none
+     * @param limitsAddon Limits addon, null if none
+     * @param vault       Vault hook, null if none
+     */
+    void hook(List<String> gameModes, Database<UpgradesData> database, Level levelAddon, Limits limitsAddon,
+            VaultHook vault) {
+        this.hooked = true;
+        this.upgradesManager = new UpgradesManager(this);
+        this.upgradesManager.addGameModes(gameModes);
+        this.upgradeRegistry = new UpgradeRegistry();
+        this.database = database;
+        Settings settings = this.getSettings();
+        this.ioExecutor = new UpgradesIoExecutor(this, settings.getDatabaseMaxConcurrency(),
+                settings.isDatabaseVirtualThreads());
+        this.upgradesCache = new ConcurrentHashMap<>();
+        this.levelAddon = levelAddon;
+        this.limitsAddon = limitsAddon;
+        this.vault = vault;
     }
 
     public Level getLevelAddon() {
@@ -196,32 +790,106 @@ public class UpgradesAddon extends Addon {
         return this.vault != null;
     }
 
+    /**
+     * @return Every registered upgrade in display order
+     */
     public Set<Upgrade> getAvailableUpgrades() {
-        return this.upgrade;
+        return Collections.unmodifiableSet(new LinkedHashSet<>(this.upgradeRegistry.getUpgrades()));
+    }
+
+    /**
+     * @return the registry giving the ids and the per gamemode catalogs of the upgrades
+     */
+    public UpgradeRegistry getUpgradeRegistry() {
+        return this.upgradeRegistry;
+    }
+
+    /**
+     * Mark a purchase in progress on the island, so that a second click can't
+     * buy the same level twice while the first one is running
+     *
+     * @param islandId Island of the purchase
+     * @return false if a purchase is already in progress on the island
+     */
+    public boolean beginPurchase(String islandId) {
+        return this.purchasesInProgress.add(islandId);
     }
 
+    /**
+     * @param islandId Island of the purchase that ended
+     */
+    public void endPurchase(String islandId) {
+        this.purchasesInProgress.remove(islandId);
+    }
+
+    /**
+     * Register an upgrade shown in the upgrade panel. It should be called on the
+     * main thread, see {@link Upgrade} for the threading of its methods.
+     *
+     * @param upgrade Upgrade to register
+     */
     public void registerUpgrade(Upgrade upgrade) {
-        this.upgrade.add(upgrade);
+        this.upgradeRegistry.register(upgrade);
     }
 
-    private Settings settings;
+    /**
+     * Register several upgrades shown in the upgrade panel, cheaper than
+     * registering them one by one. It should be called on the main thread.
+     *
+     * @param upgrades Upgrades to register, in display order
+     * @return Number of upgrades registered, upgrades with an already
+     *         registered name are skipped
+     */
+    public int registerUpgrades(Collection<? extends Upgrade> upgrades) {
+        return this.upgradeRegistry.registerAll(upgrades);
+    }
+
+    private static final String JOURNAL_FILE = "purchases.journal";
+
+    private static final int SAVE_ATTEMPTS = 3;
+
+    private final AtomicReference<Settings> settings = new AtomicReference<>();
 
     private boolean hooked;
 
     private UpgradesManager upgradesManager;
 
-    private Set<Upgrade> upgrade;
+    private UpgradeRegistry upgradeRegistry;
 
     private Database<UpgradesData> database;
 
+    private UpgradesIoExecutor ioExecutor;
+
+    private InvalidationBus invalidationBus;
+
+    private PurchaseJournal journal;
+
+    private PurchaseAuditLog auditLog;
+
     private Map<String, UpgradesData> upgradesCache;
 
+    private final Set<String> purchasesInProgress = ConcurrentHashMap.newKeySet();
+
     private Level levelAddon;
 
     private Limits limitsAddon;
 
     private VaultHook vault;
 
+    private UpgradesPlaceholders placeholders;
+
+    private TimedUpgradeManager timedUpgrades;
+
+    private UpgradeLeaderboards leaderboards;
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    private final SlowOperationWatchdog slowOperationWatchdog = new SlowOperationWatchdog(this);
+
+    private final UpgradesReportGenerator reports = new UpgradesReportGenerator(this);
+
+    private UpgradeScheduler scheduler = UpgradeScheduler.create(this);
+
     public final static Flag UPGRADES_RANK_RIGHT =
             new Flag.Builder("UPGRADES_RANK_RIGHT", Material.GOLD_INGOT)
             .type(Flag.Type.PROTECTION)
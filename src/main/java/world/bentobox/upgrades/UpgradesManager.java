@@ -20,6 +20,9 @@ import world.bentobox.bentobox.api.addons.GameModeAddon;
 import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.limits.objects.IslandBlockCount;
 import world.bentobox.upgrades.config.Settings;
+import world.bentobox.upgrades.metrics.MetricsRegistry;
+import world.bentobox.upgrades.metrics.OperationTrace;
+import world.bentobox.upgrades.metrics.Phase;
 
 public class UpgradesManager {
 
@@ -47,7 +50,9 @@ public class UpgradesManager {
 			return 0;
 		}
 
+		long start = OperationTrace.start();
 		int islandLevel = (int) this.addon.getLevelAddon().getIslandLevel(island.getWorld(), island.getOwner());
+		OperationTrace.end(Phase.LEVEL_LOOKUP, start);
 
 		if (islandLevel < 0) {
 			this.addon.logWarning("Island " + island.getUniqueId() + " has an invalid level: " + islandLevel);
@@ -63,8 +68,9 @@ public class UpgradesManager {
 		if (name == null)
 			return Collections.emptyList();
 
-		Map<String, Settings.UpgradeTier> defaultTiers = this.addon.getSettings().getDefaultRangeUpgradeTierMap();
-		Map<String, Settings.UpgradeTier> customAddonTiers = this.addon.getSettings().getAddonRangeUpgradeTierMap(name);
+		Settings settings = this.addon.getSettings();
+		Map<String, Settings.UpgradeTier> defaultTiers = settings.getDefaultRangeUpgradeTierMap();
+		Map<String, Settings.UpgradeTier> customAddonTiers = settings.getAddonRangeUpgradeTierMap(name);
 
 		List<Settings.UpgradeTier> tierList;
 
@@ -93,9 +99,10 @@ public class UpgradesManager {
 			return Collections.emptyMap();
 		}
 
-		Map<Material, Map<String, Settings.UpgradeTier>> defaultTiers = this.addon.getSettings()
+		Settings settings = this.addon.getSettings();
+		Map<Material, Map<String, Settings.UpgradeTier>> defaultTiers = settings
 				.getDefaultBlockLimitsUpgradeTierMap();
-		Map<Material, Map<String, Settings.UpgradeTier>> customAddonTiers = this.addon.getSettings()
+		Map<Material, Map<String, Settings.UpgradeTier>> customAddonTiers = settings
 				.getAddonBlockLimitsUpgradeTierMap(name);
 
 		Map<Material, List<Settings.UpgradeTier>> tierList = new EnumMap<>(Material.class);
@@ -132,9 +139,10 @@ public class UpgradesManager {
 			return Collections.emptyMap();
 		}
 
-		Map<EntityType, Map<String, Settings.UpgradeTier>> defaultTiers = this.addon.getSettings()
+		Settings settings = this.addon.getSettings();
+		Map<EntityType, Map<String, Settings.UpgradeTier>> defaultTiers = settings
 				.getDefaultEntityLimitsUpgradeTierMap();
-		Map<EntityType, Map<String, Settings.UpgradeTier>> customAddonTiers = this.addon.getSettings()
+		Map<EntityType, Map<String, Settings.UpgradeTier>> customAddonTiers = settings
 				.getAddonEntityLimitsUpgradeTierMap(name);
 
 		Map<EntityType, List<Settings.UpgradeTier>> tierList = new EnumMap<>(EntityType.class);
@@ -171,9 +179,10 @@ public class UpgradesManager {
 			return Collections.emptyMap();
 		}
 
-		Map<String, Map<String, Settings.UpgradeTier>> defaultTiers = this.addon.getSettings()
+		Settings settings = this.addon.getSettings();
+		Map<String, Map<String, Settings.UpgradeTier>> defaultTiers = settings
 				.getDefaultEntityGroupLimitsUpgradeTierMap();
-		Map<String, Map<String, Settings.UpgradeTier>> customAddonTiers = this.addon.getSettings()
+		Map<String, Map<String, Settings.UpgradeTier>> customAddonTiers = settings
 				.getAddonEntityGroupLimitsUpgradeTierMap(name);
 
 		Map<String, List<Settings.UpgradeTier>> tierList = new TreeMap<>();
@@ -210,9 +219,10 @@ public class UpgradesManager {
 			return Collections.emptyMap();
 		}
 
-		Map<String, Map<String, Settings.CommandUpgradeTier>> defaultTiers = this.addon.getSettings()
+		Settings settings = this.addon.getSettings();
+		Map<String, Map<String, Settings.CommandUpgradeTier>> defaultTiers = settings
 				.getDefaultCommandUpgradeTierMap();
-		Map<String, Map<String, Settings.CommandUpgradeTier>> customAddonTiers = this.addon.getSettings()
+		Map<String, Map<String, Settings.CommandUpgradeTier>> customAddonTiers = settings
 				.getAddonCommandUpgradeTierMap(name);
 
 		Map<String, List<Settings.CommandUpgradeTier>> tierList = new TreeMap<>();
@@ -243,7 +253,9 @@ public class UpgradesManager {
 	}
 
 	public Settings.UpgradeTier getRangeUpgradeTier(int rangeLevel, World world) {
+		long start = OperationTrace.start();
 		List<Settings.UpgradeTier> tierList = this.getAllRangeUpgradeTiers(world);
+		OperationTrace.end(Phase.TIER_RESOLUTION, start);
 
 		if (tierList.isEmpty())
 			return null;
@@ -262,7 +274,9 @@ public class UpgradesManager {
 	}
 
 	public Settings.UpgradeTier getBlockLimitsUpgradeTier(Material mat, int limitsLevel, World world) {
+		long start = OperationTrace.start();
 		Map<Material, List<Settings.UpgradeTier>> matTierList = this.getAllBlockLimitsUpgradeTiers(world);
+		OperationTrace.end(Phase.TIER_RESOLUTION, start);
 
 		if (matTierList.isEmpty()) {
 			return null;
@@ -282,7 +296,9 @@ public class UpgradesManager {
 	}
 
 	public Settings.UpgradeTier getEntityLimitsUpgradeTier(EntityType ent, int limitsLevel, World world) {
+		long start = OperationTrace.start();
 		Map<EntityType, List<Settings.UpgradeTier>> entTierList = this.getAllEntityLimitsUpgradeTiers(world);
+		OperationTrace.end(Phase.TIER_RESOLUTION, start);
 
 		if (entTierList.isEmpty()) {
 			return null;
@@ -303,7 +319,9 @@ public class UpgradesManager {
 	}
 
 	public Settings.UpgradeTier getEntityGroupLimitsUpgradeTier(String group, int limitsLevel, World world) {
+		long start = OperationTrace.start();
 		Map<String, List<Settings.UpgradeTier>> entTierList = this.getAllEntityGroupLimitsUpgradeTiers(world);
+		OperationTrace.end(Phase.TIER_RESOLUTION, start);
 
 		if (entTierList.isEmpty()) {
 			return null;
@@ -324,7 +342,9 @@ public class UpgradesManager {
 	}
 
 	public Settings.CommandUpgradeTier getCommandUpgradeTier(String cmd, int cmdLevel, World world) {
+		long start = OperationTrace.start();
 		Map<String, List<Settings.CommandUpgradeTier>> cmdTierList = this.getAllCommandUpgradeTiers(world);
+		OperationTrace.end(Phase.TIER_RESOLUTION, start);
 
 		if (cmdTierList.isEmpty()) {
 			return null;
@@ -350,13 +370,20 @@ public class UpgradesManager {
 		if (rangeUpgradeTier == null)
 			return null;
 
+		return this.getUpgradeInfos(rangeUpgradeTier, rangeLevel, islandLevel, numberPeople);
+	}
+
+	private Map<String, Integer> getUpgradeInfos(Settings.UpgradeTier upgradeTier, int level, int islandLevel,
+			int numberPeople) {
+		long start = this.addon.getMetrics().start();
 		Map<String, Integer> info = new TreeMap<>();
 
-		info.put("islandMinLevel",
-				(int) rangeUpgradeTier.calculateIslandMinLevel(rangeLevel, islandLevel, numberPeople));
-		info.put("vaultCost", (int) rangeUpgradeTier.calculateVaultCost(rangeLevel, islandLevel, numberPeople));
-		info.put("upgrade", (int) rangeUpgradeTier.calculateUpgrade(rangeLevel, islandLevel, numberPeople));
+		info.put("islandMinLevel", (int) upgradeTier.calculateIslandMinLevel(level, islandLevel, numberPeople));
+		info.put("vaultCost", (int) upgradeTier.calculateVaultCost(level, islandLevel, numberPeople));
+		info.put("upgrade", (int) upgradeTier.calculateUpgrade(level, islandLevel, numberPeople));
 
+		this.addon.getMetrics().record(MetricsRegistry.FORMULA_EVAL, start);
+		OperationTrace.end(Phase.FORMULA_EVAL, start);
 		return info;
 	}
 
@@ -389,14 +416,7 @@ public class UpgradesManager {
 			return null;
 		}
 
-		Map<String, Integer> info = new TreeMap<>();
-
-		info.put("islandMinLevel",
-				(int) limitsUpgradeTier.calculateIslandMinLevel(limitsLevel, islandLevel, numberPeople));
-		info.put("vaultCost", (int) limitsUpgradeTier.calculateVaultCost(limitsLevel, islandLevel, numberPeople));
-		info.put("upgrade", (int) limitsUpgradeTier.calculateUpgrade(limitsLevel, islandLevel, numberPeople));
-
-		return info;
+		return this.getUpgradeInfos(limitsUpgradeTier, limitsLevel, islandLevel, numberPeople);
 	}
 
 	public int getBlockLimitsPermissionLevel(Material mat, int limitsLevel, World world) {
@@ -428,14 +448,7 @@ public class UpgradesManager {
 			return null;
 		}
 
-		Map<String, Integer> info = new TreeMap<>();
-
-		info.put("islandMinLevel",
-				(int) limitsUpgradeTier.calculateIslandMinLevel(limitsLevel, islandLevel, numberPeople));
-		info.put("vaultCost", (int) limitsUpgradeTier.calculateVaultCost(limitsLevel, islandLevel, numberPeople));
-		info.put("upgrade", (int) limitsUpgradeTier.calculateUpgrade(limitsLevel, islandLevel, numberPeople));
-
-		return info;
+		return this.getUpgradeInfos(limitsUpgradeTier, limitsLevel, islandLevel, numberPeople);
 	}
 
 	public Map<String, Integer> getEntityGroupLimitsUpgradeInfos(String group, int limitsLevel, int islandLevel,
@@ -445,14 +458,7 @@ public class UpgradesManager {
 			return null;
 		}
 
-		Map<String, Integer> info = new TreeMap<>();
-
-		info.put("islandMinLevel",
-				(int) limitsUpgradeTier.calculateIslandMinLevel(limitsLevel, islandLevel, numberPeople));
-		info.put("vaultCost", (int) limitsUpgradeTier.calculateVaultCost(limitsLevel, islandLevel, numberPeople));
-		info.put("upgrade", (int) limitsUpgradeTier.calculateUpgrade(limitsLevel, islandLevel, numberPeople));
-
-		return info;
+		return this.getUpgradeInfos(limitsUpgradeTier, limitsLevel, islandLevel, numberPeople);
 	}
 
 	public int getEntityLimitsPermissionLevel(EntityType ent, int limitsLevel, World world) {
@@ -506,13 +512,7 @@ public class UpgradesManager {
 			return null;
 		}
 
-		Map<String, Integer> info = new TreeMap<>();
-
-		info.put("islandMinLevel", (int) cmdUpgradeTier.calculateIslandMinLevel(cmdLevel, islandLevel, numberPeople));
-		info.put("vaultCost", (int) cmdUpgradeTier.calculateVaultCost(cmdLevel, islandLevel, numberPeople));
-		info.put("upgrade", (int) cmdUpgradeTier.calculateUpgrade(cmdLevel, islandLevel, numberPeople));
-
-		return info;
+		return this.getUpgradeInfos(cmdUpgradeTier, cmdLevel, islandLevel, numberPeople);
 	}
 
 	public int getCommandPermissionLevel(String cmd, int cmdLevel, World world) {
@@ -0,0 +1,34 @@
+package world.bentobox.upgrades.api;
+
+/**
+ * A step of a {@link PurchaseTransaction}
+ *
+ * Every step of the transaction is prepared before any is committed. When a
+ * step fails to commit, the steps already committed are compensated in
+ * reverse order.
+ */
+public interface PurchaseStep {
+
+	/**
+	 * Check that the step can be committed, it should have no side effect
+	 *
+	 * @return If the step can be committed
+	 */
+	default boolean prepare() {
+		return true;
+	}
+
+	/**
+	 * Apply the step
+	 *
+	 * @return If the step was applied
+	 */
+	boolean commit();
+
+	/**
+	 * Undo the step after it was committed, because a later step failed
+	 */
+	default void compensate() {
+	}
+
+}
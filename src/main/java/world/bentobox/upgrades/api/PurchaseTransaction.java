@@ -0,0 +1,94 @@
+package world.bentobox.upgrades.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import world.bentobox.bentobox.api.addons.Addon;
+
+/**
+ * Purchase of an upgrade as a list of {@link PurchaseStep}: economy, level,
+ * then the effects of the upgrade.
+ *
+ * Either every step is committed, or the committed ones are compensated and
+ * the purchase fails. Steps that can't be undone (like commands) should be
+ * added last.
+ */
+public class PurchaseTransaction {
+
+	public PurchaseTransaction(Addon addon, String description) {
+		this.addon = addon;
+		this.description = description;
+		this.steps = new ArrayList<>();
+		this.onSuccess = new ArrayList<>();
+	}
+
+	/**
+	 * @param step Step to add after the current ones
+	 * @return this
+	 */
+	public PurchaseTransaction step(PurchaseStep step) {
+		this.steps.add(step);
+		return this;
+	}
+
+	/**
+	 * @param action Action run once every step is committed, like a message
+	 * @return this
+	 */
+	public PurchaseTransaction onSuccess(Runnable action) {
+		this.onSuccess.add(action);
+		return this;
+	}
+
+	/**
+	 * Prepare and commit every step
+	 *
+	 * @return If the purchase was done, if not nothing was changed
+	 */
+	public boolean execute() {
+		for (PurchaseStep step : this.steps) {
+			if (!step.prepare())
+				return false;
+		}
+
+		Deque<PurchaseStep> committed = new ArrayDeque<>(this.steps.size());
+		for (PurchaseStep step : this.steps) {
+			boolean done;
+			try {
+				done = step.commit();
+			} catch (RuntimeException e) {
+				this.addon.logError("Purchase of " + this.description + " failed: " + e.getMessage());
+				done = false;
+			}
+			if (!done) {
+				this.compensate(committed);
+				return false;
+			}
+			committed.push(step);
+		}
+
+		this.onSuccess.forEach(Runnable::run);
+		return true;
+	}
+
+	private void compensate(Deque<PurchaseStep> committed) {
+		while (!committed.isEmpty()) {
+			try {
+				committed.pop().compensate();
+			} catch (RuntimeException e) {
+				this.addon.logError("Couldn't roll back the purchase of " + this.description + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private final Addon addon;
+
+	private final String description;
+
+	private final List<PurchaseStep> steps;
+
+	private final List<Runnable> onSuccess;
+
+}
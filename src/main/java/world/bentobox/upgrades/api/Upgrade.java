@@ -3,10 +3,15 @@ package world.bentobox.upgrades.api;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.lang.math.NumberUtils;
 import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
 
 import net.milkbowl.vault.economy.EconomyResponse;
 import world.bentobox.bentobox.api.addons.Addon;
@@ -14,11 +19,27 @@ import world.bentobox.bentobox.api.addons.Addon.State;
 import world.bentobox.bentobox.api.user.User;
 import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.audit.AuditRecord;
+import world.bentobox.upgrades.audit.PurchaseAuditLog;
+import world.bentobox.upgrades.config.Settings;
 import world.bentobox.upgrades.dataobjects.UpgradesData;
+import world.bentobox.upgrades.leaderboard.UpgradeLeaderboards;
+import world.bentobox.upgrades.metrics.OperationTrace;
+import world.bentobox.upgrades.metrics.Phase;
 
 /**
  * Upgrade Object for IslandUpgradeAddon. Extend this to create a new upgrade
  *
+ * Threading: {@link #updateUpgradeValue}, {@link #isShowed},
+ * {@link #canUpgrade} and {@link #doUpgrade} are always called on the thread
+ * owning the island: the main thread, or the island region thread on a region
+ * threaded server. The panel uses their async variants, which by default run
+ * the synchronous method on that thread. Override an async variant to do
+ * slow work (database, web shop...) off the server threads, and hop back with
+ * {@link UpgradesAddon#supplyForIsland} before using the Bukkit or BentoBox
+ * API. The upgrade values and descriptions can be read and set from any
+ * thread.
+ *
  * @author Ikkino
  *
  */
@@ -39,9 +60,6 @@ public abstract class Upgrade {
 		this.icon = icon;
 		this.addon = addon;
 
-		this.playerCache = new TreeMap<>();
-		this.ownDescription = new TreeMap<>();
-
 		Optional<Addon> islandUpgrade = this.addon.getAddonByName("upgrades");
 		if (!islandUpgrade.isPresent()) {
 			this.addon.logError("Island Upgrade Addon couldn't be found");
@@ -52,6 +70,25 @@ public abstract class Upgrade {
 		}
 	}
 
+	/**
+	 * Initialize an upgrade of the upgrades addon itself. Nothing is looked up
+	 * or logged, so it is cheap to create a lot of them with
+	 * {@link UpgradesAddon#registerUpgrades}.
+	 *
+	 * @param addon       The upgrades addon
+	 * @param name        This is the name for the upgrade that will be used in the
+	 *                    DataBase
+	 * @param displayName This is the name that is shown to the user
+	 * @param icon        This is the icon shown to the user
+	 */
+	public Upgrade(UpgradesAddon addon, String name, String displayName, Material icon) {
+		this.name = name;
+		this.displayName = displayName;
+		this.icon = icon;
+		this.addon = addon;
+		this.upgradesAddon = addon;
+	}
+
 	/**
 	 * This function is called every times a user open the interface You should make
 	 * it update the upgradeValues
@@ -61,6 +98,92 @@ public abstract class Upgrade {
 	 */
 	public abstract void updateUpgradeValue(User user, Island island);
 
+	/**
+	 * Async variant of {@link #updateUpgradeValue(User, Island)} used by the
+	 * interface, it is called on the island thread. The interface is shown once
+	 * the returned future is completed.
+	 *
+	 * By default it calls updateUpgradeValue on the island thread
+	 *
+	 * @param user   This is the user that ask for the interface
+	 * @param island This is the island concerned by the interface
+	 * @return Future completed once the upgradeValues are updated
+	 */
+	public CompletableFuture<Void> updateUpgradeValueAsync(User user, Island island) {
+		return this.upgradesAddon.supplyForIsland(island, () -> {
+			this.updateUpgradeValue(user, island);
+			return null;
+		});
+	}
+
+	/**
+	 * This function is called once per gamemode when the upgrade panel content is
+	 * computed. If it return false, the upgrade is never shown in this gamemode
+	 *
+	 * @param gameMode Name of the gamemode
+	 * @return If the upgrade can be used in the gamemode
+	 */
+	public boolean isAvailableFor(String gameMode) {
+		return true;
+	}
+
+	/**
+	 * Called on config reload for the upgrades built from the config. If it
+	 * returns true the upgrade is kept with its cached values, else it is
+	 * replaced by one built from the new config.
+	 *
+	 * @param previous Settings before the reload, the new ones are already set
+	 * @return If the config of the upgrade didn't change
+	 */
+	public boolean isUnchanged(Settings previous) {
+		return false;
+	}
+
+	/**
+	 * Values of the next level of this upgrade for the island, whatever the user.
+	 * It is used by the placeholders, override it to provide them.
+	 *
+	 * @param island This is the island that is concerned
+	 * @return The values of the next level, null if there is none
+	 */
+	public UpgradeValues getNextUpgradeValues(Island island) {
+		return null;
+	}
+
+	/**
+	 * Name of the current tier of this upgrade for the island. It is used by the
+	 * placeholders, override it to provide it.
+	 *
+	 * @param island This is the island that is concerned
+	 * @return The tier name, null if there is none
+	 */
+	public String getTierName(Island island) {
+		return null;
+	}
+
+	/**
+	 * Name of the tier of a level of this upgrade, without island. It is used by
+	 * the reports, override it to provide it.
+	 *
+	 * @param level Level of the upgrade
+	 * @param world World of the gamemode
+	 * @return The tier name, null if there is none
+	 */
+	public String getTierName(int level, World world) {
+		return null;
+	}
+
+	/**
+	 * Last level of this upgrade that can be bought, an island above it has
+	 * bought every level. It is used by the reports, override it to provide it.
+	 *
+	 * @param world World of the gamemode
+	 * @return The max level, 0 if unknown
+	 */
+	public int getMaxLevel(World world) {
+		return 0;
+	}
+
 	/**
 	 * This function is called every times a user open the interface If it return
 	 * false, the upgrade won't be showed to the user
@@ -93,21 +216,41 @@ public abstract class Upgrade {
 			can = false;
 		}
 
+		long start = OperationTrace.start();
 		if (this.upgradesAddon.isVaultProvided()
 				&& !this.upgradesAddon.getVaultHook().has(user, upgradeValues.getMoneyCost())) {
 
 			can = false;
 		}
+		OperationTrace.end(Phase.ECONOMY, start);
 
 		return can;
 	}
 
+	/**
+	 * Async variant of {@link #canUpgrade(User, Island)} used by the interface,
+	 * it is called on the main thread.
+	 *
+	 * By default it calls canUpgrade on the island thread
+	 *
+	 * @param user   This is the user that try to upgrade
+	 * @param island This is the island that is concerned
+	 * @return Future of can upgrade
+	 */
+	public CompletableFuture<Boolean> canUpgradeAsync(User user, Island island) {
+		return this.upgradesAddon.supplyForIsland(island, () -> this.canUpgrade(user, island));
+	}
+
 	/**
 	 * This function is called when the user is upgrading for the island It is
 	 * called after the canUpgrade function
 	 *
-	 * You should call the super to update the balance of the user as well as the
-	 * level is the island
+	 * It withdraws the cost, increases the level of the upgrade and applies the
+	 * steps added by {@link #addPurchaseSteps}. If a step fails, the previous ones
+	 * are rolled back (the money is refunded).
+	 *
+	 * Override addPurchaseSteps to apply the upgrade effects, overriding this
+	 * function and calling the super still works but the effects can't be rolled back.
 	 *
 	 * @param user   This is the user that do the upgrade
 	 * @param island This is the island that is concerned
@@ -115,21 +258,119 @@ public abstract class Upgrade {
 	 */
 	public boolean doUpgrade(User user, Island island) {
 		UpgradeValues upgradeValues = this.getUpgradeValues(user);
+		int fromLevel = this.getUpgradeLevel(island);
+		PurchaseTransaction transaction = new PurchaseTransaction(this.addon,
+				this.name + " by " + user.getName() + " on island " + island.getUniqueId());
+
+		int cost = this.upgradesAddon.isVaultProvided() ? upgradeValues.getMoneyCost() : 0;
+		if (this.upgradesAddon.isVaultProvided())
+			transaction.step(new EconomyStep(user, cost));
+		transaction.step(new LevelStep(island.getUniqueId(), cost));
+		this.addPurchaseSteps(transaction, user, island, upgradeValues);
+
+		boolean upgraded = transaction.execute();
+
+		if (upgraded) {
+			UpgradeLeaderboards leaderboards = this.upgradesAddon.getLeaderboards();
+			if (leaderboards != null)
+				leaderboards.update(island, this.upgradesAddon.getUpgradesLevels(island.getUniqueId()));
+		}
 
-		if (this.upgradesAddon.isVaultProvided()) {
-			EconomyResponse response = this.upgradesAddon.getVaultHook().withdraw(user, upgradeValues.getMoneyCost());
-			if (!response.transactionSuccess()) {
-				this.addon.logWarning(
-						"User Money withdrawing failed user: " + user.getName() + " reason: " + response.errorMessage);
-				user.sendMessage("upgrades.error.costwithdraw");
-				return false;
+		// Only queued, written in the background
+		PurchaseAuditLog auditLog = this.upgradesAddon.getAuditLog();
+		if (auditLog != null)
+			auditLog.record(new AuditRecord(System.currentTimeMillis(), island.getUniqueId(), user.getUniqueId(),
+					user.getName(), this.name, fromLevel, upgraded ? fromLevel + 1 : fromLevel,
+					upgradeValues.getMoneyCost(), upgraded));
+		return upgraded;
+	}
+
+	/**
+	 * Add the steps applying the effects of the upgrade to the purchase. They are
+	 * run after the cost is withdrawn and the level increased.
+	 *
+	 * @param transaction   The purchase
+	 * @param user          This is the user that do the upgrade
+	 * @param island        This is the island that is concerned
+	 * @param upgradeValues Values of the bought level
+	 */
+	protected void addPurchaseSteps(PurchaseTransaction transaction, User user, Island island,
+			UpgradeValues upgradeValues) {
+	}
+
+	/**
+	 * Check that the user has a permission
+	 * '[gamemode].upgrades.[upgrade name].[level]' with a level at least equal
+	 * to permissionLevel
+	 *
+	 * @param user            This is the user that ask for the interface
+	 * @param island          This is the island concerned by the interface
+	 * @param permissionLevel Permission level required, 0 if none is required
+	 * @return If the user has the required permission level
+	 */
+	protected boolean hasPermissionLevel(User user, Island island, int permissionLevel) {
+		if (permissionLevel == 0)
+			return true;
+
+		long start = OperationTrace.start();
+		try {
+			Player player = user.getPlayer();
+			String gamemode = island.getGameMode();
+			String permissionStart = gamemode + ".upgrades." + this.name + ".";
+			permissionStart = permissionStart.toLowerCase();
+
+			for (PermissionAttachmentInfo perms : player.getEffectivePermissions()) {
+
+				// If permission is the one we search
+				if (!perms.getValue() || !perms.getPermission().startsWith(permissionStart))
+					continue;
+
+				if (perms.getPermission().contains(permissionStart + "*")) {
+					this.logPermissionError(player.getName(), perms.getPermission(), "Wildcards are not allowed.");
+					return false;
+				}
+
+				String[] split = perms.getPermission().split("\\.");
+				if (split.length != 4) {
+					this.logPermissionError(player.getName(), perms.getPermission(),
+							"format must be '" + permissionStart + "LEVEL'");
+					return false;
+				}
+
+				if (!NumberUtils.isDigits(split[3])) {
+					this.logPermissionError(player.getName(), perms.getPermission(), "The last part must be a number");
+					return false;
+				}
+
+				if (permissionLevel <= Integer.parseInt(split[3]))
+					return true;
 			}
+
+			return false;
+		} finally {
+			OperationTrace.end(Phase.PERMISSION_SCAN, start);
 		}
+	}
 
-		UpgradesData data = this.upgradesAddon.getUpgradesLevels(island.getUniqueId());
-		data.setUpgradeLevel(this.name, data.getUpgradeLevel(this.name) + 1);
+	private void logPermissionError(String name, String perm, String error) {
+		this.addon.logError("Player " + name + " has permission: '" + perm + "' but " + error + " Ignoring...");
+	}
 
-		return true;
+	/**
+	 * Async variant of {@link #doUpgrade(User, Island)} used by the interface,
+	 * it is called on the island thread once {@link #canUpgradeAsync(User, Island)}
+	 * completed with true.
+	 *
+	 * By default it calls doUpgrade on the island thread, and completes once
+	 * the level change is written to the journal
+	 *
+	 * @param user   This is the user that do the upgrade
+	 * @param island This is the island that is concerned
+	 * @return Future of the upgrade success
+	 */
+	public CompletableFuture<Boolean> doUpgradeAsync(User user, Island island) {
+		return this.upgradesAddon.supplyForIsland(island, () -> this.doUpgrade(user, island))
+				.thenCompose(upgraded -> this.upgradesAddon.syncJournal().thenApply(synced -> upgraded));
 	}
 
 	/**
@@ -168,7 +409,8 @@ public abstract class Upgrade {
 	 * @return The actual description for the user
 	 */
 	public String getOwnDescription(User user) {
-		return this.ownDescription.get(user.getUniqueId());
+		Map<UUID, String> descriptions = this.ownDescription;
+		return descriptions == null ? null : descriptions.get(user.getUniqueId());
 	}
 
 	/**
@@ -176,21 +418,65 @@ public abstract class Upgrade {
 	 * @param description Description to set
 	 */
 	public void setOwnDescription(User user, String description) {
-		this.ownDescription.put(user.getUniqueId(), description);
+		if (description == null) {
+			Map<UUID, String> descriptions = this.ownDescription;
+			if (descriptions != null)
+				descriptions.remove(user.getUniqueId());
+		} else
+			this.ownDescriptions().put(user.getUniqueId(), description);
 	}
 
 	/**
 	 * @return The actual upgradeValues
 	 */
 	public UpgradeValues getUpgradeValues(User user) {
-		return this.playerCache.get(user.getUniqueId());
+		Map<UUID, UpgradeValues> cache = this.playerCache;
+		return cache == null ? null : cache.get(user.getUniqueId());
 	}
 
 	/**
 	 * @param upgrade Values to upgrades
 	 */
 	public void setUpgradeValues(User user, UpgradeValues upgrade) {
-		this.playerCache.put(user.getUniqueId(), upgrade);
+		if (upgrade == null) {
+			Map<UUID, UpgradeValues> cache = this.playerCache;
+			if (cache != null)
+				cache.remove(user.getUniqueId());
+		} else
+			this.playerCache().put(user.getUniqueId(), upgrade);
+	}
+
+	// The caches are created on first use, most upgrades are never shown to most players
+	private Map<UUID, UpgradeValues> playerCache() {
+		if (this.playerCache == null) {
+			synchronized (this) {
+				if (this.playerCache == null)
+					this.playerCache = new ConcurrentHashMap<>();
+			}
+		}
+		return this.playerCache;
+	}
+
+	private Map<UUID, String> ownDescriptions() {
+		if (this.ownDescription == null) {
+			synchronized (this) {
+				if (this.ownDescription == null)
+					this.ownDescription = new ConcurrentHashMap<>();
+			}
+		}
+		return this.ownDescription;
+	}
+
+	/**
+	 * Send a message to the user on the thread owning them. The purchase runs on
+	 * the island thread, which may not own the player.
+	 *
+	 * @param user      User to send the message to
+	 * @param reference Locale reference of the message
+	 * @param variables Variables of the message, pairs of key and value
+	 */
+	public void sendMessage(User user, String reference, String... variables) {
+		this.upgradesAddon.getScheduler().user(user).execute(() -> user.sendMessage(reference, variables));
 	}
 
 	/**
@@ -234,8 +520,82 @@ public abstract class Upgrade {
 	private Material icon;
 	private Addon addon;
 	private UpgradesAddon upgradesAddon;
-	private Map<UUID, UpgradeValues> playerCache;
-	private Map<UUID, String> ownDescription;
+	private volatile Map<UUID, UpgradeValues> playerCache;
+	private volatile Map<UUID, String> ownDescription;
+
+	/**
+	 * Withdraw the cost, refund it on roll back
+	 */
+	private class EconomyStep implements PurchaseStep {
+
+		EconomyStep(User user, int cost) {
+			this.user = user;
+			this.cost = cost;
+		}
+
+		@Override
+		public boolean commit() {
+			long start = OperationTrace.start();
+			EconomyResponse response = upgradesAddon.getVaultHook().withdraw(this.user, this.cost);
+			OperationTrace.end(Phase.ECONOMY, start);
+			if (!response.transactionSuccess()) {
+				addon.logWarning(
+						"User Money withdrawing failed user: " + this.user.getName() + " reason: " + response.errorMessage);
+				sendMessage(this.user, "upgrades.error.costwithdraw");
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public void compensate() {
+			long start = OperationTrace.start();
+			EconomyResponse response = upgradesAddon.getVaultHook().deposit(this.user, this.cost);
+			OperationTrace.end(Phase.ECONOMY, start);
+			if (!response.transactionSuccess())
+				addon.logError("Couldn't refund " + this.cost + " to " + this.user.getName() + " reason: "
+						+ response.errorMessage);
+			else
+				sendMessage(this.user, "upgrades.error.purchasefailed");
+		}
+
+		private final User user;
+		private final int cost;
+	}
+
+	/**
+	 * Increase the level of the upgrade and count the money spent, restore
+	 * them on roll back
+	 */
+	private class LevelStep implements PurchaseStep {
+
+		LevelStep(String islandId, int cost) {
+			this.islandId = islandId;
+			this.cost = cost;
+		}
+
+		@Override
+		public boolean commit() {
+			UpgradesData data = upgradesAddon.getUpgradesLevels(this.islandId);
+			this.oldLevel = data.getUpgradeLevel(name);
+			long version = data.changeUpgradeLevel(name, this.oldLevel + 1, this.cost);
+			upgradesAddon.notifyUpgradeLevelChanged(this.islandId, name, this.oldLevel, this.oldLevel + 1, this.cost,
+					version);
+			return true;
+		}
+
+		@Override
+		public void compensate() {
+			UpgradesData data = upgradesAddon.getUpgradesLevels(this.islandId);
+			long version = data.changeUpgradeLevel(name, this.oldLevel, -this.cost);
+			upgradesAddon.notifyUpgradeLevelChanged(this.islandId, name, this.oldLevel + 1, this.oldLevel, -this.cost,
+					version);
+		}
+
+		private final String islandId;
+		private final int cost;
+		private int oldLevel;
+	}
 
 	public class UpgradeValues {
 
@@ -0,0 +1,122 @@
+package world.bentobox.upgrades.audit;
+
+import java.util.UUID;
+
+/**
+ * One purchase of an upgrade, as written in the audit log
+ */
+public class AuditRecord {
+
+	/**
+	 * @param time        Time of the purchase in milliseconds since the epoch
+	 * @param islandId    Unique id of the island
+	 * @param playerId    Unique id of the player who bought it
+	 * @param playerName  Name of the player who bought it
+	 * @param upgradeName Name of the upgrade
+	 * @param fromLevel   Level before the purchase
+	 * @param toLevel     Level after the purchase, fromLevel if it failed
+	 * @param cost        Money cost of the level
+	 * @param success     If the purchase was done
+	 */
+	public AuditRecord(long time, String islandId, UUID playerId, String playerName, String upgradeName,
+			int fromLevel, int toLevel, int cost, boolean success) {
+		this.time = time;
+		this.islandId = islandId;
+		this.playerId = playerId;
+		this.playerName = playerName;
+		this.upgradeName = upgradeName;
+		this.fromLevel = fromLevel;
+		this.toLevel = toLevel;
+		this.cost = cost;
+		this.success = success;
+	}
+
+	/**
+	 * @return Time of the purchase in milliseconds since the epoch
+	 */
+	public long getTime() {
+		return this.time;
+	}
+
+	public String getIslandId() {
+		return this.islandId;
+	}
+
+	public UUID getPlayerId() {
+		return this.playerId;
+	}
+
+	public String getPlayerName() {
+		return this.playerName;
+	}
+
+	public String getUpgradeName() {
+		return this.upgradeName;
+	}
+
+	public int getFromLevel() {
+		return this.fromLevel;
+	}
+
+	public int getToLevel() {
+		return this.toLevel;
+	}
+
+	public int getCost() {
+		return this.cost;
+	}
+
+	public boolean isSuccess() {
+		return this.success;
+	}
+
+	/**
+	 * @return Tab separated line, without the line break
+	 */
+	String toLine() {
+		return this.time + "\t" + clean(this.islandId) + '\t' + this.playerId + '\t' + clean(this.playerName) + '\t'
+				+ clean(this.upgradeName) + '\t' + this.fromLevel + '\t' + this.toLevel + '\t' + this.cost + '\t'
+				+ this.success;
+	}
+
+	/**
+	 * @param line Line written by {@link #toLine()}
+	 * @return The record, null if the line is malformed or incomplete
+	 */
+	static AuditRecord parse(String line) {
+		String[] split = line.split("\t");
+		if (split.length != 9)
+			return null;
+		try {
+			return new AuditRecord(Long.parseLong(split[0]), split[1], UUID.fromString(split[2]), split[3], split[4],
+					Integer.parseInt(split[5]), Integer.parseInt(split[6]), Integer.parseInt(split[7]),
+					Boolean.parseBoolean(split[8]));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	// Tabs and line breaks would split the record
+	private static String clean(String value) {
+		return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
+
+	private final long time;
+
+	private final String islandId;
+
+	private final UUID playerId;
+
+	private final String playerName;
+
+	private final String upgradeName;
+
+	private final int fromLevel;
+
+	private final int toLevel;
+
+	private final int cost;
+
+	private final boolean success;
+
+}
@@ -0,0 +1,339 @@
+package world.bentobox.upgrades.audit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import world.bentobox.bentobox.api.addons.Addon;
+
+/**
+ * Append-only log of the purchases, written in the background.
+ *
+ * {@link #record} only queues the record, so the purchase never waits for
+ * the disk. A single thread drains the queue every flush interval and
+ * appends the records through one buffer to purchases.log. Once the file is
+ * bigger than the max size or older than the rotate interval, it is renamed
+ * with its rotation time and gzip compressed. The open time of purchases.log
+ * is kept in purchases.log.opened, as most filesystems don't keep the
+ * creation time of a file.
+ *
+ * If the queue is full (the disk is too slow) the records are dropped and
+ * counted rather than slowing down the purchases.
+ */
+public class PurchaseAuditLog {
+
+	/**
+	 * @param addon          Addon used to log
+	 * @param folder         Folder of the log files
+	 * @param maxSize        Size in bytes above which the log is rotated
+	 * @param rotateInterval Age in milliseconds above which the log is rotated,
+	 *                       0 to only rotate on size
+	 */
+	public PurchaseAuditLog(Addon addon, Path folder, long maxSize, long rotateInterval) throws IOException {
+		this.addon = addon;
+		this.folder = folder;
+		this.file = folder.resolve(FILE_NAME);
+		this.openedFile = folder.resolve(FILE_NAME + OPENED_SUFFIX);
+		this.maxSize = maxSize;
+		this.rotateInterval = rotateInterval;
+		this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.dropped = new AtomicLong();
+
+		Files.createDirectories(folder);
+		this.open();
+
+		this.thread = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "upgrades-audit");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// Rotated files left uncompressed by a stop during the compression
+		this.thread.execute(this::compressRotated);
+		this.thread.scheduleWithFixedDelay(this::flush, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Queue a purchase, it is written within the flush interval. It can be
+	 * called from any thread and never blocks.
+	 *
+	 * @param record Purchase to write
+	 */
+	public void record(AuditRecord record) {
+		if (!this.queue.offer(record) && this.dropped.getAndIncrement() % DROP_WARNING_INTERVAL == 0)
+			this.addon.logWarning("Audit log queue is full, " + this.dropped.get() + " purchases were not logged");
+	}
+
+	/**
+	 * Read the log files, from the oldest to the current one, and keep the last
+	 * purchases of the island. It is slow on a big log and shouldn't be called
+	 * on the server threads.
+	 *
+	 * @param islandId Unique id of the island
+	 * @param limit    Maximum number of purchases returned
+	 * @return The last purchases of the island, the oldest first
+	 */
+	public List<AuditRecord> query(String islandId, int limit) {
+		Deque<AuditRecord> last = new ArrayDeque<>(Math.min(limit, 64));
+		if (limit <= 0)
+			return new ArrayList<>(last);
+
+		// Cheap check before splitting the line
+		this.forEach(line -> line.contains(islandId), record -> {
+			if (!record.getIslandId().equals(islandId))
+				return;
+			if (last.size() == limit)
+				last.removeFirst();
+			last.addLast(record);
+		});
+		return new ArrayList<>(last);
+	}
+
+	/**
+	 * Read every purchase of the log files, from the oldest to the current
+	 * one. The files are read line by line, so the whole log is never in
+	 * memory. It is slow on a big log and shouldn't be called on the server
+	 * threads.
+	 *
+	 * @param filter   Lines to parse, the others are skipped
+	 * @param consumer Called with each purchase, in order
+	 */
+	public void forEach(Predicate<String> filter, Consumer<AuditRecord> consumer) {
+		for (Path path : this.listFiles()) {
+			try (InputStream input = path.getFileName().toString().endsWith(".gz")
+					? new GZIPInputStream(Files.newInputStream(path))
+					: Files.newInputStream(path);
+					BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!filter.test(line))
+						continue;
+					AuditRecord record = AuditRecord.parse(line);
+					if (record != null)
+						consumer.accept(record);
+				}
+			} catch (NoSuchFileException e) {
+				// Rotated or compressed while listing, its records are in the next file
+			} catch (IOException e) {
+				this.addon.logError("Couldn't read the audit log " + path + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Write the queued purchases and close the log
+	 *
+	 * @param timeout Maximum time to wait for the writes
+	 * @param unit    Unit of the timeout
+	 */
+	public void close(long timeout, TimeUnit unit) {
+		this.thread.execute(() -> {
+			this.flush();
+			try {
+				this.channel.close();
+			} catch (IOException e) {
+				this.addon.logError("Couldn't close the audit log: " + e.getMessage());
+			}
+		});
+		this.thread.shutdown();
+		try {
+			if (!this.thread.awaitTermination(timeout, unit))
+				this.addon.logWarning("Audit log not closed after " + timeout + " " + unit.name().toLowerCase());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return Number of purchases not logged because the queue was full
+	 */
+	public long getDropped() {
+		return this.dropped.get();
+	}
+
+	private void open() throws IOException {
+		boolean created = Files.notExists(this.file);
+		this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		Long openedAt = created ? null : this.readOpenedAt();
+		if (openedAt == null) {
+			openedAt = System.currentTimeMillis();
+			Files.writeString(this.openedFile, openedAt.toString(), StandardCharsets.UTF_8);
+		}
+		this.openedAt = openedAt;
+	}
+
+	/**
+	 * @return Open time of the current file, null if it wasn't stored
+	 */
+	private Long readOpenedAt() {
+		try {
+			return Long.valueOf(Files.readString(this.openedFile, StandardCharsets.UTF_8).trim());
+		} catch (IOException | NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private void flush() {
+		try {
+			AuditRecord record;
+			while ((record = this.queue.poll()) != null) {
+				byte[] line = (record.toLine() + '\n').getBytes(StandardCharsets.UTF_8);
+				if (line.length > this.buffer.remaining())
+					this.writeBuffer();
+				if (line.length > this.buffer.remaining())
+					this.write(ByteBuffer.wrap(line));
+				else
+					this.buffer.put(line);
+			}
+			this.writeBuffer();
+
+			long size = this.channel.size();
+			if (size >= this.maxSize || (this.rotateInterval > 0 && size > 0
+					&& System.currentTimeMillis() - this.openedAt >= this.rotateInterval))
+				this.rotate();
+		} catch (IOException | RuntimeException e) {
+			this.addon.logError("Couldn't write the audit log: " + e.getMessage());
+		}
+	}
+
+	private void writeBuffer() throws IOException {
+		this.buffer.flip();
+		this.write(this.buffer);
+		this.buffer.clear();
+	}
+
+	private void write(ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining())
+			this.channel.write(bytes);
+	}
+
+	private void rotate() throws IOException {
+		this.channel.close();
+		try {
+			String name = ROTATED_PREFIX + LocalDateTime.now().format(ROTATION_FORMAT) + ".log";
+			Files.move(this.file, this.folder.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			// Not rotated, the records keep going to the current file
+			this.open();
+		}
+		this.compressRotated();
+	}
+
+	private void compressRotated() {
+		List<Path> rotated = new ArrayList<>();
+		try (Stream<Path> list = Files.list(this.folder)) {
+			list.filter(path -> {
+				String name = path.getFileName().toString();
+				return name.startsWith(ROTATED_PREFIX) && name.endsWith(".log");
+			}).forEach(rotated::add);
+		} catch (IOException e) {
+			this.addon.logError("Couldn't list the audit logs: " + e.getMessage());
+		}
+
+		for (Path path : rotated) {
+			Path compressed = path.resolveSibling(path.getFileName() + ".gz");
+			Path temp = path.resolveSibling(path.getFileName() + ".gz.tmp");
+			try {
+				// Already compressed when stopped before the delete
+				if (!Files.exists(compressed)) {
+					try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(temp))) {
+						Files.copy(path, output);
+					}
+					Files.move(temp, compressed, StandardCopyOption.ATOMIC_MOVE);
+				}
+				Files.delete(path);
+			} catch (IOException e) {
+				this.addon.logError("Couldn't compress the audit log " + path + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * @return Rotated files by rotation time, then the current file
+	 */
+	private List<Path> listFiles() {
+		List<Path> files = new ArrayList<>();
+		try (Stream<Path> list = Files.list(this.folder)) {
+			list.filter(path -> {
+				String name = path.getFileName().toString();
+				return name.startsWith(ROTATED_PREFIX) && (name.endsWith(".log") || name.endsWith(".log.gz"));
+			}).sorted().forEach(files::add);
+		} catch (IOException e) {
+			this.addon.logError("Couldn't list the audit logs: " + e.getMessage());
+		}
+		// Compressed but not deleted yet, the same records are in the .gz
+		files.removeIf(path -> files.contains(path.resolveSibling(path.getFileName() + ".gz")));
+		files.add(this.file);
+		return files;
+	}
+
+	private static final String FILE_NAME = "purchases.log";
+
+	private static final String OPENED_SUFFIX = ".opened";
+
+	private static final String ROTATED_PREFIX = "purchases-";
+
+	private static final DateTimeFormatter ROTATION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+	private static final int QUEUE_CAPACITY = 65536;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final long FLUSH_MILLIS = 500;
+
+	private static final long DROP_WARNING_INTERVAL = 1000;
+
+	private final Addon addon;
+
+	private final Path folder;
+
+	private final Path file;
+
+	private final Path openedFile;
+
+	private final long maxSize;
+
+	private final long rotateInterval;
+
+	private final BlockingQueue<AuditRecord> queue;
+
+	// Only used by the audit thread
+	private final ByteBuffer buffer;
+
+	private final AtomicLong dropped;
+
+	private final ScheduledExecutorService thread;
+
+	private FileChannel channel;
+
+	private long openedAt;
+
+}
@@ -0,0 +1,87 @@
+package world.bentobox.upgrades.command;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.lang.math.NumberUtils;
+
+import world.bentobox.bentobox.api.commands.CompositeCommand;
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.audit.PurchaseAuditLog;
+
+public class AdminAuditCommand extends CompositeCommand {
+
+	public AdminAuditCommand(CompositeCommand parent) {
+		super(parent, "audit");
+	}
+
+	@Override
+	public void setup() {
+		this.setPermission("admin.upgrades.audit");
+		this.setParametersHelp("upgrades.commands.admin.audit.parameters");
+		this.setDescription("upgrades.commands.admin.audit.description");
+	}
+
+	@Override
+	public boolean execute(User user, String label, List<String> args) {
+		UpgradesAddon addon = this.getAddon();
+
+		if (args.isEmpty() || args.size() > 2) {
+			this.showHelp(this, user);
+			return false;
+		}
+		int limit = args.size() == 2 ? NumberUtils.toInt(args.get(1), 0) : DEFAULT_LIMIT;
+		if (limit <= 0) {
+			this.showHelp(this, user);
+			return false;
+		}
+
+		PurchaseAuditLog auditLog = addon.getAuditLog();
+		if (auditLog == null) {
+			user.sendMessage("upgrades.commands.admin.audit.disabled");
+			return false;
+		}
+		UUID target = this.getPlayers().getUUID(args.get(0));
+		if (target == null) {
+			user.sendMessage("general.errors.unknown-player", "[name]", args.get(0));
+			return false;
+		}
+		Island island = this.getIslands().getIsland(this.getWorld(), target);
+		if (island == null) {
+			user.sendMessage("general.errors.player-has-no-island");
+			return false;
+		}
+
+		// Reading the log files can be slow, it is done off the server threads
+		String islandId = island.getUniqueId();
+		CompletableFuture.supplyAsync(() -> auditLog.query(islandId, limit), addon.getScheduler().async())
+		.whenComplete((records, e) -> addon.getScheduler().global().execute(() -> {
+			if (e != null) {
+				addon.logError("Couldn't read the audit log: " + e.getMessage());
+				user.sendMessage("upgrades.commands.admin.audit.empty");
+			} else if (records.isEmpty())
+				user.sendMessage("upgrades.commands.admin.audit.empty");
+			else
+				records.forEach(record -> user.sendMessage("upgrades.commands.admin.audit.entry",
+						"[date]", new SimpleDateFormat(DATE_FORMAT).format(new Date(record.getTime())),
+						"[player]", record.getPlayerName(),
+						"[upgrade]", record.getUpgradeName(),
+						"[from]", Integer.toString(record.getFromLevel()),
+						"[to]", Integer.toString(record.getToLevel()),
+						"[cost]", Integer.toString(record.getCost()),
+						"[result]", user.getTranslation(record.isSuccess() ? "upgrades.commands.admin.audit.success"
+								: "upgrades.commands.admin.audit.failure")));
+		}));
+		return true;
+	}
+
+	private static final int DEFAULT_LIMIT = 10;
+
+	private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+}
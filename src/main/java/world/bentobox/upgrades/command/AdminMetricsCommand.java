@@ -0,0 +1,52 @@
+package world.bentobox.upgrades.command;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import world.bentobox.bentobox.api.commands.CompositeCommand;
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.upgrades.UpgradesAddon;
+
+public class AdminMetricsCommand extends CompositeCommand {
+
+	public AdminMetricsCommand(CompositeCommand parent) {
+		super(parent, "metrics");
+	}
+
+	@Override
+	public void setup() {
+		this.setPermission("admin.upgrades.metrics");
+		this.setParametersHelp("upgrades.commands.admin.metrics.parameters");
+		this.setDescription("upgrades.commands.admin.metrics.description");
+	}
+
+	@Override
+	public boolean execute(User user, String label, List<String> args) {
+		UpgradesAddon addon = this.getAddon();
+
+		if (args.size() == 1 && args.get(0).equalsIgnoreCase("reset")) {
+			addon.getMetrics().reset();
+			user.sendMessage("upgrades.commands.admin.metrics.reset");
+			return true;
+		}
+
+		if (!args.isEmpty()) {
+			this.showHelp(this, user);
+			return false;
+		}
+
+		List<String> report = addon.getMetrics().report();
+		if (report.isEmpty())
+			user.sendMessage("upgrades.commands.admin.metrics.empty");
+		else
+			report.forEach(user::sendRawMessage);
+		return true;
+	}
+
+	@Override
+	public Optional<List<String>> tabComplete(User user, String alias, List<String> args) {
+		return Optional.of(Collections.singletonList("reset"));
+	}
+
+}
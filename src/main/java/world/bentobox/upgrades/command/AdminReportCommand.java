@@ -0,0 +1,58 @@
+package world.bentobox.upgrades.command;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import world.bentobox.bentobox.api.commands.CompositeCommand;
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.report.UpgradesReportGenerator;
+
+public class AdminReportCommand extends CompositeCommand {
+
+	public AdminReportCommand(CompositeCommand parent) {
+		super(parent, "report");
+	}
+
+	@Override
+	public void setup() {
+		this.setPermission("admin.upgrades.report");
+		this.setParametersHelp("upgrades.commands.admin.report.parameters");
+		this.setDescription("upgrades.commands.admin.report.description");
+	}
+
+	@Override
+	public boolean execute(User user, String label, List<String> args) {
+		UpgradesAddon addon = this.getAddon();
+
+		String format = args.isEmpty() ? "csv" : args.get(0).toLowerCase(Locale.ENGLISH);
+		if (args.size() > 1 || !(format.equals("csv") || format.equals("json"))) {
+			this.showHelp(this, user);
+			return false;
+		}
+
+		UpgradesReportGenerator reports = addon.getReports();
+		if (reports.isRunning()) {
+			user.sendMessage("upgrades.commands.admin.report.running");
+			return false;
+		}
+
+		user.sendMessage("upgrades.commands.admin.report.started");
+		reports.generate(format.equals("json") ? UpgradesReportGenerator.Format.JSON : UpgradesReportGenerator.Format.CSV)
+		.whenComplete((file, e) -> addon.getScheduler().global().execute(() -> {
+			if (e != null) {
+				addon.logError("Couldn't write the upgrades report: " + e.getMessage());
+				user.sendMessage("upgrades.commands.admin.report.failed");
+			} else
+				user.sendMessage("upgrades.commands.admin.report.done", "[file]", file.getFileName().toString());
+		}));
+		return true;
+	}
+
+	@Override
+	public Optional<List<String>> tabComplete(User user, String alias, List<String> args) {
+		return Optional.of(List.of("csv", "json"));
+	}
+
+}
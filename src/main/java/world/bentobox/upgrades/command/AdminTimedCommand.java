@@ -0,0 +1,108 @@
+package world.bentobox.upgrades.command;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.apache.commons.lang.math.NumberUtils;
+
+import world.bentobox.bentobox.api.commands.CompositeCommand;
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.dataobjects.TimedBonus;
+
+public class AdminTimedCommand extends CompositeCommand {
+
+	public AdminTimedCommand(CompositeCommand parent) {
+		super(parent, "timed");
+	}
+
+	@Override
+	public void setup() {
+		this.setPermission("admin.upgrades.timed");
+		this.setParametersHelp("upgrades.commands.admin.timed.parameters");
+		this.setDescription("upgrades.commands.admin.timed.description");
+	}
+
+	@Override
+	public boolean execute(User user, String label, List<String> args) {
+		UpgradesAddon addon = this.getAddon();
+
+		// <player> range <amount> <duration> or <player> <type> <key> <amount> <duration>
+		TimedBonus.Type type = args.size() < 2 ? null : TYPES.get(args.get(1).toLowerCase(Locale.ENGLISH));
+		int keyCount = type == TimedBonus.Type.RANGE ? 0 : 1;
+		if (type == null || args.size() != 4 + keyCount) {
+			this.showHelp(this, user);
+			return false;
+		}
+		// Entity groups are named in the Limits config, keep their case
+		String key = keyCount == 0 ? "" : type == TimedBonus.Type.ENTITY_GROUP_LIMITS ? args.get(2)
+				: args.get(2).toUpperCase(Locale.ENGLISH);
+		int amount = NumberUtils.toInt(args.get(2 + keyCount), 0);
+		Duration duration = parseDuration(args.get(3 + keyCount));
+		if (amount <= 0 || duration == null) {
+			this.showHelp(this, user);
+			return false;
+		}
+
+		UUID target = this.getPlayers().getUUID(args.get(0));
+		if (target == null) {
+			user.sendMessage("general.errors.unknown-player", "[name]", args.get(0));
+			return false;
+		}
+		Island island = this.getIslands().getIsland(this.getWorld(), target);
+		if (island == null) {
+			user.sendMessage("general.errors.player-has-no-island");
+			return false;
+		}
+
+		addon.getScheduler().island(island).execute(() -> {
+			if (addon.getTimedUpgrades().grant(island, type, key, amount, duration).isPresent())
+				user.sendMessage("upgrades.commands.admin.timed.granted", "[name]", args.get(0), "[amount]",
+						Integer.toString(amount), "[duration]", args.get(3 + keyCount));
+			else
+				user.sendMessage("upgrades.commands.admin.timed.failed");
+		});
+		return true;
+	}
+
+	@Override
+	public Optional<List<String>> tabComplete(User user, String alias, List<String> args) {
+		if (args.size() == 2)
+			return Optional.of(List.copyOf(TYPES.keySet()));
+		return Optional.empty();
+	}
+
+	/**
+	 * @param value Number followed by s, m, h or d
+	 * @return Duration, null if not valid
+	 */
+	private static Duration parseDuration(String value) {
+		if (value.length() < 2)
+			return null;
+		long number = NumberUtils.toLong(value.substring(0, value.length() - 1), 0);
+		if (number <= 0)
+			return null;
+		switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+		case 's':
+			return Duration.ofSeconds(number);
+		case 'm':
+			return Duration.ofMinutes(number);
+		case 'h':
+			return Duration.ofHours(number);
+		case 'd':
+			return Duration.ofDays(number);
+		default:
+			return null;
+		}
+	}
+
+	private static final Map<String, TimedBonus.Type> TYPES = Map.of("range",
+			TimedBonus.Type.RANGE, "block", TimedBonus.Type.BLOCK_LIMITS, "entity", TimedBonus.Type.ENTITY_LIMITS,
+			"group", TimedBonus.Type.ENTITY_GROUP_LIMITS);
+
+}
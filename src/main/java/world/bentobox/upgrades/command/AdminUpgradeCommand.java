@@ -0,0 +1,32 @@
+package world.bentobox.upgrades.command;
+
+import java.util.List;
+
+import world.bentobox.bentobox.api.commands.CompositeCommand;
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.upgrades.UpgradesAddon;
+
+public class AdminUpgradeCommand extends CompositeCommand {
+
+	public AdminUpgradeCommand(UpgradesAddon addon, CompositeCommand cmd) {
+		super(addon, cmd, "upgrades");
+	}
+
+	@Override
+	public void setup() {
+		this.setPermission("admin.upgrades");
+		this.setDescription("upgrades.commands.admin.main.description");
+
+		new AdminMetricsCommand(this);
+		new AdminTimedCommand(this);
+		new AdminAuditCommand(this);
+		new AdminReportCommand(this);
+	}
+
+	@Override
+	public boolean execute(User user, String label, List<String> args) {
+		this.showHelp(this, user);
+		return true;
+	}
+
+}
@@ -0,0 +1,68 @@
+package world.bentobox.upgrades.command;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+
+import world.bentobox.bentobox.api.commands.CompositeCommand;
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.leaderboard.Leaderboard;
+import world.bentobox.upgrades.leaderboard.UpgradeLeaderboards;
+
+public class PlayerTopCommand extends CompositeCommand {
+
+	public PlayerTopCommand(CompositeCommand parent) {
+		super(parent, "top");
+	}
+
+	@Override
+	public void setup() {
+		this.setParametersHelp("upgrades.commands.top.parameters");
+		this.setDescription("upgrades.commands.top.description");
+	}
+
+	@Override
+	public boolean execute(User user, String label, List<String> args) {
+		UpgradesAddon addon = this.getAddon();
+
+		String ranking = args.isEmpty() ? "levels" : args.get(0).toLowerCase(Locale.ENGLISH);
+		if (args.size() > 1 || !(ranking.equals("levels") || ranking.equals("money") && addon.isVaultProvided())) {
+			this.showHelp(this, user);
+			return false;
+		}
+		UpgradeLeaderboards.Type type = ranking.equals("money") ? UpgradeLeaderboards.Type.MONEY
+				: UpgradeLeaderboards.Type.LEVELS;
+
+		Optional<String> gameMode = this.getIWM().getAddon(this.getWorld()).map(g -> g.getDescription().getName());
+		List<Leaderboard.Entry> top = gameMode.map(name -> addon.getLeaderboards().getTop(name, type, TOP_SIZE))
+				.orElse(List.of());
+		if (top.isEmpty()) {
+			user.sendMessage("upgrades.commands.top.empty");
+			return true;
+		}
+
+		user.sendMessage(type == UpgradeLeaderboards.Type.MONEY ? "upgrades.commands.top.money"
+				: "upgrades.commands.top.levels");
+		for (int i = 0; i < top.size(); i++) {
+			Leaderboard.Entry entry = top.get(i);
+			UUID owner = this.getIslands().getIslandById(entry.getIslandId()).map(Island::getOwner)
+					.orElse(null);
+			String name = owner == null ? null : this.getPlayers().getName(owner);
+			user.sendMessage("upgrades.commands.top.entry", "[rank]", Integer.toString(i + 1), "[name]",
+					name == null ? "-" : name, "[score]", Long.toString(entry.getScore()));
+		}
+		return true;
+	}
+
+	@Override
+	public Optional<List<String>> tabComplete(User user, String alias, List<String> args) {
+		UpgradesAddon addon = this.getAddon();
+		return Optional.of(addon.isVaultProvided() ? List.of("levels", "money") : List.of("levels"));
+	}
+
+	private static final int TOP_SIZE = 10;
+
+}
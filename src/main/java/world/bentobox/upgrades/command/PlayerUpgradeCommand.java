@@ -21,6 +21,8 @@ public class PlayerUpgradeCommand extends CompositeCommand {
 	public void setup() {
 		this.setDescription("upgrades.commands.main.description");
 		this.setOnlyPlayer(true);
+
+		new PlayerTopCommand(this);
 	}
 	
 	@Override
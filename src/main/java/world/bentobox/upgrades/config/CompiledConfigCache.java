@@ -0,0 +1,186 @@
+package world.bentobox.upgrades.config;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import world.bentobox.bentobox.api.addons.Addon;
+import world.bentobox.upgrades.config.Settings.CommandUpgradeTier;
+import world.bentobox.upgrades.config.Settings.CompiledSection;
+import world.bentobox.upgrades.config.Settings.UpgradeTier;
+
+/**
+ * Binary cache of the compiled tiers, kept in the addon folder.
+ *
+ * The file starts with the hash of the config file it was written for. When
+ * the hash matches, the tiers and their formula programs are read back
+ * instead of being compiled. The file is small, it is read in a heap buffer
+ * rather than mapped, so it can always be replaced. Any other content is
+ * ignored, and the config is compiled as usual.
+ */
+public class CompiledConfigCache {
+
+	/**
+	 * @param addon Addon used to log
+	 * @param file  Cache file
+	 */
+	public CompiledConfigCache(Addon addon, Path file) {
+		this.addon = addon;
+		this.file = file;
+	}
+
+	/**
+	 * @param config Config file
+	 * @return Hash of the content of the config, null if it can't be read
+	 */
+	public static String hash(Path config) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(config));
+			StringBuilder hash = new StringBuilder(digest.length * 2);
+			for (byte b : digest)
+				hash.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return hash.toString();
+		} catch (IOException | NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param hash Hash of the current config
+	 * @return Compiled sections by path, empty if the cache is missing,
+	 *         unreadable or written for another config
+	 */
+	Map<String, CompiledSection> load(String hash) {
+		if (!Files.isRegularFile(this.file))
+			return Collections.emptyMap();
+
+		try {
+			ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(this.file));
+			if (in.getInt() != MAGIC || in.getInt() != VERSION || !FormulaProgram.readString(in).equals(hash))
+				return Collections.emptyMap();
+
+			Map<String, CompiledSection> sections = new HashMap<>();
+			int count = FormulaProgram.readCount(in, 1);
+			for (int i = 0; i < count; i++) {
+				String path = FormulaProgram.readString(in);
+				String fingerprint = FormulaProgram.readString(in);
+				sections.put(path, new CompiledSection(fingerprint, readTiers(in)));
+			}
+			return sections;
+		} catch (IOException | RuntimeException e) {
+			// Any garbled content, the counts are checked against the remaining bytes
+			this.addon.logWarning("Ignoring the compiled config cache " + this.file + ": " + e);
+			return Collections.emptyMap();
+		}
+	}
+
+	/**
+	 * Replace the cache, the file is only replaced once fully written. Each
+	 * write has its own temporary file, so overlapping reloads don't write
+	 * into the same one.
+	 *
+	 * @param hash     Hash of the config the sections were compiled from
+	 * @param sections Compiled sections by path
+	 */
+	void write(String hash, Map<String, CompiledSection> sections) {
+		Path temp = null;
+		try {
+			temp = Files.createTempFile(this.file.toAbsolutePath().getParent(), this.file.getFileName().toString(), ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				FormulaProgram.writeString(out, hash);
+				out.writeInt(sections.size());
+				for (Map.Entry<String, CompiledSection> section : sections.entrySet()) {
+					FormulaProgram.writeString(out, section.getKey());
+					FormulaProgram.writeString(out, section.getValue().fingerprint);
+					writeTiers(out, (Map<?, ?>) section.getValue().tiers);
+				}
+			}
+			Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | ClassCastException e) {
+			this.addon.logWarning("Couldn't write the compiled config cache " + this.file + ": " + e.getMessage());
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException ignored) {
+					// Left in the folder, it is never read
+				}
+			}
+		}
+	}
+
+	private static void writeTiers(DataOutputStream out, Map<?, ?> tiers) throws IOException {
+		boolean command = tiers.values().stream().anyMatch(CommandUpgradeTier.class::isInstance);
+		out.writeBoolean(command);
+		out.writeInt(tiers.size());
+		for (Object value : tiers.values()) {
+			UpgradeTier tier = (UpgradeTier) value;
+			FormulaProgram.writeString(out, tier.getId());
+			FormulaProgram.writeString(out, tier.getTierName());
+			out.writeInt(tier.getMaxLevel());
+			out.writeInt(tier.getPermissionLevel());
+			((FormulaProgram) tier.getUpgrade()).write(out);
+			((FormulaProgram) tier.getIslandMinLevel()).write(out);
+			((FormulaProgram) tier.getVaultCost()).write(out);
+			if (command) {
+				CommandUpgradeTier commandTier = (CommandUpgradeTier) tier;
+				out.writeBoolean(commandTier.getConsole());
+				out.writeInt(commandTier.getCommandList().size());
+				for (String cmd : commandTier.getCommandList())
+					FormulaProgram.writeString(out, cmd);
+			}
+		}
+	}
+
+	private static Map<String, ? extends UpgradeTier> readTiers(ByteBuffer in) {
+		boolean command = in.get() != 0;
+		Map<String, UpgradeTier> tiers = new TreeMap<>();
+		int count = FormulaProgram.readCount(in, 1);
+		for (int i = 0; i < count; i++) {
+			String id = FormulaProgram.readString(in);
+			String tierName = FormulaProgram.readString(in);
+			int maxLevel = in.getInt();
+			int permissionLevel = in.getInt();
+			FormulaProgram upgrade = FormulaProgram.read(in);
+			FormulaProgram islandMinLevel = FormulaProgram.read(in);
+			FormulaProgram vaultCost = FormulaProgram.read(in);
+			UpgradeTier tier;
+			if (command) {
+				boolean console = in.get() != 0;
+				List<String> commands = new ArrayList<>();
+				int commandCount = FormulaProgram.readCount(in, Integer.BYTES);
+				for (int j = 0; j < commandCount; j++)
+					commands.add(FormulaProgram.readString(in));
+				tier = new CommandUpgradeTier(id, tierName, maxLevel, permissionLevel, islandMinLevel, vaultCost, console,
+						commands);
+			} else
+				tier = new UpgradeTier(id, tierName, maxLevel, permissionLevel, upgrade, islandMinLevel, vaultCost);
+			tiers.put(id, tier);
+		}
+		return Collections.unmodifiableMap(tiers);
+	}
+
+	// "UPGC"
+	private static final int MAGIC = 0x55504743;
+
+	// Increase it when the format changes
+	private static final int VERSION = 1;
+
+	private final Addon addon;
+
+	private final Path file;
+
+}
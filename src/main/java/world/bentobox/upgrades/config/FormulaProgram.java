@@ -0,0 +1,409 @@
+package world.bentobox.upgrades.config;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Formula of a tier compiled to a postfix program, evaluated on a small stack.
+ *
+ * Numbers are parsed once at compile time and the program is plain data, so
+ * it can be written to the compiled config cache and read back without
+ * parsing the formula again. Variables are given to each evaluation as
+ * arguments, in the order of {@link #VARIABLES}, so a program can be
+ * evaluated from several threads at the same time.
+ */
+public class FormulaProgram implements Settings.Expression {
+
+	private FormulaProgram(String source, int[] code, double[] constants, String[] names, int maxStack) {
+		this.source = source;
+		this.code = code;
+		this.constants = constants;
+		this.names = names;
+		this.maxStack = maxStack;
+		this.slots = new int[names.length];
+		for (int i = 0; i < names.length; i++)
+			this.slots[i] = VARIABLES.indexOf(names[i]);
+	}
+
+	/**
+	 * Compile a formula
+	 *
+	 * @param str Formula, with +, -, *, /, ^, parentheses, sqrt, sin, cos, tan
+	 *            and variables
+	 * @return Compiled formula
+	 */
+	public static FormulaProgram compile(String str) {
+		return new Compiler(str).compile();
+	}
+
+	@Override
+	public double eval(double[] arguments) {
+		double[] stack = new double[this.maxStack];
+		int top = -1;
+		for (int pc = 0; pc < this.code.length; pc++) {
+			switch (this.code[pc]) {
+			case CONST:
+				stack[++top] = this.constants[this.code[++pc]];
+				break;
+			case VAR:
+				int name = this.code[++pc];
+				if (this.slots[name] < 0)
+					throw new IllegalStateException("Unknown variable " + this.names[name] + " in " + this.source);
+				stack[++top] = arguments[this.slots[name]];
+				break;
+			case ADD:
+				stack[top - 1] += stack[top--];
+				break;
+			case SUB:
+				stack[top - 1] -= stack[top--];
+				break;
+			case MUL:
+				stack[top - 1] *= stack[top--];
+				break;
+			case DIV:
+				stack[top - 1] /= stack[top--];
+				break;
+			case POW:
+				stack[top - 1] = Math.pow(stack[top - 1], stack[top--]);
+				break;
+			case NEG:
+				stack[top] = -stack[top];
+				break;
+			case SQRT:
+				stack[top] = Math.sqrt(stack[top]);
+				break;
+			case SIN:
+				stack[top] = Math.sin(Math.toRadians(stack[top]));
+				break;
+			case COS:
+				stack[top] = Math.cos(Math.toRadians(stack[top]));
+				break;
+			case TAN:
+				stack[top] = Math.tan(Math.toRadians(stack[top]));
+				break;
+			default:
+				throw new IllegalStateException("Unknown instruction " + this.code[pc] + " in " + this.source);
+			}
+		}
+		return stack[0];
+	}
+
+	/**
+	 * @return Formula the program was compiled from
+	 */
+	public String getSource() {
+		return this.source;
+	}
+
+	/**
+	 * Write the program, read back by {@link #read}
+	 */
+	public void write(DataOutput out) throws IOException {
+		writeString(out, this.source);
+		out.writeInt(this.maxStack);
+		out.writeInt(this.code.length);
+		for (int instruction : this.code)
+			out.writeInt(instruction);
+		out.writeInt(this.constants.length);
+		for (double constant : this.constants)
+			out.writeDouble(constant);
+		out.writeInt(this.names.length);
+		for (String name : this.names)
+			writeString(out, name);
+	}
+
+	/**
+	 * Read a program written by {@link #write}
+	 *
+	 * @param in Buffer positioned on the program
+	 * @return The program
+	 */
+	public static FormulaProgram read(ByteBuffer in) {
+		String source = readString(in);
+		int maxStack = in.getInt();
+		int[] code = new int[readCount(in, Integer.BYTES)];
+		for (int i = 0; i < code.length; i++)
+			code[i] = in.getInt();
+		double[] constants = new double[readCount(in, Double.BYTES)];
+		for (int i = 0; i < constants.length; i++)
+			constants[i] = in.getDouble();
+		String[] names = new String[readCount(in, Integer.BYTES)];
+		for (int i = 0; i < names.length; i++)
+			names[i] = readString(in);
+		verify(code, constants.length, names.length, maxStack);
+		return new FormulaProgram(source, code, constants, names, maxStack);
+	}
+
+	/**
+	 * Check that a program read back can be evaluated: known instructions,
+	 * operands in range, and a stack that never underflows nor exceeds
+	 * maxStack and ends with the result
+	 */
+	private static void verify(int[] code, int constantCount, int nameCount, int maxStack) {
+		// Each value on the stack is pushed by an instruction
+		if (maxStack < 1 || maxStack > code.length)
+			throw new IllegalArgumentException("Invalid stack size " + maxStack);
+		int depth = 0;
+		for (int pc = 0; pc < code.length; pc++) {
+			int instruction = code[pc];
+			if (instruction == CONST || instruction == VAR) {
+				int operand = ++pc < code.length ? code[pc] : -1;
+				if (operand < 0 || operand >= (instruction == CONST ? constantCount : nameCount))
+					throw new IllegalArgumentException("Invalid operand " + operand);
+				depth++;
+			} else if (instruction >= ADD && instruction <= POW) {
+				if (depth < 2)
+					throw new IllegalArgumentException("Stack underflow");
+				depth--;
+			} else if (instruction >= NEG && instruction <= TAN) {
+				if (depth < 1)
+					throw new IllegalArgumentException("Stack underflow");
+			} else
+				throw new IllegalArgumentException("Invalid instruction " + instruction);
+			if (depth > maxStack)
+				throw new IllegalArgumentException("Stack overflow");
+		}
+		if (depth != 1)
+			throw new IllegalArgumentException("Invalid program");
+	}
+
+	/**
+	 * Write a string as its UTF-8 length and bytes
+	 */
+	static void writeString(DataOutput out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Read a count of elements, checked against the remaining bytes so a
+	 * garbled count never allocates a huge array
+	 *
+	 * @param elementSize Minimum size in bytes of an element
+	 */
+	static int readCount(ByteBuffer in, int elementSize) {
+		int count = in.getInt();
+		if (count < 0 || count > in.remaining() / elementSize)
+			throw new BufferUnderflowException();
+		return count;
+	}
+
+	/**
+	 * Read a string written by {@link #writeString}
+	 */
+	static String readString(ByteBuffer in) {
+		int length = readCount(in, 1);
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String toString() {
+		return this.source;
+	}
+
+	// -------------------------------------------------------------------------
+	// Section: Arithmetic expressions Parser
+	// Thanks to Boann on StackOverflow
+	// Link:
+	// https://stackoverflow.com/questions/3422673/how-to-evaluate-a-math-expression-given-in-string-form
+	// -------------------------------------------------------------------------
+
+	private static class Compiler {
+
+		Compiler(String str) {
+			this.str = str;
+		}
+
+		FormulaProgram compile() {
+			this.nextChar();
+			this.parseExpression();
+			if (this.pos < this.str.length())
+				throw new RuntimeException("Unexpected: " + (char) this.ch);
+			return new FormulaProgram(this.str, Arrays.copyOf(this.code, this.length),
+					this.constants.stream().mapToDouble(Double::doubleValue).toArray(), this.names.toArray(new String[0]),
+					Math.max(1, this.maxDepth));
+		}
+
+		void nextChar() {
+			this.ch = (++this.pos < this.str.length()) ? this.str.charAt(this.pos) : -1;
+		}
+
+		boolean eat(int charToEat) {
+			while (this.ch == ' ')
+				this.nextChar();
+			if (this.ch == charToEat) {
+				this.nextChar();
+				return true;
+			}
+			return false;
+		}
+
+		// Grammar:
+		// expression = term | expression `+` term | expression `-` term
+		// term = factor | term `*` factor | term `/` factor
+		// factor = `+` factor | `-` factor | `(` expression `)`
+		// | number | functionName factor | factor `^` factor
+
+		void parseExpression() {
+			this.parseTerm();
+			for (;;) {
+				if (this.eat('+')) {
+					this.parseTerm();
+					this.emit(ADD, -1);
+				} else if (this.eat('-')) {
+					this.parseTerm();
+					this.emit(SUB, -1);
+				} else
+					return;
+			}
+		}
+
+		void parseTerm() {
+			this.parseFactor();
+			for (;;) {
+				if (this.eat('*')) {
+					this.parseFactor();
+					this.emit(MUL, -1);
+				} else if (this.eat('/')) {
+					this.parseFactor();
+					this.emit(DIV, -1);
+				} else
+					return;
+			}
+		}
+
+		void parseFactor() {
+			if (this.eat('+')) {
+				this.parseFactor(); // unary plus
+				return;
+			}
+			if (this.eat('-')) {
+				this.parseFactor(); // unary minus
+				this.emit(NEG, 0);
+				return;
+			}
+
+			// Names don't start with the spaces before them
+			while (this.ch == ' ')
+				this.nextChar();
+			int startPos = this.pos;
+			if (this.eat('(')) { // parentheses
+				this.parseExpression();
+				this.eat(')');
+			} else if ((this.ch >= '0' && this.ch <= '9') || this.ch == '.') { // numbers
+				while ((this.ch >= '0' && this.ch <= '9') || this.ch == '.')
+					this.nextChar();
+				this.constants.add(Double.parseDouble(this.str.substring(startPos, this.pos)));
+				this.emit(CONST, 1);
+				this.emit(this.constants.size() - 1, 0);
+			} else if ((this.ch >= 'a' && this.ch <= 'z') || (this.ch >= 'A' && this.ch <= 'Z') || this.ch == '['
+					|| this.ch == ']') { // functions
+				while ((this.ch >= 'a' && this.ch <= 'z') || (this.ch >= 'A' && this.ch <= 'Z') || this.ch == '['
+						|| this.ch == ']')
+					this.nextChar();
+				String func = this.str.substring(startPos, this.pos);
+				if (func.equals("sqrt") || func.equals("sin") || func.equals("cos") || func.equals("tan")) {
+					this.parseFactor();
+					this.emit(func.equals("sqrt") ? SQRT : func.equals("sin") ? SIN : func.equals("cos") ? COS : TAN, 0);
+				} else {
+					int index = this.names.indexOf(func);
+					if (index < 0) {
+						this.names.add(func);
+						index = this.names.size() - 1;
+					}
+					this.emit(VAR, 1);
+					this.emit(index, 0);
+				}
+			} else {
+				throw new RuntimeException("Unexpected: " + (char) this.ch);
+			}
+
+			if (this.eat('^')) {
+				this.parseFactor();
+				this.emit(POW, -1); // exponentiation
+			}
+		}
+
+		/**
+		 * @param stackChange Change of the stack depth once run
+		 */
+		void emit(int value, int stackChange) {
+			if (this.length == this.code.length)
+				this.code = Arrays.copyOf(this.code, this.length * 2);
+			this.code[this.length++] = value;
+			this.depth += stackChange;
+			this.maxDepth = Math.max(this.maxDepth, this.depth);
+		}
+
+		private final String str;
+
+		private int pos = -1;
+
+		private int ch;
+
+		private int[] code = new int[16];
+
+		private int length;
+
+		private int depth;
+
+		private int maxDepth;
+
+		private final List<Double> constants = new ArrayList<>();
+
+		private final List<String> names = new ArrayList<>();
+
+	}
+
+	/**
+	 * Variables of the formulas, in the order of the arguments of {@link #eval}
+	 */
+	public static final List<String> VARIABLES = List.of("[level]", "[islandLevel]", "[numberPlayer]");
+
+	private static final int CONST = 0;
+
+	private static final int VAR = 1;
+
+	private static final int ADD = 2;
+
+	private static final int SUB = 3;
+
+	private static final int MUL = 4;
+
+	private static final int DIV = 5;
+
+	private static final int POW = 6;
+
+	private static final int NEG = 7;
+
+	private static final int SQRT = 8;
+
+	private static final int SIN = 9;
+
+	private static final int COS = 10;
+
+	private static final int TAN = 11;
+
+	private final String source;
+
+	private final int[] code;
+
+	private final double[] constants;
+
+	private final String[] names;
+
+	private final int maxStack;
+
+	// Index in the arguments of each name, -1 if unknown
+	private final int[] slots;
+
+}
@@ -1,53 +1,104 @@
 package world.bentobox.upgrades.config;
 
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.EntityType;
 import org.eclipse.jdt.annotation.NonNull;
 
-import world.bentobox.bentobox.BentoBox;
 import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.upgrades.UpgradesAddon;
 
+/**
+ * Compiled configuration of the addon.
+ *
+ * A settings is an immutable snapshot: it is fully built by its constructor
+ * and never modified after, so it can be read from any thread without locks.
+ * A reload builds a new one, see {@link UpgradesAddon#getSettings}.
+ */
 public class Settings {
 
 	public Settings(UpgradesAddon addon) {
+		this(addon, null);
+	}
+
+	/**
+	 * Load the config, the tiers of the sections unchanged since previous are
+	 * taken from it instead of being compiled again
+	 *
+	 * @param addon    Upgrades addon
+	 * @param previous Settings loaded before, null if none
+	 */
+	public Settings(UpgradesAddon addon, Settings previous) {
 		this.addon = addon;
 		this.addon.saveDefaultConfig();
 
-		this.hasRangeUpgrade = false;
-
-		this.disabledGameModes = new HashSet<>(this.addon.getConfig().getStringList("disabled-gamemodes"));
-
-		if (this.addon.getConfig().isSet("range-upgrade")) {
-			ConfigurationSection section = this.addon.getConfig().getConfigurationSection("range-upgrade");
-			for (String key : Objects.requireNonNull(section).getKeys(false)) {
-				UpgradeTier newUpgrade = addUpgradeSection(section, key);
-
-				if (this.maxRangeUpgrade < newUpgrade.getMaxLevel())
-					this.maxRangeUpgrade = newUpgrade.getMaxLevel();
-
-				this.hasRangeUpgrade = true;
-				this.rangeUpgradeTierMap.put(key, newUpgrade);
-			}
-		}
-
-		if (this.addon.getConfig().isSet("block-limits-upgrade")) {
-			ConfigurationSection section = this.addon.getConfig().getConfigurationSection("block-limits-upgrade");
-			this.blockLimitsUpgradeTierMap = this.loadBlockLimits(section, null);
-		}
-
+		// Without previous settings, the tiers are read from the binary cache if
+		// it was written for this config
+		Path configFile = this.addon.getDataFolder() == null ? null
+				: this.addon.getDataFolder().toPath().resolve("config.yml");
+		String configHash = configFile == null ? null : CompiledConfigCache.hash(configFile);
+		CompiledConfigCache cache = configHash == null ? null
+				: new CompiledConfigCache(this.addon, this.addon.getDataFolder().toPath().resolve(CACHE_FILE));
+		if (previous != null)
+			this.reusable = previous.compiled;
+		else if (cache != null)
+			this.reusable = cache.load(configHash);
+		else
+			this.reusable = Collections.emptyMap();
+
+		this.disabledGameModes = Collections
+				.unmodifiableSet(new HashSet<>(this.addon.getConfig().getStringList("disabled-gamemodes")));
+
+		this.metricsWriteInterval = Math.max(0, this.addon.getConfig().getInt("metrics.write-interval", 300));
+		this.slowOperationThreshold = Math.max(0, this.addon.getConfig().getDouble("metrics.slow-operation.threshold", 5));
+		this.slowOperationSampleRate = Math.min(1,
+				Math.max(0, this.addon.getConfig().getDouble("metrics.slow-operation.sample-rate", 1)));
+		this.slowOperationMaxLogs = Math.max(0, this.addon.getConfig().getInt("metrics.slow-operation.max-logs", 10));
+
+		this.databaseVirtualThreads = this.addon.getConfig().getBoolean("database.virtual-threads", true);
+		this.databaseMaxConcurrency = Math.max(1, this.addon.getConfig().getInt("database.max-concurrency", 4));
+		this.databaseJournal = this.addon.getConfig().getBoolean("database.journal", true);
+
+		this.networkInvalidation = this.addon.getConfig().getString("network.invalidation", "none").toLowerCase(Locale.ROOT);
+		String nodeId = this.addon.getConfig().getString("network.node-id", "");
+		this.networkNodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+		this.networkFile = this.addon.getConfig().getString("network.file", "network-changes.log");
+		this.networkPollInterval = Math.max(1, this.addon.getConfig().getLong("network.poll-interval", 500));
+
+		this.auditEnabled = this.addon.getConfig().getBoolean("audit.enabled", true);
+		this.auditFolder = this.addon.getConfig().getString("audit.folder", "audit");
+		this.auditMaxSize = Math.max(1, this.addon.getConfig().getLong("audit.max-size", 10)) * 1024 * 1024;
+		this.auditRotateInterval = Math.max(0, this.addon.getConfig().getLong("audit.rotate-interval", 24)) * 3600000;
+		this.restartValues = restartValues(this.addon.getConfig());
+
+		// Icons are needed to check the entity and command sections
+		Map<EntityType, Material> entityIcon = new EnumMap<>(EntityType.class);
 		if (this.addon.getConfig().isSet("entity-icon")) {
 			ConfigurationSection section = this.addon.getConfig().getConfigurationSection("entity-icon");
 			for (String entity : Objects.requireNonNull(section).getKeys(false)) {
@@ -59,10 +110,12 @@ public class Settings {
 				else if (mat == null)
 					this.addon.logError("Config: Material " + material + " is not a valid material");
 				else
-					this.entityIcon.put(ent, mat);
+					entityIcon.put(ent, mat);
 			}
 		}
+		this.entityIcon = Collections.unmodifiableMap(entityIcon);
 
+		Map<String, Material> entityGroupIcon = new TreeMap<>();
 		if (this.addon.getConfig().isSet("entity-group-icon")) {
 			ConfigurationSection section = this.addon.getConfig().getConfigurationSection("entity-group-icon");
 			for (String group : Objects.requireNonNull(section).getKeys(false)) {
@@ -71,21 +124,12 @@ public class Settings {
 				if (mat == null)
 					this.addon.logError("Config: Material " + material + " is not a valid material");
 				else
-					this.entityGroupIcon.put(group, mat);
+					entityGroupIcon.put(group, mat);
 			}
 		}
+		this.entityGroupIcon = Collections.unmodifiableMap(entityGroupIcon);
 
-		if (this.addon.getConfig().isSet("entity-limits-upgrade")) {
-			ConfigurationSection section = this.addon.getConfig().getConfigurationSection("entity-limits-upgrade");
-			this.entityLimitsUpgradeTierMap = this.loadEntityLimits(section, null);
-		}
-
-		if (this.addon.getConfig().isSet("entity-group-limits-upgrade")) {
-			ConfigurationSection section = this.addon.getConfig()
-					.getConfigurationSection("entity-group-limits-upgrade");
-			this.entityGroupLimitsUpgradeTierMap = this.loadEntityGroupLimits(section, null);
-		}
-
+		Map<String, Material> commandIcon = new TreeMap<>();
 		if (this.addon.getConfig().isSet("command-icon")) {
 			ConfigurationSection section = this.addon.getConfig().getConfigurationSection("command-icon");
 			for (String commandId : Objects.requireNonNull(section).getKeys(false)) {
@@ -94,284 +138,348 @@ public class Settings {
 				if (mat == null)
 					this.addon.logError("Config: Material " + material + " is not a valid material");
 				else
-					this.commandIcon.put(commandId, mat);
+					commandIcon.put(commandId, mat);
 			}
 		}
-
-		if (this.addon.getConfig().isSet("command-upgrade")) {
-			ConfigurationSection section = this.addon.getConfig().getConfigurationSection("command-upgrade");
-			this.commandUpgradeTierMap = this.loadCommand(section, null);
-		}
-
-		if (this.addon.getConfig().isSet("gamemodes")) {
-			ConfigurationSection section = this.addon.getConfig().getConfigurationSection("gamemodes");
+		this.commandIcon = Collections.unmodifiableMap(commandIcon);
+
+		// The upgrade sections are independent, they are parsed and their
+		// formulas compiled in parallel, then assembled
+		ConfigurationSection config = this.addon.getConfig();
+		ForkJoinTask<Map<String, UpgradeTier>> range = fork(config, "range-upgrade", this::loadTiers);
+		ForkJoinTask<Map<Material, Map<String, UpgradeTier>>> blocks = fork(config, "block-limits-upgrade",
+				this::loadBlockLimits);
+		ForkJoinTask<Map<EntityType, Map<String, UpgradeTier>>> entities = fork(config, "entity-limits-upgrade",
+				this::loadEntityLimits);
+		ForkJoinTask<Map<String, Map<String, UpgradeTier>>> groups = fork(config, "entity-group-limits-upgrade",
+				this::loadEntityGroupLimits);
+		ForkJoinTask<Map<String, Map<String, CommandUpgradeTier>>> commands = fork(config, "command-upgrade",
+				this::loadCommand);
+
+		Map<String, ForkJoinTask<Map<String, UpgradeTier>>> customRange = new TreeMap<>();
+		Map<String, ForkJoinTask<Map<Material, Map<String, UpgradeTier>>>> customBlocks = new TreeMap<>();
+		Map<String, ForkJoinTask<Map<EntityType, Map<String, UpgradeTier>>>> customEntities = new TreeMap<>();
+		Map<String, ForkJoinTask<Map<String, Map<String, UpgradeTier>>>> customGroups = new TreeMap<>();
+		Map<String, ForkJoinTask<Map<String, Map<String, CommandUpgradeTier>>>> customCommands = new TreeMap<>();
+		Set<String> gameModes = new TreeSet<>();
+		if (config.isSet("gamemodes")) {
+			ConfigurationSection section = config.getConfigurationSection("gamemodes");
 
 			for (String gameMode : Objects.requireNonNull(section).getKeys(false)) {
+				gameModes.add(gameMode);
 				ConfigurationSection gameModeSection = section.getConfigurationSection(gameMode);
+				customRange.put(gameMode, fork(gameModeSection, "range-upgrade", this::loadTiers));
+				customBlocks.put(gameMode, fork(gameModeSection, "block-limits-upgrade", this::loadBlockLimits));
+				customEntities.put(gameMode, fork(gameModeSection, "entity-limits-upgrade", this::loadEntityLimits));
+				customGroups.put(gameMode,
+						fork(gameModeSection, "entity-group-limits-upgrade", this::loadEntityGroupLimits));
+				customCommands.put(gameMode, fork(gameModeSection, "command-upgrade", this::loadCommand));
+			}
+		}
 
-				if (gameModeSection.isSet("range-upgrade")) {
-					ConfigurationSection lowSection = gameModeSection.getConfigurationSection("range-upgrade");
-					for (String key : Objects.requireNonNull(lowSection).getKeys(false)) {
-						UpgradeTier newUpgrade = addUpgradeSection(lowSection, key);
+		// Assembly, the max levels are computed from the tiers
+		this.rangeUpgradeTierMap = range.join();
+		this.maxRangeUpgrade = maxLevel(this.rangeUpgradeTierMap);
+		boolean hasRangeUpgrade = !this.rangeUpgradeTierMap.isEmpty();
+		this.blockLimitsUpgradeTierMap = blocks.join();
+		this.maxBlockLimitsUpgrade = maxLevels(this.blockLimitsUpgradeTierMap, new EnumMap<>(Material.class));
+		this.entityLimitsUpgradeTierMap = entities.join();
+		this.maxEntityLimitsUpgrade = maxLevels(this.entityLimitsUpgradeTierMap, new EnumMap<>(EntityType.class));
+		this.entityGroupLimitsUpgradeTierMap = groups.join();
+		this.maxEntityGroupLimitsUpgrade = maxLevels(this.entityGroupLimitsUpgradeTierMap, new TreeMap<>());
+		this.commandUpgradeTierMap = commands.join();
+		this.maxCommandUpgrade = maxLevels(this.commandUpgradeTierMap, new TreeMap<>());
+		Map<String, String> commandName = new TreeMap<>();
+		this.loadCommandNames(config.getConfigurationSection("command-upgrade"), commandName);
+
+		Map<String, Integer> customMaxRange = new TreeMap<>();
+		Map<String, Map<String, UpgradeTier>> customRangeTiers = new TreeMap<>();
+		Map<String, Map<Material, Integer>> customMaxBlocks = new TreeMap<>();
+		Map<String, Map<Material, Map<String, UpgradeTier>>> customBlockTiers = new TreeMap<>();
+		Map<String, Map<EntityType, Integer>> customMaxEntities = new TreeMap<>();
+		Map<String, Map<EntityType, Map<String, UpgradeTier>>> customEntityTiers = new TreeMap<>();
+		Map<String, Map<String, Integer>> customMaxGroups = new TreeMap<>();
+		Map<String, Map<String, Map<String, UpgradeTier>>> customGroupTiers = new TreeMap<>();
+		Map<String, Map<String, Integer>> customMaxCommands = new TreeMap<>();
+		Map<String, Map<String, Map<String, CommandUpgradeTier>>> customCommandTiers = new TreeMap<>();
+		for (String gameMode : customRange.keySet()) {
+			Map<String, UpgradeTier> rangeTiers = customRange.get(gameMode).join();
+			if (!rangeTiers.isEmpty()) {
+				customRangeTiers.put(gameMode, rangeTiers);
+				customMaxRange.put(gameMode, maxLevel(rangeTiers));
+				hasRangeUpgrade = true;
+			}
+			addCustom(gameMode, customBlocks.get(gameMode).join(), customBlockTiers, customMaxBlocks,
+					new EnumMap<>(Material.class));
+			addCustom(gameMode, customEntities.get(gameMode).join(), customEntityTiers, customMaxEntities,
+					new EnumMap<>(EntityType.class));
+			addCustom(gameMode, customGroups.get(gameMode).join(), customGroupTiers, customMaxGroups, new TreeMap<>());
+			addCustom(gameMode, customCommands.get(gameMode).join(), customCommandTiers, customMaxCommands,
+					new TreeMap<>());
+			this.loadCommandNames(config.getConfigurationSection("gamemodes." + gameMode + ".command-upgrade"),
+					commandName);
+		}
 
-						if (this.customMaxRangeUpgrade.get(gameMode) == null
-								|| this.customMaxRangeUpgrade.get(gameMode) < newUpgrade.getMaxLevel())
-							this.customMaxRangeUpgrade.put(gameMode, newUpgrade.getMaxLevel());
+		this.customMaxRangeUpgrade = Collections.unmodifiableMap(customMaxRange);
+		this.customRangeUpgradeTierMap = Collections.unmodifiableMap(customRangeTiers);
+		this.customMaxBlockLimitsUpgrade = Collections.unmodifiableMap(customMaxBlocks);
+		this.customBlockLimitsUpgradeTierMap = Collections.unmodifiableMap(customBlockTiers);
+		this.customMaxEntityLimitsUpgrade = Collections.unmodifiableMap(customMaxEntities);
+		this.customEntityLimitsUpgradeTierMap = Collections.unmodifiableMap(customEntityTiers);
+		this.customMaxEntityGroupLimitsUpgrade = Collections.unmodifiableMap(customMaxGroups);
+		this.customEntityGroupLimitsUpgradeTierMap = Collections.unmodifiableMap(customGroupTiers);
+		this.customMaxCommandUpgrade = Collections.unmodifiableMap(customMaxCommands);
+		this.customCommandUpgradeTierMap = Collections.unmodifiableMap(customCommandTiers);
+		this.gameModes = Collections.unmodifiableSet(gameModes);
+		this.hasRangeUpgrade = hasRangeUpgrade;
+		this.commandName = Collections.unmodifiableMap(commandName);
+
+		// Only the compiled tiers are kept
+		this.reusable = null;
+		if (cache != null && this.reusedSections.get() < this.compiled.size())
+			ForkJoinPool.commonPool().execute(() -> cache.write(configHash, this.compiled));
+	}
 
-						this.hasRangeUpgrade = true;
+	/**
+	 * @return Values of the settings read on enable only, by path
+	 */
+	private static Map<String, Object> restartValues(ConfigurationSection config) {
+		Map<String, Object> values = new TreeMap<>();
+		for (String path : RESTART_PATHS) {
+			if (config.isConfigurationSection(path))
+				config.getConfigurationSection(path).getValues(true).forEach((key, value) -> {
+					if (!(value instanceof ConfigurationSection))
+						values.put(path + "." + key, value);
+				});
+			else if (config.isSet(path))
+				values.put(path, config.get(path));
+		}
+		return values;
+	}
 
-						this.customRangeUpgradeTierMap.computeIfAbsent(gameMode, k -> new TreeMap<>()).put(key,
-								newUpgrade);
-					}
-				}
+	/**
+	 * Parse the section at path in the common fork join pool
+	 *
+	 * @return Task of the parsed section, an empty map if the section isn't set
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Map<?, ?>> ForkJoinTask<T> fork(ConfigurationSection parent, String path,
+			Function<ConfigurationSection, T> loader) {
+		if (!parent.isSet(path))
+			return ForkJoinPool.commonPool().submit(() -> (T) Collections.emptyMap());
+		ConfigurationSection section = parent.getConfigurationSection(path);
+		return ForkJoinPool.commonPool().submit(() -> loader.apply(section));
+	}
 
-				if (gameModeSection.isSet("block-limits-upgrade")) {
-					ConfigurationSection lowSection = gameModeSection.getConfigurationSection("block-limits-upgrade");
-					this.customBlockLimitsUpgradeTierMap.computeIfAbsent(gameMode,
-							k -> loadBlockLimits(lowSection, gameMode));
-				}
+	/**
+	 * Parse each sub section of section in parallel
+	 *
+	 * @param parser Parser of a sub section key, returns null to skip it
+	 * @return Parsed values by key, in the section order
+	 */
+	private static <T> List<Map.Entry<String, T>> parseAll(ConfigurationSection section, Function<String, T> parser) {
+		return new ArrayList<>(Objects.requireNonNull(section).getKeys(false)).parallelStream()
+				.map(key -> new AbstractMap.SimpleImmutableEntry<>(key, parser.apply(key)))
+				.filter(entry -> entry.getValue() != null).collect(Collectors.toList());
+	}
 
-				if (gameModeSection.isSet("entity-limits-upgrade")) {
-					ConfigurationSection lowSection = gameModeSection.getConfigurationSection("entity-limits-upgrade");
-					this.customEntityLimitsUpgradeTierMap.computeIfAbsent(gameMode,
-							k -> loadEntityLimits(lowSection, gameMode));
-				}
+	private static int maxLevel(Map<String, ? extends UpgradeTier> tiers) {
+		return tiers.values().stream().mapToInt(UpgradeTier::getMaxLevel).max().orElse(0);
+	}
 
-				if (gameModeSection.isSet("entity-group-limits-upgrade")) {
-					ConfigurationSection lowSection = gameModeSection
-							.getConfigurationSection("entity-group-limits-upgrade");
-					this.customEntityGroupLimitsUpgradeTierMap.computeIfAbsent(gameMode,
-							k -> loadEntityGroupLimits(lowSection, gameMode));
-				}
+	private static <K> Map<K, Integer> maxLevels(Map<K, ? extends Map<String, ? extends UpgradeTier>> tiers,
+			Map<K, Integer> maxLevels) {
+		tiers.forEach((key, tier) -> {
+			if (!tier.isEmpty())
+				maxLevels.put(key, maxLevel(tier));
+		});
+		return Collections.unmodifiableMap(maxLevels);
+	}
 
-				if (gameModeSection.isSet("command-upgrade")) {
-					ConfigurationSection lowSection = gameModeSection.getConfigurationSection("command-upgrade");
-					this.customCommandUpgradeTierMap.computeIfAbsent(gameMode, k -> loadCommand(lowSection, gameMode));
-				}
-			}
+	/**
+	 * Add the tiers of a gamemode, the gamemode max levels replace the default
+	 * ones if it has at least one tier
+	 */
+	private static <K, T extends Map<String, ? extends UpgradeTier>> void addCustom(String gameMode, Map<K, T> tiers,
+			Map<String, Map<K, T>> customTiers, Map<String, Map<K, Integer>> customMaxLevels,
+			Map<K, Integer> maxLevels) {
+		if (tiers.isEmpty())
+			return;
+		customTiers.put(gameMode, tiers);
+		Map<K, Integer> max = maxLevels(tiers, maxLevels);
+		if (!max.isEmpty())
+			customMaxLevels.put(gameMode, max);
+	}
+
+	/**
+	 * Compile section, or take the tiers compiled by the previous settings if
+	 * the section didn't change. Tiers are never modified once compiled, so
+	 * they can be shared.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T reuseOrCompile(ConfigurationSection section, Function<ConfigurationSection, T> compiler) {
+		String path = section.getCurrentPath();
+		String fingerprint = section.getValues(true).entrySet().stream()
+				.filter(entry -> !(entry.getValue() instanceof ConfigurationSection)).map(Object::toString)
+				.collect(Collectors.joining("\n"));
+
+		CompiledSection compiled = this.reusable.get(path);
+		if (compiled != null && compiled.fingerprint.equals(fingerprint)) {
+			this.reusedSections.incrementAndGet();
+		} else {
+			compiled = new CompiledSection(fingerprint, compiler.apply(section));
 		}
+		this.compiled.put(path, compiled);
+		return (T) compiled.tiers;
+	}
 
+	private Map<String, UpgradeTier> loadTiers(ConfigurationSection section) {
+		return this.reuseOrCompile(Objects.requireNonNull(section), tierSection -> {
+			Map<String, UpgradeTier> tiers = new TreeMap<>();
+			for (String key : tierSection.getKeys(false))
+				tiers.put(key, addUpgradeSection(tierSection, key));
+			return Collections.unmodifiableMap(tiers);
+		});
 	}
 
-	private Map<Material, Map<String, UpgradeTier>> loadBlockLimits(ConfigurationSection section, String gameMode) {
+	private Map<Material, Map<String, UpgradeTier>> loadBlockLimits(ConfigurationSection section) {
 		Map<Material, Map<String, UpgradeTier>> mats = new EnumMap<>(Material.class);
-		for (String material : Objects.requireNonNull(section).getKeys(false)) {
+		parseAll(section, material -> {
 			Material mat = Material.getMaterial(material);
-			if (mat != null && mat.isBlock()) {
-				Map<String, UpgradeTier> tier = new TreeMap<>();
-				ConfigurationSection matSection = section.getConfigurationSection(material);
-				for (String key : Objects.requireNonNull(matSection).getKeys(false)) {
-					UpgradeTier newUpgrade = addUpgradeSection(matSection, key);
-
-					if (gameMode == null) {
-						if (this.maxBlockLimitsUpgrade.get(mat) == null
-								|| this.maxBlockLimitsUpgrade.get(mat) < newUpgrade.getMaxLevel())
-							this.maxBlockLimitsUpgrade.put(mat, newUpgrade.getMaxLevel());
-					} else {
-						if (this.customMaxBlockLimitsUpgrade.get(gameMode) == null) {
-							Map<Material, Integer> newMap = new EnumMap<>(Material.class);
-							newMap.put(mat, newUpgrade.getMaxLevel());
-							this.customMaxBlockLimitsUpgrade.put(gameMode, newMap);
-						} else {
-							if (this.customMaxBlockLimitsUpgrade.get(gameMode).get(mat) == null
-									|| this.customMaxBlockLimitsUpgrade.get(gameMode).get(mat) < newUpgrade
-											.getMaxLevel())
-								this.customMaxBlockLimitsUpgrade.get(gameMode).put(mat, newUpgrade.getMaxLevel());
-						}
-					}
-
-					tier.put(key, newUpgrade);
-				}
-				mats.put(mat, tier);
-			} else {
-				this.addon.logError("Material " + material + " is not a valid material. Skipping...");
-			}
-		}
-		return mats;
+			if (mat != null && mat.isBlock())
+				return this.loadTiers(section.getConfigurationSection(material));
+			this.addon.logError("Material " + material + " is not a valid material. Skipping...");
+			return null;
+		}).forEach(entry -> mats.put(Material.getMaterial(entry.getKey()), entry.getValue()));
+		return Collections.unmodifiableMap(mats);
 	}
 
-	private Map<EntityType, Map<String, UpgradeTier>> loadEntityLimits(ConfigurationSection section, String gameMode) {
+	private Map<EntityType, Map<String, UpgradeTier>> loadEntityLimits(ConfigurationSection section) {
 		Map<EntityType, Map<String, UpgradeTier>> ents = new EnumMap<>(EntityType.class);
-		for (String entity : Objects.requireNonNull(section).getKeys(false)) {
+		parseAll(section, entity -> {
 			EntityType ent = this.getEntityType(entity);
 			if (ent != null && this.entityIcon.containsKey(ent)) {
-				Map<String, UpgradeTier> tier = new TreeMap<>();
-				ConfigurationSection entSection = section.getConfigurationSection(entity);
-				for (String key : Objects.requireNonNull(entSection).getKeys(false)) {
-					UpgradeTier newUpgrade = addUpgradeSection(entSection, key);
-
-					if (gameMode == null) {
-						if (this.maxEntityLimitsUpgrade.get(ent) == null
-								|| this.maxEntityLimitsUpgrade.get(ent) < newUpgrade.getMaxLevel())
-							this.maxEntityLimitsUpgrade.put(ent, newUpgrade.getMaxLevel());
-					} else {
-						if (this.customMaxEntityLimitsUpgrade.get(gameMode) == null) {
-							Map<EntityType, Integer> newMap = new EnumMap<>(EntityType.class);
-							newMap.put(ent, newUpgrade.getMaxLevel());
-							this.customMaxEntityLimitsUpgrade.put(gameMode, newMap);
-						} else {
-							if (this.customMaxEntityLimitsUpgrade.get(gameMode).get(ent) == null
-									|| this.customMaxEntityLimitsUpgrade.get(gameMode).get(ent) < newUpgrade
-											.getMaxLevel())
-								this.customMaxEntityLimitsUpgrade.get(gameMode).put(ent, newUpgrade.getMaxLevel());
-						}
-					}
-
-					tier.put(key, newUpgrade);
-				}
-				tier.keySet().forEach(k -> BentoBox.getInstance().logDebug("Key - " + k));
-				ents.put(ent, tier);
-			} else {
-				if (ent != null)
-					this.addon.logError("Entity " + entity + " is not a valid entity. Skipping...");
-				else
-					this.addon.logError("Entity " + entity + " is missing a corresponding icon. Skipping...");
+				Map<String, UpgradeTier> tier = this.loadTiers(section.getConfigurationSection(entity));
+				tier.keySet().forEach(k -> this.addon.getPlugin().logDebug("Key - " + k));
+				return tier;
 			}
-		}
-		return ents;
+			if (ent != null)
+				this.addon.logError("Entity " + entity + " is not a valid entity. Skipping...");
+			else
+				this.addon.logError("Entity " + entity + " is missing a corresponding icon. Skipping...");
+			return null;
+		}).forEach(entry -> ents.put(this.getEntityType(entry.getKey()), entry.getValue()));
+		return Collections.unmodifiableMap(ents);
 	}
 
-	private Map<String, Map<String, UpgradeTier>> loadEntityGroupLimits(ConfigurationSection section, String gameMode) {
+	private Map<String, Map<String, UpgradeTier>> loadEntityGroupLimits(ConfigurationSection section) {
 		Map<String, Map<String, UpgradeTier>> ents = new TreeMap<>();
-		for (String entitygroup : Objects.requireNonNull(section).getKeys(false)) {
-			Map<String, UpgradeTier> tier = new TreeMap<>();
-			ConfigurationSection entSection = section.getConfigurationSection(entitygroup);
-			for (String key : Objects.requireNonNull(entSection).getKeys(false)) {
-				UpgradeTier newUpgrade = addUpgradeSection(entSection, key);
-
-				if (gameMode == null) {
-					if (this.maxEntityGroupLimitsUpgrade.get(entitygroup) == null
-							|| this.maxEntityGroupLimitsUpgrade.get(entitygroup) < newUpgrade.getMaxLevel())
-						this.maxEntityGroupLimitsUpgrade.put(entitygroup, newUpgrade.getMaxLevel());
-				} else {
-					if (this.customMaxEntityGroupLimitsUpgrade.get(gameMode) == null) {
-						Map<String, Integer> newMap = new TreeMap<>();
-						newMap.put(entitygroup, newUpgrade.getMaxLevel());
-						this.customMaxEntityGroupLimitsUpgrade.put(gameMode, newMap);
-					} else {
-						if (this.customMaxEntityGroupLimitsUpgrade.get(gameMode).get(entitygroup) == null
-								|| this.customMaxEntityGroupLimitsUpgrade.get(gameMode).get(entitygroup) < newUpgrade
-										.getMaxLevel())
-							this.customMaxEntityGroupLimitsUpgrade.get(gameMode).put(entitygroup,
-									newUpgrade.getMaxLevel());
-					}
-				}
-
-				tier.put(key, newUpgrade);
-			}
-			ents.put(entitygroup, tier);
-		}
-		return ents;
+		parseAll(section, entitygroup -> this.loadTiers(section.getConfigurationSection(entitygroup)))
+				.forEach(entry -> ents.put(entry.getKey(), entry.getValue()));
+		return Collections.unmodifiableMap(ents);
 	}
 
-	private Map<String, Map<String, CommandUpgradeTier>> loadCommand(ConfigurationSection section, String gamemode) {
+	private Map<String, Map<String, CommandUpgradeTier>> loadCommand(ConfigurationSection section) {
 		Map<String, Map<String, CommandUpgradeTier>> commands = new TreeMap<>();
-
-		for (String commandId : Objects.requireNonNull(section).getKeys(false)) {
-			if (this.commandIcon.containsKey(commandId)) {
-				String name = commandId;
-				Map<String, CommandUpgradeTier> tier = new TreeMap<>();
-				ConfigurationSection cmdSection = section.getConfigurationSection(commandId);
-				for (String key : Objects.requireNonNull(cmdSection).getKeys(false)) {
-					if (key.equals("name")) {
-						name = cmdSection.getString(key);
-					} else {
-						CommandUpgradeTier newUpgrade = addCommandUpgradeSection(cmdSection, key);
-
-						if (gamemode == null) {
-							if (this.maxCommandUpgrade.get(commandId) == null
-									|| this.maxCommandUpgrade.get(commandId) < newUpgrade.getMaxLevel()) {
-								this.maxCommandUpgrade.put(commandId, newUpgrade.getMaxLevel());
-							}
-						} else {
-							if (this.customMaxCommandUpgrade.get(gamemode) == null) {
-								Map<String, Integer> newMap = new TreeMap<>();
-								newMap.put(commandId, newUpgrade.getMaxLevel());
-								this.customMaxCommandUpgrade.put(gamemode, newMap);
-							} else {
-								if (this.customMaxCommandUpgrade.get(gamemode).get(commandId) == null
-										|| this.customMaxCommandUpgrade.get(gamemode).get(commandId) < newUpgrade
-												.getMaxLevel())
-									this.customMaxCommandUpgrade.get(gamemode).put(commandId, newUpgrade.getMaxLevel());
-							}
-						}
-
-						tier.put(key, newUpgrade);
-					}
-				}
-				if (!this.commandName.containsKey(commandId) || !name.equals(commandId))
-					this.commandName.put(commandId, name);
-				commands.put(commandId, tier);
-			} else {
+		parseAll(section, commandId -> {
+			if (!this.commandIcon.containsKey(commandId)) {
 				this.addon.logError("Command " + commandId + " is missing a corresponding icon. Skipping...");
+				return null;
 			}
-		}
+			ConfigurationSection commandSection = Objects.requireNonNull(section.getConfigurationSection(commandId));
+			return this.reuseOrCompile(commandSection, cmdSection -> {
+				Map<String, CommandUpgradeTier> tier = new TreeMap<>();
+				for (String key : cmdSection.getKeys(false)) {
+					if (!key.equals("name"))
+						tier.put(key, addCommandUpgradeSection(cmdSection, key));
+				}
+				return Collections.unmodifiableMap(tier);
+			});
+		}).forEach(entry -> commands.put(entry.getKey(), entry.getValue()));
+		return Collections.unmodifiableMap(commands);
+	}
 
-		return commands;
+	/**
+	 * Read the names of the commands of a command-upgrade section, a name set
+	 * in a gamemode replaces the default one
+	 */
+	private void loadCommandNames(ConfigurationSection section, Map<String, String> commandName) {
+		if (section == null)
+			return;
+		for (String commandId : section.getKeys(false)) {
+			if (!this.commandIcon.containsKey(commandId))
+				continue;
+			String name = section.getString(commandId + ".name", commandId);
+			if (!commandName.containsKey(commandId) || !name.equals(commandId))
+				commandName.put(commandId, name);
+		}
 	}
 
 	@NonNull
 	private UpgradeTier addUpgradeSection(ConfigurationSection section, String key) {
 		ConfigurationSection tierSection = section.getConfigurationSection(key);
-		UpgradeTier upgradeTier = new UpgradeTier(key);
-		upgradeTier.setTierName(tierSection.getName());
-		upgradeTier.setMaxLevel(tierSection.getInt("max-level"));
-		upgradeTier.setUpgrade(parse(tierSection.getString("upgrade"), upgradeTier.getExpressionVariable()));
-
-		if (tierSection.isSet("island-min-level"))
-			upgradeTier.setIslandMinLevel(
-					parse(tierSection.getString("island-min-level"), upgradeTier.getExpressionVariable()));
-		else
-			upgradeTier.setIslandMinLevel(parse("0", upgradeTier.getExpressionVariable()));
-
-		if (tierSection.isSet("vault-cost"))
-			upgradeTier.setVaultCost(parse(tierSection.getString("vault-cost"), upgradeTier.getExpressionVariable()));
-		else
-			upgradeTier.setVaultCost(parse("0", upgradeTier.getExpressionVariable()));
-
-		if (tierSection.isSet("permission-level"))
-			upgradeTier.setPermissionLevel(tierSection.getInt("permission-level"));
-		else
-			upgradeTier.setPermissionLevel(0);
-
-		return upgradeTier;
-
+		return new UpgradeTier(key, tierSection.getName(), tierSection.getInt("max-level"),
+				tierSection.getInt("permission-level", 0), parse(tierSection.getString("upgrade")),
+				parse(tierSection.getString("island-min-level", "0")), parse(tierSection.getString("vault-cost", "0")));
 	}
 
 	@NonNull
 	private CommandUpgradeTier addCommandUpgradeSection(ConfigurationSection section, String key) {
 		ConfigurationSection tierSection = section.getConfigurationSection(key);
-		CommandUpgradeTier upgradeTier = new CommandUpgradeTier(key);
-		upgradeTier.setTierName(tierSection.getName());
-		upgradeTier.setMaxLevel(tierSection.getInt("max-level"));
-		upgradeTier.setUpgrade(parse("0", upgradeTier.getExpressionVariable()));
-
-		if (tierSection.isSet("island-min-level"))
-			upgradeTier.setIslandMinLevel(
-					parse(tierSection.getString("island-min-level"), upgradeTier.getExpressionVariable()));
-		else
-			upgradeTier.setIslandMinLevel(parse("0", upgradeTier.getExpressionVariable()));
-
-		if (tierSection.isSet("vault-cost"))
-			upgradeTier.setVaultCost(parse(tierSection.getString("vault-cost"), upgradeTier.getExpressionVariable()));
-		else
-			upgradeTier.setVaultCost(parse("0", upgradeTier.getExpressionVariable()));
-
-		if (tierSection.isSet("permission-level"))
-			upgradeTier.setPermissionLevel(tierSection.getInt("permission-level"));
-		else
-			upgradeTier.setPermissionLevel(0);
+		boolean console = tierSection.isSet("console") && tierSection.isBoolean("console")
+				&& tierSection.getBoolean("console");
+		List<String> commands = tierSection.isSet("command") ? tierSection.getStringList("command")
+				: Collections.emptyList();
+		return new CommandUpgradeTier(key, tierSection.getName(), tierSection.getInt("max-level"),
+				tierSection.getInt("permission-level", 0), parse(tierSection.getString("island-min-level", "0")),
+				parse(tierSection.getString("vault-cost", "0")), console, commands);
+	}
 
-		if (tierSection.isSet("console") && tierSection.isBoolean("console"))
-			upgradeTier.setConsole(tierSection.getBoolean("console"));
-		else
-			upgradeTier.setConsole(false);
+	/**
+	 * Compare the tiers of an upgrade with the ones of previous, in the default
+	 * section and in every gamemode. Unchanged sections keep their compiled
+	 * tiers on reload, so the tiers are compared by identity.
+	 *
+	 * @param previous Settings before the reload
+	 * @param tiers    Tiers of the upgrade in a settings for a gamemode, the
+	 *                 default ones for a null gamemode
+	 * @return If the upgrade has the same tiers in both settings
+	 */
+	public boolean hasSameTiers(Settings previous, BiFunction<Settings, String, Map<String, ?>> tiers) {
+		if (tiers.apply(this, null) != tiers.apply(previous, null))
+			return false;
+		Set<String> gameModes = new HashSet<>(this.gameModes);
+		gameModes.addAll(previous.gameModes);
+		return gameModes.stream().allMatch(gameMode -> tiers.apply(this, gameMode) == tiers.apply(previous, gameMode));
+	}
 
-		if (tierSection.isSet("command"))
-			upgradeTier.setCommandList(tierSection.getStringList("command"));
+	/**
+	 * The components using these settings are created on enable, a reload
+	 * doesn't apply their changes
+	 *
+	 * @param previous Settings before the reload
+	 * @return Paths of the settings changed since previous that need a restart
+	 */
+	public Set<String> getRestartChanges(Settings previous) {
+		Set<String> changed = new TreeSet<>(this.restartValues.keySet());
+		changed.addAll(previous.restartValues.keySet());
+		changed.removeIf(path -> Objects.equals(this.restartValues.get(path), previous.restartValues.get(path)));
+		return changed;
+	}
 
-		return upgradeTier;
+	/**
+	 * @return Number of upgrade sections taken from the previous settings or
+	 *         the binary cache instead of being compiled
+	 */
+	public int getReusedSections() {
+		return this.reusedSections.get();
+	}
 
+	/**
+	 * @return Number of upgrade sections
+	 */
+	public int getSections() {
+		return this.compiled.size();
 	}
 
 	/**
@@ -381,6 +489,115 @@ public class Settings {
 		return disabledGameModes;
 	}
 
+	/**
+	 * @return Interval in seconds between two writes of the metrics file, 0 if disabled
+	 */
+	public int getMetricsWriteInterval() {
+		return this.metricsWriteInterval;
+	}
+
+	/**
+	 * @return Duration in milliseconds above which an operation is logged, 0 if disabled
+	 */
+	public double getSlowOperationThreshold() {
+		return this.slowOperationThreshold;
+	}
+
+	/**
+	 * @return Part of the slow operations that are logged, between 0 and 1
+	 */
+	public double getSlowOperationSampleRate() {
+		return this.slowOperationSampleRate;
+	}
+
+	/**
+	 * @return Maximum number of slow operations logged per minute
+	 */
+	public int getSlowOperationMaxLogs() {
+		return this.slowOperationMaxLogs;
+	}
+
+	/**
+	 * @return If the database loads and saves run on virtual threads when available
+	 */
+	public boolean isDatabaseVirtualThreads() {
+		return this.databaseVirtualThreads;
+	}
+
+	/**
+	 * @return Maximum number of database loads and saves at the same time
+	 */
+	public int getDatabaseMaxConcurrency() {
+		return this.databaseMaxConcurrency;
+	}
+
+	/**
+	 * @return If the level changes are written to the journal before the purchase ends
+	 */
+	public boolean isDatabaseJournal() {
+		return this.databaseJournal;
+	}
+
+	/**
+	 * @return How the level changes are shared with the other servers: none or file
+	 */
+	public String getNetworkInvalidation() {
+		return this.networkInvalidation;
+	}
+
+	/**
+	 * @return Id of this server, random if not configured
+	 */
+	public String getNetworkNodeId() {
+		return this.networkNodeId;
+	}
+
+	/**
+	 * @param dataFolder Folder of the addon, for a relative path
+	 * @return File shared by the servers
+	 */
+	public Path getNetworkFile(File dataFolder) {
+		Path path = Paths.get(this.networkFile);
+		return path.isAbsolute() ? path : dataFolder.toPath().resolve(path);
+	}
+
+	/**
+	 * @return Interval in milliseconds between two reads of the shared file
+	 */
+	public long getNetworkPollInterval() {
+		return this.networkPollInterval;
+	}
+
+	/**
+	 * @return If the purchases are written to the audit log
+	 */
+	public boolean isAuditEnabled() {
+		return this.auditEnabled;
+	}
+
+	/**
+	 * @param dataFolder Folder of the addon, for a relative path
+	 * @return Folder of the audit log files
+	 */
+	public Path getAuditFolder(File dataFolder) {
+		Path path = Paths.get(this.auditFolder);
+		return path.isAbsolute() ? path : dataFolder.toPath().resolve(path);
+	}
+
+	/**
+	 * @return Size in bytes above which the audit log is rotated
+	 */
+	public long getAuditMaxSize() {
+		return this.auditMaxSize;
+	}
+
+	/**
+	 * @return Age in milliseconds above which the audit log is rotated, 0 if disabled
+	 */
+	public long getAuditRotateInterval() {
+		return this.auditRotateInterval;
+	}
+
 	public boolean getHasRangeUpgrade() {
 		return this.hasRangeUpgrade;
 	}
@@ -416,7 +633,7 @@ public class Settings {
 	}
 
 	public Set<Material> getMaterialsLimitsUpgrade() {
-		Set<Material> materials = new HashSet<>();
+		Set<Material> materials = EnumSet.noneOf(Material.class);
 
 		this.customBlockLimitsUpgradeTierMap.forEach((addon, addonUpgrade) -> {
 			materials.addAll(addonUpgrade.keySet());
@@ -464,7 +681,7 @@ public class Settings {
 	}
 
 	public Set<EntityType> getEntityLimitsUpgrade() {
-		Set<EntityType> entity = new HashSet<>();
+		Set<EntityType> entity = EnumSet.noneOf(EntityType.class);
 
 		this.customEntityLimitsUpgradeTierMap.forEach((addon, addonUpgrade) -> {
 			entity.addAll(addonUpgrade.keySet());
@@ -475,7 +692,7 @@ public class Settings {
 	}
 
 	public Set<String> getEntityGroupLimitsUpgrade() {
-		Set<String> groups = new HashSet<>();
+		Set<String> groups = new TreeSet<>();
 
 		this.customEntityGroupLimitsUpgradeTierMap.forEach((addon, addonUpgrade) -> {
 			groups.addAll(addonUpgrade.keySet());
@@ -510,7 +727,7 @@ public class Settings {
 	}
 
 	public Set<String> getCommandUpgrade() {
-		Set<String> command = new HashSet<>();
+		Set<String> command = new TreeSet<>();
 
 		this.customCommandUpgradeTierMap.forEach((addon, addonUpgrade) -> {
 			command.addAll(addonUpgrade.keySet());
@@ -528,78 +745,150 @@ public class Settings {
 		return this.commandName.get(command);
 	}
 
-	private UpgradesAddon addon;
+	private final UpgradesAddon addon;
+
+	private final Set<String> disabledGameModes;
+
+	private final int metricsWriteInterval;
+
+	private final double slowOperationThreshold;
+
+	private final double slowOperationSampleRate;
+
+	private final int slowOperationMaxLogs;
 
-	private Set<String> disabledGameModes;
+	private final boolean databaseVirtualThreads;
 
-	private int maxRangeUpgrade = 0;
+	private final int databaseMaxConcurrency;
 
-	private boolean hasRangeUpgrade;
+	private final boolean databaseJournal;
 
-	private Map<String, Integer> customMaxRangeUpgrade = new TreeMap<>();
+	private final String networkInvalidation;
 
-	private Map<String, UpgradeTier> rangeUpgradeTierMap = new TreeMap<>();
+	private final String networkNodeId;
 
-	private Map<String, Map<String, UpgradeTier>> customRangeUpgradeTierMap = new TreeMap<>();
+	private final String networkFile;
 
-	private Map<Material, Integer> maxBlockLimitsUpgrade = new EnumMap<>(Material.class);
+	private final long networkPollInterval;
 
-	private Map<String, Map<Material, Integer>> customMaxBlockLimitsUpgrade = new TreeMap<>();
+	private final boolean auditEnabled;
 
-	private Map<Material, Map<String, UpgradeTier>> blockLimitsUpgradeTierMap = new EnumMap<>(Material.class);
+	private final String auditFolder;
 
-	private Map<String, Map<Material, Map<String, UpgradeTier>>> customBlockLimitsUpgradeTierMap = new TreeMap<>();
+	private final long auditMaxSize;
 
-	private Map<EntityType, Material> entityIcon = new EnumMap<>(EntityType.class);
+	private final long auditRotateInterval;
 
-	private Map<String, Material> entityGroupIcon = new TreeMap<>();
+	private final int maxRangeUpgrade;
 
-	private Map<EntityType, Integer> maxEntityLimitsUpgrade = new EnumMap<>(EntityType.class);
+	private final boolean hasRangeUpgrade;
 
-	private Map<String, Integer> maxEntityGroupLimitsUpgrade = new TreeMap<>();
+	private final Map<String, Integer> customMaxRangeUpgrade;
 
-	private Map<String, Map<EntityType, Integer>> customMaxEntityLimitsUpgrade = new TreeMap<>();
+	private final Map<String, UpgradeTier> rangeUpgradeTierMap;
 
-	private Map<String, Map<String, Integer>> customMaxEntityGroupLimitsUpgrade = new TreeMap<>();
+	private final Map<String, Map<String, UpgradeTier>> customRangeUpgradeTierMap;
 
-	private Map<EntityType, Map<String, UpgradeTier>> entityLimitsUpgradeTierMap = new EnumMap<>(EntityType.class);
+	private final Map<Material, Integer> maxBlockLimitsUpgrade;
 
-	private Map<String, Map<String, UpgradeTier>> entityGroupLimitsUpgradeTierMap = new TreeMap<>();
+	private final Map<String, Map<Material, Integer>> customMaxBlockLimitsUpgrade;
 
-	private Map<String, Map<EntityType, Map<String, UpgradeTier>>> customEntityLimitsUpgradeTierMap = new TreeMap<>();
+	private final Map<Material, Map<String, UpgradeTier>> blockLimitsUpgradeTierMap;
 
-	private Map<String, Map<String, Map<String, UpgradeTier>>> customEntityGroupLimitsUpgradeTierMap = new TreeMap<>();
+	private final Map<String, Map<Material, Map<String, UpgradeTier>>> customBlockLimitsUpgradeTierMap;
 
-	private Map<String, Integer> maxCommandUpgrade = new TreeMap<>();
+	private final Map<EntityType, Material> entityIcon;
 
-	private Map<String, Map<String, Integer>> customMaxCommandUpgrade = new TreeMap<>();
+	private final Map<String, Material> entityGroupIcon;
 
-	private Map<String, Map<String, CommandUpgradeTier>> commandUpgradeTierMap = new TreeMap<>();
+	private final Map<EntityType, Integer> maxEntityLimitsUpgrade;
 
-	private Map<String, Map<String, Map<String, CommandUpgradeTier>>> customCommandUpgradeTierMap = new TreeMap<>();
+	private final Map<String, Integer> maxEntityGroupLimitsUpgrade;
 
-	private Map<String, Material> commandIcon = new TreeMap<>();
+	private final Map<String, Map<EntityType, Integer>> customMaxEntityLimitsUpgrade;
 
-	private Map<String, String> commandName = new TreeMap<>();
+	private final Map<String, Map<String, Integer>> customMaxEntityGroupLimitsUpgrade;
+
+	private final Map<EntityType, Map<String, UpgradeTier>> entityLimitsUpgradeTierMap;
+
+	private final Map<String, Map<String, UpgradeTier>> entityGroupLimitsUpgradeTierMap;
+
+	private final Map<String, Map<EntityType, Map<String, UpgradeTier>>> customEntityLimitsUpgradeTierMap;
+
+	private final Map<String, Map<String, Map<String, UpgradeTier>>> customEntityGroupLimitsUpgradeTierMap;
+
+	private final Map<String, Integer> maxCommandUpgrade;
+
+	private final Map<String, Map<String, Integer>> customMaxCommandUpgrade;
+
+	private final Map<String, Map<String, CommandUpgradeTier>> commandUpgradeTierMap;
+
+	private final Map<String, Map<String, Map<String, CommandUpgradeTier>>> customCommandUpgradeTierMap;
+
+	private final Map<String, Material> commandIcon;
+
+	private final Map<String, String> commandName;
+
+	private final Set<String> gameModes;
+
+	private final Map<String, Object> restartValues;
+
+	// Only used while constructing
+	private Map<String, CompiledSection> reusable;
+
+	private final Map<String, CompiledSection> compiled = new ConcurrentHashMap<>();
+
+	private final AtomicInteger reusedSections = new AtomicInteger();
+
+	private static final String CACHE_FILE = "compiled-config.bin";
+
+	// Read by the components created on enable
+	private static final List<String> RESTART_PATHS = List.of("metrics.write-interval", "database", "network", "audit");
+
+	/**
+	 * Tiers compiled from a section, with the content they were compiled from
+	 */
+	static class CompiledSection {
+
+		CompiledSection(String fingerprint, Object tiers) {
+			this.fingerprint = fingerprint;
+			this.tiers = tiers;
+		}
+
+		final String fingerprint;
+
+		final Object tiers;
+
+	}
 
 	// ------------------------------------------------------------------
 	// Section: Private object
 	// ------------------------------------------------------------------
 
-	public class UpgradeTier {
+	/**
+	 * Compiled tier of an upgrade, built by its constructor and never modified
+	 */
+	public static class UpgradeTier {
 		/**
-		 * Constructor UpgradeTier create a new UpgradeTier instance and set
-		 * expressionVariables to default value
+		 * Constructor UpgradeTier create a new UpgradeTier instance
 		 *
-		 * @param id
+		 * @param id              Key of the tier in its section
+		 * @param tierName        Name of the tier
+		 * @param maxLevel        Last level of the tier
+		 * @param permissionLevel Permission level required, 0 if none
+		 * @param upgrade         Formula of the upgrade value
+		 * @param islandMinLevel  Formula of the island level required
+		 * @param vaultCost       Formula of the cost
 		 */
-		public UpgradeTier(String id) {
+		public UpgradeTier(String id, String tierName, int maxLevel, int permissionLevel, Expression upgrade,
+				Expression islandMinLevel, Expression vaultCost) {
 			this.id = id;
-			this.expressionVariables = new TreeMap<>();
-			this.expressionVariables.put("[level]", 0.0);
-			this.expressionVariables.put("[islandLevel]", 0.0);
-			this.expressionVariables.put("[numberPlayer]", 0.0);
-
+			this.tierName = tierName;
+			this.maxLevel = maxLevel;
+			this.permissionLevel = permissionLevel;
+			this.upgrade = upgrade;
+			this.islandMinLevel = islandMinLevel;
+			this.vaultCost = vaultCost;
 		}
 
 		// --------------------------------------------------------------
@@ -617,10 +906,6 @@ public class Settings {
 			return this.tierName;
 		}
 
-		public void setTierName(String tierName) {
-			this.tierName = tierName;
-		}
-
 		/**
 		 * @return the maxLevel
 		 */
@@ -628,13 +913,6 @@ public class Settings {
 			return maxLevel;
 		}
 
-		/**
-		 * @param maxLevel the maxLevel to set
-		 */
-		public void setMaxLevel(int maxLevel) {
-			this.maxLevel = maxLevel;
-		}
-
 		/**
 		 * @return the level of permission
 		 */
@@ -642,13 +920,6 @@ public class Settings {
 			return this.permissionLevel;
 		}
 
-		/**
-		 * @param level of permission to set
-		 */
-		public void setPermissionLevel(Integer level) {
-			this.permissionLevel = level;
-		}
-
 		/**
 		 * @return the upgradeRange
 		 */
@@ -656,13 +927,6 @@ public class Settings {
 			return upgrade;
 		}
 
-		/**
-		 * @param upgrade the upgradeRange to set
-		 */
-		public void setUpgrade(Expression upgrade) {
-			this.upgrade = upgrade;
-		}
-
 		/**
 		 * @return the islandMinLevel
 		 */
@@ -670,13 +934,6 @@ public class Settings {
 			return islandMinLevel;
 		}
 
-		/**
-		 * @param islandMinLevel the islandMinLevel to set
-		 */
-		public void setIslandMinLevel(Expression islandMinLevel) {
-			this.islandMinLevel = islandMinLevel;
-		}
-
 		/**
 		 * @return the vaultCost
 		 */
@@ -684,46 +941,18 @@ public class Settings {
 			return vaultCost;
 		}
 
-		/**
-		 * @param vaultCost the vaultCost to set
-		 */
-		public void setVaultCost(Expression vaultCost) {
-			this.vaultCost = vaultCost;
-		}
-
-		/**
-		 * Value to set for the math parser
-		 * 
-		 * @param key
-		 * @param value
-		 */
-		public void updateExpressionVariable(String key, double value) {
-			this.expressionVariables.put(key, value);
-		}
-
-		public Map<String, Double> getExpressionVariable() {
-			return expressionVariables;
-		}
-
+		// The variables are given to each evaluation, so islands of different
+		// regions can be computed at the same time without a lock
 		public double calculateUpgrade(double level, double islandLevel, double numberPeople) {
-			this.updateExpressionVariable("[level]", level);
-			this.updateExpressionVariable("[islandLevel]", islandLevel);
-			this.updateExpressionVariable("[numberPlayer]", numberPeople);
-			return this.getUpgrade().eval();
+			return this.getUpgrade().eval(new double[] { level, islandLevel, numberPeople });
 		}
 
 		public double calculateIslandMinLevel(double level, double islandLevel, double numberPeople) {
-			this.updateExpressionVariable("[level]", level);
-			this.updateExpressionVariable("[islandLevel]", islandLevel);
-			this.updateExpressionVariable("[numberPlayer]", numberPeople);
-			return this.getIslandMinLevel().eval();
+			return this.getIslandMinLevel().eval(new double[] { level, islandLevel, numberPeople });
 		}
 
 		public double calculateVaultCost(double level, double islandLevel, double numberPeople) {
-			this.updateExpressionVariable("[level]", level);
-			this.updateExpressionVariable("[islandLevel]", islandLevel);
-			this.updateExpressionVariable("[numberPlayer]", numberPeople);
-			return this.getVaultCost().eval();
+			return this.getVaultCost().eval(new double[] { level, islandLevel, numberPeople });
 		}
 
 		// ----------------------------------------------------------------------
@@ -732,38 +961,39 @@ public class Settings {
 
 		private final String id;
 
-		private int maxLevel = -1;
+		private final int maxLevel;
 
-		private String tierName;
+		private final String tierName;
 
-		private Integer permissionLevel = 0;
+		private final Integer permissionLevel;
 
-		private Expression upgrade;
+		private final Expression upgrade;
 
-		private Expression islandMinLevel;
+		private final Expression islandMinLevel;
 
-		private Expression vaultCost;
-
-		private Map<String, Double> expressionVariables;
+		private final Expression vaultCost;
 	}
 
-	public class CommandUpgradeTier extends UpgradeTier {
-
-		public CommandUpgradeTier(String id) {
-			super(id);
-			this.commandList = new ArrayList<String>();
-		}
+	public static class CommandUpgradeTier extends UpgradeTier {
 
-		public void setConsole(Boolean console) {
+		/**
+		 * @param console     If the commands are run by the console
+		 * @param commandList Commands run on upgrade
+		 * @see UpgradeTier#UpgradeTier
+		 */
+		public CommandUpgradeTier(String id, String tierName, int maxLevel, int permissionLevel,
+				Expression islandMinLevel, Expression vaultCost, boolean console, List<String> commandList) {
+			super(id, tierName, maxLevel, permissionLevel, parse("0"), islandMinLevel, vaultCost);
 			this.console = console;
+			this.commandList = Collections.unmodifiableList(new ArrayList<>(commandList));
 		}
 
 		public Boolean getConsole() {
 			return this.console;
 		}
 
-		public void setCommandList(List<String> commandsList) {
-			this.commandList = commandsList;
+		List<String> getCommandList() {
+			return this.commandList;
 		}
 
 		public List<String> getCommandList(String playerName, Island island, int level) {
@@ -778,141 +1008,27 @@ public class Settings {
 			return formatedList;
 		}
 
-		private List<String> commandList;
+		private final List<String> commandList;
 
-		private Boolean console;
+		private final boolean console;
 
 	}
 
 	// -------------------------------------------------------------------------
-	// Section: Arithmetic expressions Parser
-	// Thanks to Boann on StackOverflow
-	// Link:
-	// https://stackoverflow.com/questions/3422673/how-to-evaluate-a-math-expression-given-in-string-form
+	// Section: Arithmetic expressions
 	// -------------------------------------------------------------------------
 
 	@FunctionalInterface
 	interface Expression {
-		double eval();
-	}
-
-	public static Expression parse(final String str, Map<String, Double> variables) {
-		return new Object() {
-			int pos = -1, ch;
-
-			void nextChar() {
-				ch = (++pos < str.length()) ? str.charAt(pos) : -1;
-			}
-
-			boolean eat(int charToEat) {
-				while (ch == ' ')
-					nextChar();
-				if (ch == charToEat) {
-					nextChar();
-					return true;
-				}
-				return false;
-			}
-
-			Expression parse() {
-				nextChar();
-				Expression x = parseExpression();
-				if (pos < str.length())
-					throw new RuntimeException("Unexpected: " + (char) ch);
-				return x;
-			}
-
-			// Grammar:
-			// expression = term | expression `+` term | expression `-` term
-			// term = factor | term `*` factor | term `/` factor
-			// factor = `+` factor | `-` factor | `(` expression `)`
-			// | number | functionName factor | factor `^` factor
-
-			Expression parseExpression() {
-				Expression x = parseTerm();
-				for (;;) {
-					if (eat('+')) {
-						Expression a = x, b = parseTerm();
-						x = (() -> a.eval() + b.eval());
-					} else if (eat('-')) {
-						Expression a = x, b = parseTerm();
-						x = (() -> a.eval() - b.eval());
-					} else
-						return x;
-				}
-			}
-
-			Expression parseTerm() {
-				Expression x = parseFactor();
-				for (;;) {
-					if (eat('*')) {
-						Expression a = x, b = parseFactor();
-						x = (() -> a.eval() * b.eval());
-					} else if (eat('/')) {
-						Expression a = x, b = parseFactor();
-						x = (() -> a.eval() / b.eval());
-					} else
-						return x;
-				}
-			}
-
-			Expression parseFactor() {
-				if (eat('+'))
-					return parseFactor(); // unary plus
-				if (eat('-')) {
-					Expression x = (() -> -parseFactor().eval());
-					return x; // unary minus
-				}
-
-				Expression x;
-				int startPos = this.pos;
-				if (eat('(')) { // parentheses
-					x = parseExpression();
-					eat(')');
-				} else if ((ch >= '0' && ch <= '9') || ch == '.') { // numbers
-					while ((ch >= '0' && ch <= '9') || ch == '.')
-						nextChar();
-					final Integer innerPos = new Integer(this.pos);
-					x = (() -> Double.parseDouble(str.substring(startPos, innerPos)));
-				} else if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '[' || ch == ']') { // functions
-					while ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '[' || ch == ']')
-						nextChar();
-					String func = str.substring(startPos, this.pos);
-					if (funct.contains(func)) {
-						Expression a = parseFactor();
-						if (func.equals("sqrt"))
-							x = (() -> Math.sqrt(a.eval()));
-						else if (func.equals("sin"))
-							x = (() -> Math.sin(Math.toRadians(a.eval())));
-						else if (func.equals("cos"))
-							x = (() -> Math.cos(Math.toRadians(a.eval())));
-						else if (func.equals("tan"))
-							x = (() -> Math.tan(Math.toRadians(a.eval())));
-						else
-							throw new RuntimeException("Unknown function: " + func);
-					} else {
-						x = (() -> variables.get(func));
-					}
-				} else {
-					throw new RuntimeException("Unexpected: " + (char) ch);
-				}
-
-				if (eat('^')) {
-					Expression a = x, b = parseFactor();
-					x = (() -> Math.pow(a.eval(), b.eval())); // exponentiation
-				}
-
-				return x;
-			}
-		}.parse();
+		/**
+		 * @param arguments Values of the variables, in the order of
+		 *                  {@link FormulaProgram#VARIABLES}
+		 */
+		double eval(double[] arguments);
 	}
 
-	private static final List<String> funct = new ArrayList<>();
-	static {
-		funct.add("sqrt");
-		funct.add("sin");
-		funct.add("cos");
-		funct.add("tan");
+	public static Expression parse(final String str) {
+		return FormulaProgram.compile(str);
 	}
 
 }
\ No newline at end of file
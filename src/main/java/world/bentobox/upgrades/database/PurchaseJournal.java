@@ -0,0 +1,447 @@
+package world.bentobox.upgrades.database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import world.bentobox.bentobox.api.addons.Addon;
+import world.bentobox.upgrades.metrics.MetricsRegistry;
+
+/**
+ * Write-ahead journal of the upgrade level changes.
+ *
+ * The upgrades data is only saved when an island is uncached, so every
+ * level change is first appended here. Appends are written and synced to
+ * the disk by a single thread in batches: the changes appended while a
+ * sync is running are written together by the next one (group commit).
+ *
+ * Once the data of an island is saved, a checkpoint with the last sequence
+ * included in the save is appended. On start, the changes after the last
+ * checkpoint of their island are the ones that may not be in the database,
+ * they are given by {@link #getRecovered()} to be saved again. The file is
+ * rewritten with only these changes once it is too big.
+ *
+ * A change is journaled as a delta, with the money spent on it and the
+ * version of the data it was made on, not as a level: the database can be shared with other servers, so it
+ * is only replayed on the same version and never overwrites a level saved
+ * since.
+ *
+ * Each line ends with its CRC32, so a line partially written by a crash is
+ * ignored.
+ */
+public class PurchaseJournal {
+
+	/**
+	 * @param addon   Addon used to log
+	 * @param metrics Registry of the sync latency
+	 * @param file    Journal file, created if needed
+	 */
+	public PurchaseJournal(Addon addon, MetricsRegistry metrics, Path file) throws IOException {
+		this.addon = addon;
+		this.metrics = metrics;
+		this.file = file;
+		this.queue = new ConcurrentLinkedQueue<>();
+		this.pending = new HashMap<>();
+
+		if (file.getParent() != null)
+			Files.createDirectories(file.getParent());
+		this.recovered = this.read();
+
+		this.channel = this.openChannel();
+		this.thread = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "upgrades-journal");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Append a level change. It returns before the change is on the disk, use
+	 * {@link #sync()} to wait for it.
+	 *
+	 * @param islandId    Unique id of the island
+	 * @param upgradeName Name of the upgrade
+	 * @param delta       New level minus the previous one
+	 * @param money       Money spent on the change, negative when refunded
+	 * @param version     Version of the upgrades data the change was made on
+	 */
+	public void append(String islandId, String upgradeName, int delta, long money, long version) {
+		synchronized (this.queue) {
+			this.queue.add(new Entry(LEVEL, ++this.sequence, islandId, upgradeName, delta, money, version, null));
+		}
+		this.requestWrite();
+	}
+
+	/**
+	 * Record that the changes of the island up to sequence are saved in the
+	 * database
+	 *
+	 * @param islandId Unique id of the island
+	 * @param sequence Value of {@link #lastSequence()} read before the data to
+	 *                 save was copied
+	 */
+	public void checkpoint(String islandId, long sequence) {
+		synchronized (this.queue) {
+			this.queue.add(new Entry(CHECKPOINT, sequence, islandId, "", 0, 0, 0, null));
+		}
+		this.requestWrite();
+	}
+
+	/**
+	 * @return Future completed once the changes appended before are on the disk
+	 */
+	public CompletableFuture<Void> sync() {
+		CompletableFuture<Void> synced = new CompletableFuture<>();
+		synchronized (this.queue) {
+			this.queue.add(new Entry(SYNC, this.sequence, "", "", 0, 0, 0, synced));
+		}
+		if (!this.requestWrite())
+			synced.complete(null);
+		return synced;
+	}
+
+	/**
+	 * @return Sequence of the last change appended
+	 */
+	public long lastSequence() {
+		synchronized (this.queue) {
+			return this.sequence;
+		}
+	}
+
+	/**
+	 * @return Changes by island id made after the last checkpoint of their
+	 *         island when the journal was opened, in order
+	 */
+	public Map<String, List<Change>> getRecovered() {
+		return this.recovered;
+	}
+
+	/**
+	 * Write the appended changes, compact and close the journal
+	 *
+	 * @param timeout Maximum time to wait for the writes
+	 * @param unit    Unit of the timeout
+	 */
+	public void close(long timeout, TimeUnit unit) {
+		this.thread.execute(() -> {
+			this.writeBatch();
+			try {
+				this.compact();
+			} catch (IOException e) {
+				this.addon.logError("Couldn't compact the purchase journal: " + e.getMessage());
+			}
+			try {
+				this.channel.close();
+			} catch (IOException e) {
+				this.addon.logError("Couldn't close the purchase journal: " + e.getMessage());
+			}
+		});
+		this.thread.shutdown();
+		try {
+			if (!this.thread.awaitTermination(timeout, unit))
+				this.addon.logWarning("Purchase journal not closed after " + timeout + " " + unit.name().toLowerCase());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean requestWrite() {
+		try {
+			this.thread.execute(this::writeBatch);
+			return true;
+		} catch (RejectedExecutionException e) {
+			// Closed, the islands were saved by the disable
+			return false;
+		}
+	}
+
+	/**
+	 * Read the journal, keep the changes after the last checkpoint and cut a
+	 * partially written last line
+	 */
+	private Map<String, List<Change>> read() throws IOException {
+		if (!Files.exists(this.file))
+			return Collections.emptyMap();
+
+		byte[] bytes = Files.readAllBytes(this.file);
+		int end = 0;
+		int start = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] != '\n')
+				continue;
+			Entry entry = parse(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+			if (entry == null)
+				this.addon.logWarning("Ignoring a corrupted line of the purchase journal");
+			else {
+				this.apply(entry);
+				this.sequence = Math.max(this.sequence, entry.sequence);
+			}
+			start = i + 1;
+			end = start;
+		}
+		if (end < bytes.length) {
+			try (FileChannel truncate = FileChannel.open(this.file, StandardOpenOption.WRITE)) {
+				truncate.truncate(end);
+			}
+		}
+
+		Map<String, List<Change>> changes = new HashMap<>();
+		this.pending.forEach((islandId, entries) -> {
+			List<Change> islandChanges = new ArrayList<>();
+			entries.forEach(entry -> islandChanges.add(new Change(entry.upgradeName, entry.delta, entry.money, entry.version)));
+			changes.put(islandId, Collections.unmodifiableList(islandChanges));
+		});
+		return Collections.unmodifiableMap(changes);
+	}
+
+	private FileChannel openChannel() throws IOException {
+		return FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Write every queued entry, sync them if needed and complete the sync
+	 * requests. Runs on the journal thread, the next batch is queued meanwhile.
+	 */
+	private void writeBatch() {
+		List<Entry> batch = new ArrayList<>();
+		Entry polled;
+		while ((polled = this.queue.poll()) != null)
+			batch.add(polled);
+		if (batch.isEmpty())
+			return;
+
+		try {
+			StringBuilder lines = new StringBuilder();
+			boolean changed = false;
+			for (Entry entry : batch) {
+				if (entry.type.equals(SYNC))
+					continue;
+				lines.append(entry.toLine()).append('\n');
+				changed |= entry.type.equals(LEVEL);
+			}
+
+			if (lines.length() > 0) {
+				ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+				while (buffer.hasRemaining())
+					this.channel.write(buffer);
+			}
+			// Checkpoints alone don't need to be synced, a saved change isn't replayed on its newer version
+			if (changed) {
+				long start = this.metrics.start();
+				this.channel.force(false);
+				this.metrics.record(MetricsRegistry.JOURNAL_SYNC, start);
+			}
+
+			batch.forEach(this::apply);
+			if (this.channel.size() > COMPACT_SIZE)
+				this.compact();
+		} catch (IOException e) {
+			this.addon.logError("Couldn't write the purchase journal, the changes are only saved with the islands: "
+					+ e.getMessage());
+		} finally {
+			// The changes are applied in memory anyway, the purchase isn't failed
+			batch.stream().filter(entry -> entry.synced != null).forEach(entry -> entry.synced.complete(null));
+		}
+	}
+
+	/**
+	 * Rewrite the journal with only the changes after the checkpoints
+	 */
+	private void compact() throws IOException {
+		Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+		StringBuilder lines = new StringBuilder();
+		this.pending.values().forEach(entries -> entries.forEach(entry -> lines.append(entry.toLine()).append('\n')));
+
+		try (FileChannel compacted = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+			while (buffer.hasRemaining())
+				compacted.write(buffer);
+			compacted.force(false);
+		}
+		this.channel.close();
+		try {
+			Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			// Not compacted, the changes keep going to the current file
+			this.channel = this.openChannel();
+		}
+	}
+
+	// Only called by the constructor and the journal thread
+	private void apply(Entry entry) {
+		if (entry.type.equals(LEVEL)) {
+			this.pending.computeIfAbsent(entry.islandId, id -> new ArrayList<>()).add(entry);
+		} else if (entry.type.equals(CHECKPOINT)) {
+			List<Entry> entries = this.pending.get(entry.islandId);
+			if (entries == null)
+				return;
+			entries.removeIf(change -> change.sequence <= entry.sequence);
+			if (entries.isEmpty())
+				this.pending.remove(entry.islandId);
+		}
+	}
+
+	private static Entry parse(String line) {
+		int crcStart = line.lastIndexOf('\t');
+		if (crcStart < 0)
+			return null;
+		String payload = line.substring(0, crcStart);
+		if (!Long.toHexString(crc(payload)).equals(line.substring(crcStart + 1)))
+			return null;
+
+		String[] split = payload.split("\t", -1);
+		try {
+			if (split.length == 7 && split[0].equals(LEVEL))
+				return new Entry(LEVEL, Long.parseLong(split[1]), split[2], split[3], Integer.parseInt(split[4]),
+						Long.parseLong(split[5]), Long.parseLong(split[6]), null);
+			if (split.length == 3 && split[0].equals(CHECKPOINT))
+				return new Entry(CHECKPOINT, Long.parseLong(split[1]), split[2], "", 0, 0, 0, null);
+		} catch (NumberFormatException e) {
+			// Returns null below
+		}
+		return null;
+	}
+
+	private static long crc(String payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload.getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+
+	/**
+	 * Level change recovered from the journal
+	 */
+	public static class Change {
+
+		Change(String upgradeName, int delta, long money, long version) {
+			this.upgradeName = upgradeName;
+			this.delta = delta;
+			this.money = money;
+			this.version = version;
+		}
+
+		public String getUpgradeName() {
+			return this.upgradeName;
+		}
+
+		/**
+		 * @return New level minus the previous one
+		 */
+		public int getDelta() {
+			return this.delta;
+		}
+
+		/**
+		 * @return Money spent on the change, negative when refunded
+		 */
+		public long getMoney() {
+			return this.money;
+		}
+
+		/**
+		 * @return Version of the upgrades data the change was made on
+		 */
+		public long getVersion() {
+			return this.version;
+		}
+
+		private final String upgradeName;
+
+		private final int delta;
+
+		private final long money;
+
+		private final long version;
+
+	}
+
+	private static class Entry {
+
+		Entry(String type, long sequence, String islandId, String upgradeName, int delta, long money, long version,
+				CompletableFuture<Void> synced) {
+			this.type = type;
+			this.sequence = sequence;
+			this.islandId = islandId;
+			this.upgradeName = upgradeName;
+			this.delta = delta;
+			this.money = money;
+			this.version = version;
+			this.synced = synced;
+		}
+
+		String toLine() {
+			String payload = this.type.equals(LEVEL)
+					? this.type + '\t' + this.sequence + '\t' + this.islandId + '\t' + this.upgradeName + '\t' + this.delta
+							+ '\t' + this.money + '\t' + this.version
+					: this.type + '\t' + this.sequence + '\t' + this.islandId;
+			return payload + '\t' + Long.toHexString(crc(payload));
+		}
+
+		private final String type;
+
+		private final long sequence;
+
+		private final String islandId;
+
+		private final String upgradeName;
+
+		private final int delta;
+
+		private final long money;
+
+		private final long version;
+
+		private final CompletableFuture<Void> synced;
+
+	}
+
+	private static final String LEVEL = "L";
+
+	private static final String CHECKPOINT = "C";
+
+	private static final String SYNC = "S";
+
+	private static final long COMPACT_SIZE = 1024 * 1024;
+
+	private final Addon addon;
+
+	private final MetricsRegistry metrics;
+
+	private final Path file;
+
+	// Also the lock of the sequence, so entries are queued in sequence order
+	private final Queue<Entry> queue;
+
+	// Changes not checkpointed yet by island, in order, only used by the journal thread
+	private final Map<String, List<Entry>> pending;
+
+	private final Map<String, List<Change>> recovered;
+
+	private final ExecutorService thread;
+
+	private FileChannel channel;
+
+	private long sequence;
+
+}
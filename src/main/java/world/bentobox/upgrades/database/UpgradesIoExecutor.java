@@ -0,0 +1,199 @@
+package world.bentobox.upgrades.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import world.bentobox.bentobox.api.addons.Addon;
+
+/**
+ * Executor of the upgrades data loads and saves.
+ *
+ * Tasks run on virtual threads when the JDK supports them (21+), on a small
+ * pool of platform threads otherwise. At most maxConcurrency tasks access the
+ * database at the same time, and the tasks of an island run one after the
+ * other in submission order, so a load always sees the previous saves.
+ *
+ * A load that a server thread waits for is run by {@link #call} on that
+ * thread: it still waits for the previous tasks of its island, but not for a
+ * permit held by the tasks of other islands.
+ *
+ * Bulk reads for reports and leaderboards are submitted as background tasks:
+ * they run one at a time on their own thread, so they hold at most one
+ * permit and the loads of the players are never queued behind them.
+ */
+public class UpgradesIoExecutor {
+
+	/**
+	 * @param addon          Addon used to log
+	 * @param maxConcurrency Maximum number of tasks accessing the database at the same time
+	 * @param virtualThreads Use virtual threads if the JDK supports them
+	 */
+	public UpgradesIoExecutor(Addon addon, int maxConcurrency, boolean virtualThreads) {
+		this.addon = addon;
+		this.permits = new Semaphore(Math.max(1, maxConcurrency));
+		this.lanes = new ConcurrentHashMap<>();
+		this.background = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "upgrades-io-background");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		ExecutorService virtual = virtualThreads ? newVirtualThreadExecutor() : null;
+		this.virtual = virtual != null;
+		if (virtual != null) {
+			this.executor = virtual;
+		} else {
+			AtomicInteger threadId = new AtomicInteger();
+			this.executor = Executors.newFixedThreadPool(Math.max(1, maxConcurrency), task -> {
+				Thread thread = new Thread(task, "upgrades-io-" + threadId.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Run task after the previous tasks of the island
+	 *
+	 * @param islandId Island of the data loaded or saved
+	 * @param task     Database access
+	 * @return Future of the task result
+	 */
+	public <T> CompletableFuture<T> submit(String islandId, Supplier<T> task) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		this.lanes.compute(islandId, (id, previous) -> {
+			CompletableFuture<?> after = previous == null ? CompletableFuture.completedFuture(null) : previous;
+			// The lane continues whatever the result of the previous task
+			after.whenComplete((ignored, e) -> this.run(this.executor, task, result));
+			return result;
+		});
+		// Forget the lane once its last task is done
+		result.whenComplete((ignored, e) -> this.lanes.remove(islandId, result));
+		return result;
+	}
+
+	/**
+	 * Run task on the calling thread after the previous tasks of the island,
+	 * without waiting for a permit. The next tasks of the island wait for it.
+	 *
+	 * @param islandId Island of the data loaded
+	 * @param task     Database read
+	 * @return The task result
+	 */
+	public <T> T call(String islandId, Supplier<T> task) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		List<CompletableFuture<?>> previous = new ArrayList<>(1);
+		this.lanes.compute(islandId, (id, tail) -> {
+			if (tail != null)
+				previous.add(tail);
+			return result;
+		});
+		try {
+			// The lane continues whatever the result of the previous task
+			previous.forEach(tail -> tail.handle((ignored, e) -> null).join());
+			result.complete(task.get());
+		} catch (Throwable e) {
+			result.completeExceptionally(e);
+		} finally {
+			this.lanes.remove(islandId, result);
+		}
+		return result.join();
+	}
+
+	/**
+	 * Run a read of the island data in the background, after the previous
+	 * tasks of the island. The next tasks of the island don't wait for it.
+	 *
+	 * @param islandId Island of the data read
+	 * @param task     Database read
+	 * @return Future of the task result
+	 */
+	public <T> CompletableFuture<T> submitBackground(String islandId, Supplier<T> task) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		CompletableFuture<?> previous = this.lanes.get(islandId);
+		CompletableFuture<?> after = previous == null ? CompletableFuture.completedFuture(null) : previous;
+		after.whenComplete((ignored, e) -> this.run(this.background, task, result));
+		return result;
+	}
+
+	/**
+	 * @return If the tasks run on virtual threads
+	 */
+	public boolean isVirtual() {
+		return this.virtual;
+	}
+
+	/**
+	 * Wait for the submitted tasks and stop the executor
+	 *
+	 * @param timeout Maximum time to wait
+	 */
+	public void close(long timeout, TimeUnit unit) {
+		CompletableFuture<?>[] pending = this.lanes.values().toArray(CompletableFuture[]::new);
+		try {
+			CompletableFuture.allOf(pending).get(timeout, unit);
+		} catch (TimeoutException e) {
+			this.addon.logError("Upgrades data saves didn't end in time, " + pending.length + " islands may not be saved");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			// Failures are reported by each task
+		}
+		this.executor.shutdown();
+		this.background.shutdownNow();
+	}
+
+	private <T> void run(ExecutorService executor, Supplier<T> task, CompletableFuture<T> result) {
+		try {
+			executor.execute(() -> {
+				try {
+					this.permits.acquire();
+					try {
+						result.complete(task.get());
+					} finally {
+						this.permits.release();
+					}
+				} catch (Throwable e) {
+					if (e instanceof InterruptedException)
+						Thread.currentThread().interrupt();
+					result.completeExceptionally(e);
+				}
+			});
+		} catch (RuntimeException e) {
+			// Rejected after close
+			result.completeExceptionally(e);
+		}
+	}
+
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	private final Addon addon;
+
+	private final Semaphore permits;
+
+	private final Map<String, CompletableFuture<?>> lanes;
+
+	private final ExecutorService executor;
+
+	// Bulk reads, one at a time
+	private final ExecutorService background;
+
+	private final boolean virtual;
+
+}
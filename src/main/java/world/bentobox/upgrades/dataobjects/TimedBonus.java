@@ -0,0 +1,87 @@
+package world.bentobox.upgrades.dataobjects;
+
+import java.util.UUID;
+
+import com.google.gson.annotations.Expose;
+
+/**
+ * Bonus given to an island until an expiry time, on top of the upgrade
+ * levels: a range bonus or a Limits offset.
+ */
+public class TimedBonus {
+
+	public enum Type {
+		RANGE,
+		BLOCK_LIMITS,
+		ENTITY_LIMITS,
+		ENTITY_GROUP_LIMITS
+	}
+
+	public TimedBonus() {}
+
+	/**
+	 * @param islandId  Unique id of the island
+	 * @param type      What the bonus increases
+	 * @param key       Material, entity type or entity group of a limits bonus,
+	 *                  empty for range
+	 * @param amount    Range or limit added
+	 * @param expiresAt Expiry time in milliseconds since the epoch
+	 */
+	public TimedBonus(String islandId, Type type, String key, int amount, long expiresAt) {
+		this.id = UUID.randomUUID().toString();
+		this.islandId = islandId;
+		this.type = type;
+		this.key = key;
+		this.amount = amount;
+		this.expiresAt = expiresAt;
+	}
+
+	/**
+	 * @return Unique id of the bonus
+	 */
+	public String getId() {
+		return this.id;
+	}
+
+	public String getIslandId() {
+		return this.islandId;
+	}
+
+	public Type getType() {
+		return this.type;
+	}
+
+	public String getKey() {
+		return this.key;
+	}
+
+	public int getAmount() {
+		return this.amount;
+	}
+
+	/**
+	 * @return Expiry time in milliseconds since the epoch
+	 */
+	public long getExpiresAt() {
+		return this.expiresAt;
+	}
+
+	@Expose
+	private String id;
+
+	@Expose
+	private String islandId;
+
+	@Expose
+	private Type type;
+
+	@Expose
+	private String key;
+
+	@Expose
+	private int amount;
+
+	@Expose
+	private long expiresAt;
+
+}
@@ -0,0 +1,80 @@
+package world.bentobox.upgrades.dataobjects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.annotations.Expose;
+
+import world.bentobox.bentobox.database.objects.DataObject;
+import world.bentobox.bentobox.database.objects.Table;
+
+/**
+ * Timed bonuses of an island, kept apart from the upgrade levels.
+ */
+@Table(name = "TimedUpgradesData")
+public class TimedUpgradesData implements DataObject {
+
+	@Expose
+	private String uniqueId;
+
+	@Expose
+	private List<TimedBonus> bonuses;
+
+	public TimedUpgradesData() {}
+
+	public TimedUpgradesData(String uniqueId) {
+		this.uniqueId = uniqueId;
+		this.bonuses = new ArrayList<>();
+	}
+
+	@Override
+	public String getUniqueId() {
+		return this.uniqueId;
+	}
+
+	@Override
+	public void setUniqueId(String uniqueId) {
+		this.uniqueId = uniqueId;
+	}
+
+	/**
+	 * @return Copy of the active bonuses
+	 */
+	public synchronized List<TimedBonus> getBonuses() {
+		return new ArrayList<>(this.bonuses());
+	}
+
+	public synchronized void addBonus(TimedBonus bonus) {
+		this.bonuses().add(bonus);
+	}
+
+	/**
+	 * @param bonusId Unique id of the bonus
+	 * @return If the bonus was active
+	 */
+	public synchronized boolean removeBonus(String bonusId) {
+		return this.bonuses().removeIf(bonus -> bonus.getId().equals(bonusId));
+	}
+
+	/**
+	 * @return Copy of the data with the active bonuses, to save while this
+	 *         one keeps changing
+	 */
+	public synchronized TimedUpgradesData copy() {
+		TimedUpgradesData copy = new TimedUpgradesData(this.uniqueId);
+		copy.bonuses.addAll(this.bonuses());
+		return copy;
+	}
+
+	public synchronized boolean isEmpty() {
+		return this.bonuses().isEmpty();
+	}
+
+	// Null when stored without bonus
+	private List<TimedBonus> bonuses() {
+		if (this.bonuses == null)
+			this.bonuses = new ArrayList<>();
+		return this.bonuses;
+	}
+
+}
@@ -1,50 +1,228 @@
 package world.bentobox.upgrades.dataobjects;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import com.google.gson.annotations.Expose;
 
 import world.bentobox.bentobox.database.objects.DataObject;
 import world.bentobox.bentobox.database.objects.Table;
 
+/**
+ * Upgrade levels of an island.
+ *
+ * The version is increased by each save. The level changes and the money
+ * spent since the last save are kept as deltas: when the stored version
+ * changed meanwhile (another server or task saved the island), the deltas are
+ * applied again on the stored values instead of overwriting them.
+ *
+ * Each save also stores its id with the ids of the last saves it is based
+ * on. The database has no conditional save, so two servers can write the
+ * same version: reading the data back tells whether a save was kept, or
+ * overwritten by a save that doesn't include it.
+ */
 @Table(name = "UpgradesData")
 public class UpgradesData implements DataObject {
 
 	@Expose
 	private String uniqueId;
-	
+
 	@Expose
 	private Map<String, Integer> upgradesLevels;
-	
+
+	@Expose
+	private long version;
+
+	@Expose
+	private long moneySpent;
+
+	// Ids of the last saves, the newest last
+	@Expose
+	private List<String> saveIds;
+
+	private transient Map<String, Integer> pendingDeltas = new HashMap<>();
+
+	private transient long pendingMoney;
+
+	private static final int SAVE_HISTORY = 8;
+
 	public UpgradesData() {}
-	
+
 	public UpgradesData(String uniqueId, Map<String, Integer> upgradesLevel) {
 		this.uniqueId = uniqueId;
 		this.upgradesLevels = upgradesLevel;
 	}
-	
+
 	public UpgradesData(String uniqueId) {
 		this(uniqueId, new HashMap<>());
 	}
-	
+
 	@Override
 	public String getUniqueId() {
 		return uniqueId;
 	}
-	
+
 	@Override
 	public void setUniqueId(String uniqueId) {
 		this.uniqueId = uniqueId;
 	}
-	
-	public int getUpgradeLevel(String name) {
+
+	public synchronized int getUpgradeLevel(String name) {
 		this.upgradesLevels.putIfAbsent(name, 1);
 		return this.upgradesLevels.get(name);
 	}
-	
-	public void setUpgradeLevel(String name, int value) {
+
+	public synchronized void setUpgradeLevel(String name, int value) {
+		this.changeUpgradeLevel(name, value, 0);
+	}
+
+	/**
+	 * Set a level like {@link #setUpgradeLevel} and add the money spent on
+	 * it, and give the version they are changed on without a save in between
+	 *
+	 * @param name  Name of the upgrade
+	 * @param value New level
+	 * @param money Money spent on the change, negative when refunded
+	 * @return Version of the stored data the change is based on
+	 */
+	public synchronized long changeUpgradeLevel(String name, int value, long money) {
+		int delta = value - this.upgradesLevels.getOrDefault(name, 1);
 		this.upgradesLevels.put(name, value);
+		this.deltas().merge(name, delta, Integer::sum);
+		this.moneySpent += money;
+		this.pendingMoney += money;
+		return this.version;
+	}
+
+	/**
+	 * @return Copy of the levels by upgrade name, upgrades never bought are missing
+	 */
+	public synchronized Map<String, Integer> getUpgradesLevels() {
+		return new HashMap<>(this.upgradesLevels);
+	}
+
+	/**
+	 * @return Sum of the levels bought, the first level is free
+	 */
+	public synchronized int getTotalUpgrades() {
+		int total = 0;
+		for (int level : this.upgradesLevels.values())
+			total += Math.max(0, level - 1);
+		return total;
 	}
-	
+
+	/**
+	 * @return Money spent on the upgrades of the island
+	 */
+	public synchronized long getMoneySpent() {
+		return this.moneySpent;
+	}
+
+	/**
+	 * Set a level already saved by someone else, it won't be applied again
+	 * on conflict
+	 *
+	 * @param name  Name of the upgrade
+	 * @param value Stored level
+	 */
+	public synchronized void setStoredUpgradeLevel(String name, int value) {
+		this.upgradesLevels.put(name, value + this.deltas().getOrDefault(name, 0));
+	}
+
+	/**
+	 * @return Version of the stored data this one is based on
+	 */
+	public synchronized long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Copy to save, based on the stored data. If the stored version isn't the
+	 * one this data is based on, the deltas are applied again on the stored
+	 * levels first.
+	 *
+	 * @param stored Data currently stored, null if none
+	 * @return Copy with the next version, to give to {@link #saved} once stored
+	 */
+	public synchronized UpgradesData prepareSave(UpgradesData stored) {
+		if (stored != null && stored.version != this.version) {
+			Map<String, Integer> rebased = new HashMap<>(this.upgradesLevels);
+			stored.upgradesLevels.forEach(rebased::put);
+			this.deltas().forEach((name, delta) -> rebased.put(name, stored.upgradesLevels.getOrDefault(name, 1) + delta));
+			this.upgradesLevels = rebased;
+			this.moneySpent = stored.moneySpent + this.pendingMoney;
+			this.version = stored.version;
+		}
+
+		List<String> saveIds = new ArrayList<>(stored != null ? stored.saveIds() : this.saveIds());
+		saveIds.add(UUID.randomUUID().toString());
+		if (saveIds.size() > SAVE_HISTORY)
+			saveIds.subList(0, saveIds.size() - SAVE_HISTORY).clear();
+
+		UpgradesData copy = new UpgradesData(this.uniqueId, new HashMap<>(this.upgradesLevels));
+		copy.version = this.version + 1;
+		copy.moneySpent = this.moneySpent;
+		copy.saveIds = saveIds;
+		copy.pendingDeltas = new HashMap<>(this.deltas());
+		copy.pendingMoney = this.pendingMoney;
+		return copy;
+	}
+
+	/**
+	 * @param stored Copy returned by {@link #prepareSave} that was stored
+	 */
+	public synchronized void saved(UpgradesData stored) {
+		this.version = stored.version;
+		this.saveIds = new ArrayList<>(stored.saveIds());
+		this.pendingMoney -= stored.pendingMoney;
+		// Changes made during the save are kept
+		stored.deltas().forEach((name, delta) -> this.deltas().computeIfPresent(name, (key, pending) -> {
+			int left = pending - delta;
+			return left == 0 ? null : left;
+		}));
+	}
+
+	/**
+	 * @param stored Data read back after this copy was saved, null if none
+	 * @return If this copy, returned by {@link #prepareSave}, is the stored
+	 *         data or one of the last saves it is based on
+	 */
+	public synchronized boolean isIncludedIn(UpgradesData stored) {
+		List<String> saveIds = this.saveIds();
+		return stored != null && !saveIds.isEmpty() && stored.saveIds().contains(saveIds.get(saveIds.size() - 1));
+	}
+
+	/**
+	 * @return Names of the upgrades whose level changed since the last save
+	 */
+	public synchronized Set<String> getPendingUpgrades() {
+		return new HashSet<>(this.deltas().keySet());
+	}
+
+	/**
+	 * @return If some levels changed since the last save
+	 */
+	public synchronized boolean hasPendingChanges() {
+		return !this.deltas().isEmpty() || this.pendingMoney != 0;
+	}
+
+	// Null when stored before the save ids
+	private List<String> saveIds() {
+		if (this.saveIds == null)
+			this.saveIds = new ArrayList<>();
+		return this.saveIds;
+	}
+
+	// Not set when created by the database
+	private Map<String, Integer> deltas() {
+		if (this.pendingDeltas == null)
+			this.pendingDeltas = new HashMap<>();
+		return this.pendingDeltas;
+	}
+
 }
@@ -0,0 +1,108 @@
+package world.bentobox.upgrades.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Ranking of islands by score, kept sorted as the scores change.
+ *
+ * The islands are kept in a tree sorted by score, so changing a score costs
+ * O(log n) and reading the top K islands costs O(K), without looking at the
+ * other islands. Islands with a score of 0 are not ranked.
+ */
+public class Leaderboard {
+
+	public Leaderboard() {
+		this.entries = new HashMap<>();
+		this.ranking = new TreeSet<>(ORDER);
+	}
+
+	/**
+	 * @param islandId Unique id of the island
+	 * @param score    New score of the island
+	 */
+	public synchronized void put(String islandId, long score) {
+		Entry previous = this.entries.remove(islandId);
+		if (previous != null)
+			this.ranking.remove(previous);
+		if (score <= 0)
+			return;
+
+		Entry entry = new Entry(islandId, score);
+		this.entries.put(islandId, entry);
+		this.ranking.add(entry);
+	}
+
+	/**
+	 * Set the score of an island not ranked yet. Used by the startup scan, so
+	 * it doesn't overwrite the scores changed since the scan started.
+	 *
+	 * @param islandId Unique id of the island
+	 * @param score    Score of the island
+	 */
+	public synchronized void putIfAbsent(String islandId, long score) {
+		if (!this.entries.containsKey(islandId))
+			this.put(islandId, score);
+	}
+
+	/**
+	 * @param islandId Unique id of the island to unrank
+	 */
+	public synchronized void remove(String islandId) {
+		this.put(islandId, 0);
+	}
+
+	/**
+	 * @param count Maximum number of islands
+	 * @return Best islands, the best first
+	 */
+	public synchronized List<Entry> getTop(int count) {
+		List<Entry> top = new ArrayList<>(Math.min(count, this.ranking.size()));
+		Iterator<Entry> iterator = this.ranking.iterator();
+		while (top.size() < count && iterator.hasNext())
+			top.add(iterator.next());
+		return top;
+	}
+
+	/**
+	 * @return Number of ranked islands
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public static class Entry {
+
+		Entry(String islandId, long score) {
+			this.islandId = islandId;
+			this.score = score;
+		}
+
+		public String getIslandId() {
+			return this.islandId;
+		}
+
+		public long getScore() {
+			return this.score;
+		}
+
+		private final String islandId;
+
+		private final long score;
+
+	}
+
+	// Best score first, ties by island id so entries are never equal
+	private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::getScore).reversed()
+			.thenComparing(Entry::getIslandId);
+
+	private final Map<String, Entry> entries;
+
+	private final TreeSet<Entry> ranking;
+
+}
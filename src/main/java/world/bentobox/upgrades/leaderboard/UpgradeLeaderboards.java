@@ -0,0 +1,112 @@
+package world.bentobox.upgrades.leaderboard;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.dataobjects.UpgradesData;
+
+/**
+ * Leaderboards of the islands by gamemode, on the upgrade levels bought and on
+ * the money spent.
+ *
+ * They are filled once by a background scan of the upgrades data on enable,
+ * then updated on each purchase, so a query never reads the database.
+ */
+public class UpgradeLeaderboards {
+
+	public enum Type {
+		LEVELS,
+		MONEY
+	}
+
+	public UpgradeLeaderboards(UpgradesAddon addon) {
+		this.addon = addon;
+		this.levels = new ConcurrentHashMap<>();
+		this.money = new ConcurrentHashMap<>();
+		this.removed = ConcurrentHashMap.newKeySet();
+	}
+
+	/**
+	 * Rank every stored island, in the background lane of the I/O executor.
+	 * The islands updated before the scan ends keep their newer score, and
+	 * the islands deleted meanwhile are not ranked.
+	 */
+	public void seed() {
+		long start = System.nanoTime();
+		this.seeding = true;
+		this.addon.getIoExecutor().submitBackground(UpgradeLeaderboards.class.getSimpleName(),
+				() -> this.addon.getDatabase().loadObjects())
+		.whenComplete((stored, e) -> {
+			if (e != null) {
+				this.addon.logError("Couldn't fill the upgrade leaderboards: " + e.getMessage());
+				this.seeding = false;
+				this.removed.clear();
+				return;
+			}
+			stored.forEach(data -> this.addon.getIslands().getIslandById(data.getUniqueId()).ifPresent(island -> {
+				String islandId = data.getUniqueId();
+				if (this.removed.contains(islandId))
+					return;
+				this.board(this.levels, island).putIfAbsent(islandId, data.getTotalUpgrades());
+				this.board(this.money, island).putIfAbsent(islandId, data.getMoneySpent());
+				// Deleted while it was ranked
+				if (this.removed.contains(islandId))
+					this.remove(islandId);
+			}));
+			this.seeding = false;
+			this.removed.clear();
+			this.addon.log("Ranked " + stored.size() + " islands in " + (System.nanoTime() - start) / 1000000 + " ms");
+		});
+	}
+
+	/**
+	 * @param island Island whose upgrades changed
+	 * @param data   Upgrades data of the island
+	 */
+	public void update(Island island, UpgradesData data) {
+		this.board(this.levels, island).put(island.getUniqueId(), data.getTotalUpgrades());
+		this.board(this.money, island).put(island.getUniqueId(), data.getMoneySpent());
+	}
+
+	/**
+	 * @param islandId Unique id of a deleted island
+	 */
+	public void remove(String islandId) {
+		if (this.seeding)
+			this.removed.add(islandId);
+		this.levels.values().forEach(board -> board.remove(islandId));
+		this.money.values().forEach(board -> board.remove(islandId));
+	}
+
+	/**
+	 * @param gameMode Name of the gamemode
+	 * @param type     What the islands are ranked on
+	 * @param count    Maximum number of islands
+	 * @return Best islands of the gamemode, the best first
+	 */
+	public List<Leaderboard.Entry> getTop(String gameMode, Type type, int count) {
+		return Optional.ofNullable((type == Type.MONEY ? this.money : this.levels).get(gameMode))
+				.map(board -> board.getTop(count)).orElse(List.of());
+	}
+
+	private Leaderboard board(Map<String, Leaderboard> boards, Island island) {
+		return boards.computeIfAbsent(island.getGameMode(), gameMode -> new Leaderboard());
+	}
+
+	private final UpgradesAddon addon;
+
+	private final Map<String, Leaderboard> levels;
+
+	private final Map<String, Leaderboard> money;
+
+	// Islands deleted while the seed scan runs
+	private final Set<String> removed;
+
+	private volatile boolean seeding;
+
+}
@@ -0,0 +1,42 @@
+package world.bentobox.upgrades.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+import world.bentobox.bentobox.api.events.island.IslandEnterEvent;
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.upgrades.UpgradesAddon;
+
+/**
+ * Load the upgrades data of the islands a player may open the panel of or
+ * buy on, so it is cached before the server threads need it
+ */
+public class DataPreloadListener implements Listener {
+
+	public DataPreloadListener(UpgradesAddon addon) {
+		this.addon = addon;
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerJoinEvent(PlayerJoinEvent e) {
+		this.addon.getPlugin().getAddonsManager().getGameModeAddons().stream()
+		.filter(gameMode -> this.addon.getUpgradesManager().canOperateInWorld(gameMode.getOverWorld()))
+		.forEach(gameMode -> this.preload(this.addon.getIslands().getIsland(gameMode.getOverWorld(),
+				e.getPlayer().getUniqueId())));
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onIslandEnterEvent(IslandEnterEvent e) {
+		this.preload(e.getIsland());
+	}
+
+	private void preload(Island island) {
+		if (island != null)
+			this.addon.preloadUpgradesLevels(island.getUniqueId());
+	}
+
+	private UpgradesAddon addon;
+
+}
@@ -25,6 +25,7 @@ public class IslandChangeListener implements Listener {
     public void onIslandDeleteEvent(IslandDeleteEvent e) {
         Island island = e.getIsland();
         this.addon.uncacheIsland(island.getUniqueId(), false);
+        this.addon.getLeaderboards().remove(island.getUniqueId());
         this.addon.getDatabase().deleteID(island.getUniqueId());
     }
 
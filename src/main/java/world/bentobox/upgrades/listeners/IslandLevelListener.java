@@ -0,0 +1,28 @@
+package world.bentobox.upgrades.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+import world.bentobox.level.events.IslandLevelCalculatedEvent;
+import world.bentobox.upgrades.UpgradesAddon;
+
+/**
+ * Invalidate the cached placeholders of an island when its level is
+ * calculated. Only registered when the Level addon is present.
+ */
+public class IslandLevelListener implements Listener {
+
+	public IslandLevelListener(UpgradesAddon addon) {
+		this.addon = addon;
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onIslandLevelCalculatedEvent(IslandLevelCalculatedEvent e) {
+		if (e.getIsland() != null)
+			this.addon.getPlaceholders().invalidate(e.getIsland().getUniqueId());
+	}
+
+	private UpgradesAddon addon;
+
+}
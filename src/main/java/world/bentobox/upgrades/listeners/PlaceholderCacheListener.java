@@ -0,0 +1,51 @@
+package world.bentobox.upgrades.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+import world.bentobox.bentobox.api.events.IslandBaseEvent;
+import world.bentobox.bentobox.api.events.team.TeamJoinedEvent;
+import world.bentobox.bentobox.api.events.team.TeamKickEvent;
+import world.bentobox.bentobox.api.events.team.TeamLeaveEvent;
+import world.bentobox.bentobox.api.events.team.TeamSetownerEvent;
+import world.bentobox.upgrades.UpgradesAddon;
+
+/**
+ * Invalidate the cached placeholders of an island when its members change,
+ * as the costs depend on the number of members and the level on the owner
+ */
+public class PlaceholderCacheListener implements Listener {
+
+	public PlaceholderCacheListener(UpgradesAddon addon) {
+		this.addon = addon;
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onTeamJoinedEvent(TeamJoinedEvent e) {
+		this.invalidate(e);
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onTeamLeaveEvent(TeamLeaveEvent e) {
+		this.invalidate(e);
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onTeamKickEvent(TeamKickEvent e) {
+		this.invalidate(e);
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onTeamSetownerEvent(TeamSetownerEvent e) {
+		this.invalidate(e);
+	}
+
+	private void invalidate(IslandBaseEvent e) {
+		if (e.getIsland() != null)
+			this.addon.getPlaceholders().invalidate(e.getIsland().getUniqueId());
+	}
+
+	private UpgradesAddon addon;
+
+}
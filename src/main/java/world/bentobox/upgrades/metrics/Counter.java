@@ -0,0 +1,28 @@
+package world.bentobox.upgrades.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe monotonic counter
+ */
+public class Counter {
+
+	public void increment() {
+		this.value.increment();
+	}
+
+	public void add(long amount) {
+		this.value.add(amount);
+	}
+
+	public long get() {
+		return this.value.sum();
+	}
+
+	public void reset() {
+		this.value.reset();
+	}
+
+	private final LongAdder value = new LongAdder();
+
+}
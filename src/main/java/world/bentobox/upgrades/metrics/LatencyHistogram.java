@@ -0,0 +1,113 @@
+package world.bentobox.upgrades.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram in nanoseconds.
+ *
+ * Like an HDR histogram, values are bucketed by power of two and each power
+ * of two is split in SUB_BUCKETS linear sub buckets, so the relative error
+ * stays under 1 / SUB_BUCKETS whatever the magnitude of the value. Recording
+ * is allocation free and can be done from any thread.
+ */
+public class LatencyHistogram {
+
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray(BUCKETS);
+		this.count = new LongAdder();
+		this.sum = new LongAdder();
+		this.max = new AtomicLong();
+	}
+
+	/**
+	 * @param nanos Duration to record
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		this.counts.incrementAndGet(index(value));
+		this.count.increment();
+		this.sum.add(value);
+		this.max.accumulateAndGet(value, Math::max);
+	}
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	public double getMean() {
+		long total = this.count.sum();
+		return total == 0 ? 0 : (double) this.sum.sum() / total;
+	}
+
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * @param percentile Between 0 and 100
+	 * @return Upper bound of the bucket containing the percentile, in nanoseconds
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = this.counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0)
+			return 0;
+
+		long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total));
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			cumulative += snapshot[i];
+			if (cumulative >= target)
+				return Math.min(upperBound(i), this.getMax());
+		}
+		return this.getMax();
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			this.counts.set(i, 0);
+		this.count.reset();
+		this.sum.reset();
+		this.max.set(0);
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int sub = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long lowerBound(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int shift = index / SUB_BUCKETS - 1;
+		return ((long) (SUB_BUCKETS + index % SUB_BUCKETS)) << shift;
+	}
+
+	static long upperBound(int index) {
+		return index + 1 < BUCKETS ? lowerBound(index + 1) - 1 : Long.MAX_VALUE;
+	}
+
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts;
+
+	private final LongAdder count;
+
+	private final LongAdder sum;
+
+	private final AtomicLong max;
+
+}
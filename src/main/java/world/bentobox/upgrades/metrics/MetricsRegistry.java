@@ -0,0 +1,124 @@
+package world.bentobox.upgrades.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the latency histograms and counters of the addon.
+ *
+ * Metrics are created on first use. Use {@link #start()} and
+ * {@link #record(String, long)} around the measured code.
+ */
+public class MetricsRegistry {
+
+	public static final String PANEL_SHOW = "panel.show";
+	public static final String UPGRADE_PURCHASE = "upgrade.purchase";
+	public static final String UPGRADE_PURCHASE_SUCCESS = "upgrade.purchase.success";
+	public static final String UPGRADE_PURCHASE_FAILURE = "upgrade.purchase.failure";
+	public static final String DATA_CACHE_HIT = "data.cache.hit";
+	public static final String DATA_CACHE_MISS = "data.cache.miss";
+	public static final String DATA_LOAD = "data.load";
+	public static final String DATA_BULK_LOAD = "data.bulk.load";
+	public static final String DATA_SAVE = "data.save";
+	public static final String DATA_SAVE_FAILURE = "data.save.failure";
+	public static final String DATA_SAVE_CONFLICT = "data.save.conflict";
+	public static final String DATA_REMOTE_CHANGE = "data.remote.change";
+	public static final String JOURNAL_SYNC = "journal.sync";
+	public static final String JOURNAL_REPLAY = "journal.replay";
+	public static final String FORMULA_EVAL = "formula.eval";
+	public static final String COMMAND_DISPATCH = "command.dispatch";
+	public static final String SLOW_OPERATION = "slow.operation";
+	public static final String TIMED_BONUS_GRANTED = "timed.bonus.granted";
+	public static final String TIMED_BONUS_EXPIRED = "timed.bonus.expired";
+
+	public MetricsRegistry() {
+		this.histograms = new ConcurrentHashMap<>();
+		this.counters = new ConcurrentHashMap<>();
+	}
+
+	public LatencyHistogram histogram(String name) {
+		return this.histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+	}
+
+	public Counter counter(String name) {
+		return this.counters.computeIfAbsent(name, k -> new Counter());
+	}
+
+	/**
+	 * @return Start time to give to {@link #record(String, long)}
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Record the time elapsed since start in the histogram name
+	 *
+	 * @param name  Name of the histogram
+	 * @param start Value returned by {@link #start()}
+	 */
+	public void record(String name, long start) {
+		this.histogram(name).record(System.nanoTime() - start);
+	}
+
+	public void increment(String name) {
+		this.counter(name).increment();
+	}
+
+	public void reset() {
+		this.histograms.values().forEach(LatencyHistogram::reset);
+		this.counters.values().forEach(Counter::reset);
+	}
+
+	/**
+	 * @return One line per metric, sorted by name
+	 */
+	public List<String> report() {
+		List<String> lines = new ArrayList<>();
+
+		new TreeMap<>(this.histograms).forEach((name, histogram) -> {
+			if (histogram.getCount() == 0)
+				return;
+			lines.add(name + " count=" + histogram.getCount() + " mean=" + format(histogram.getMean()) + " p50="
+					+ format(histogram.getValueAtPercentile(50)) + " p90=" + format(histogram.getValueAtPercentile(90))
+					+ " p99=" + format(histogram.getValueAtPercentile(99)) + " max=" + format(histogram.getMax()));
+		});
+		new TreeMap<>(this.counters).forEach((name, counter) -> lines.add(name + " " + counter.get()));
+
+		return lines;
+	}
+
+	/**
+	 * Write the report to file, replacing the previous one
+	 *
+	 * @param file File to write
+	 * @throws IOException If the file couldn't be written
+	 */
+	public void writeReport(Path file) throws IOException {
+		List<String> lines = new ArrayList<>();
+		lines.add("# Upgrades metrics - " + Instant.now());
+		lines.addAll(this.report());
+
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(tmp, lines, StandardCharsets.UTF_8);
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static String format(double nanos) {
+		return String.format("%.3fms", nanos / 1_000_000.0);
+	}
+
+	private final Map<String, LatencyHistogram> histograms;
+
+	private final Map<String, Counter> counters;
+
+}
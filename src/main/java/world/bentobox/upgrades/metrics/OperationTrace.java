@@ -0,0 +1,148 @@
+package world.bentobox.upgrades.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Per thread breakdown of an upgrade operation (panel render, purchase...)
+ * in {@link Phase}.
+ *
+ * An operation is started with {@link #begin()} and finished with
+ * {@link #end()}. The trace is passed explicitly between the steps of the
+ * operation, which can run on different threads: each synchronous part is
+ * run through {@link #call(Supplier)} or {@link #run(Runnable)}, which attach
+ * the trace to the current thread only while the part runs. Instrumented code
+ * calls {@link #start()} and {@link #end(Phase, long)} which add the elapsed
+ * time to the attached trace, and do nothing when no trace is attached.
+ */
+public final class OperationTrace {
+
+	private OperationTrace() {
+		this.phases = new long[PHASES.length];
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Start tracing an operation, the trace isn't attached to any thread
+	 *
+	 * @return the new trace
+	 */
+	public static OperationTrace begin() {
+		return new OperationTrace();
+	}
+
+	/**
+	 * @return Start time to give to {@link #end(Phase, long)}
+	 */
+	public static long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Add the time elapsed since start to the phase of the current trace
+	 *
+	 * @param phase Phase that was running
+	 * @param start Value returned by {@link #start()}
+	 */
+	public static void end(Phase phase, long start) {
+		OperationTrace trace = CURRENT.get();
+		if (trace != null)
+			trace.phases[phase.ordinal()] += System.nanoTime() - start;
+	}
+
+	/**
+	 * Count an upgrade data cache hit in the current trace
+	 */
+	public static void cacheHit() {
+		OperationTrace trace = CURRENT.get();
+		if (trace != null)
+			trace.cacheHits++;
+	}
+
+	/**
+	 * Count an upgrade data cache miss in the current trace
+	 */
+	public static void cacheMiss() {
+		OperationTrace trace = CURRENT.get();
+		if (trace != null)
+			trace.cacheMisses++;
+	}
+
+	/**
+	 * Run a synchronous part of the operation with this trace attached to the
+	 * current thread. It is detached before returning, so nothing is left on
+	 * the thread when the operation continues elsewhere.
+	 *
+	 * @param part Part of the operation
+	 * @return Result of part
+	 */
+	public <T> T call(Supplier<T> part) {
+		OperationTrace previous = CURRENT.get();
+		CURRENT.set(this);
+		try {
+			return part.get();
+		} finally {
+			if (previous == null)
+				CURRENT.remove();
+			else
+				CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * Run a synchronous part of the operation with this trace attached to the
+	 * current thread, see {@link #call(Supplier)}
+	 *
+	 * @param part Part of the operation
+	 */
+	public void run(Runnable part) {
+		this.call(() -> {
+			part.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Stop tracing this operation, the next calls do nothing
+	 */
+	public void end() {
+		if (this.durationNanos < 0)
+			this.durationNanos = System.nanoTime() - this.startNanos;
+	}
+
+	/**
+	 * @return Duration of the operation in nanoseconds, -1 if not ended
+	 */
+	public long getDuration() {
+		return this.durationNanos;
+	}
+
+	/**
+	 * @return Time spent in phase in nanoseconds
+	 */
+	public long getPhase(Phase phase) {
+		return this.phases[phase.ordinal()];
+	}
+
+	public int getCacheHits() {
+		return this.cacheHits;
+	}
+
+	public int getCacheMisses() {
+		return this.cacheMisses;
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+
+	private static final ThreadLocal<OperationTrace> CURRENT = new ThreadLocal<>();
+
+	private final long[] phases;
+
+	private final long startNanos;
+
+	private long durationNanos = -1;
+
+	private int cacheHits;
+
+	private int cacheMisses;
+
+}
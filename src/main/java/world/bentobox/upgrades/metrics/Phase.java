@@ -0,0 +1,28 @@
+package world.bentobox.upgrades.metrics;
+
+/**
+ * Phases of an upgrade operation tracked by {@link OperationTrace}
+ */
+public enum Phase {
+	TIER_RESOLUTION("tier"),
+	FORMULA_EVAL("formula"),
+	PERMISSION_SCAN("permission"),
+	ECONOMY("economy"),
+	LEVEL_LOOKUP("level"),
+	DB_IO("db"),
+	COMMAND_DISPATCH("command");
+
+	Phase(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * @return Short name of the phase used in logs
+	 */
+	public String getLabel() {
+		return this.label;
+	}
+
+	private final String label;
+
+}
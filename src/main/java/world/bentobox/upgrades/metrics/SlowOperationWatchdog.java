@@ -0,0 +1,92 @@
+package world.bentobox.upgrades.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.config.Settings;
+
+/**
+ * Logs a single line with the phase breakdown of the traced operations that
+ * are slower than the configured threshold.
+ *
+ * Slow operations are sampled and the number of lines is limited per minute,
+ * the ones that are not logged are counted and reported with the next line.
+ */
+public class SlowOperationWatchdog {
+
+	public SlowOperationWatchdog(UpgradesAddon addon) {
+		this.addon = addon;
+		this.windowStart = new AtomicLong(System.nanoTime());
+		this.logged = new AtomicInteger();
+		this.suppressed = new AtomicInteger();
+	}
+
+	/**
+	 * Check an ended operation and log it if it is too slow
+	 *
+	 * @param operation Name of the operation (panel, purchase...)
+	 * @param islandId  Island concerned by the operation
+	 * @param trace     Ended trace of the operation
+	 */
+	public void check(String operation, String islandId, OperationTrace trace) {
+		Settings settings = this.addon.getSettings();
+		long threshold = (long) (settings.getSlowOperationThreshold() * NANOS_PER_MILLI);
+		if (threshold <= 0 || trace.getDuration() < threshold)
+			return;
+
+		this.addon.getMetrics().increment(MetricsRegistry.SLOW_OPERATION);
+
+		double sampleRate = settings.getSlowOperationSampleRate();
+		if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)
+			return;
+
+		if (!this.tryAcquire(settings.getSlowOperationMaxLogs())) {
+			this.suppressed.incrementAndGet();
+			return;
+		}
+
+		this.addon.logWarning(this.format(operation, islandId, trace, this.suppressed.getAndSet(0)));
+	}
+
+	private boolean tryAcquire(int maxLogs) {
+		long now = System.nanoTime();
+		long start = this.windowStart.get();
+		if (now - start >= WINDOW && this.windowStart.compareAndSet(start, now))
+			this.logged.set(0);
+		return this.logged.incrementAndGet() <= maxLogs;
+	}
+
+	private String format(String operation, String islandId, OperationTrace trace, int suppressed) {
+		StringBuilder line = new StringBuilder("Slow ").append(operation).append(" on island ").append(islandId)
+				.append(": ").append(millis(trace.getDuration())).append(" [");
+		for (Phase phase : PHASES)
+			line.append(phase.getLabel()).append(' ').append(millis(trace.getPhase(phase))).append(", ");
+		line.append("cache misses ").append(trace.getCacheMisses()).append(']');
+		if (suppressed > 0)
+			line.append(" (").append(suppressed).append(" slow operations not logged)");
+		return line.toString();
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.2f ms", nanos / NANOS_PER_MILLI);
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+
+	private static final double NANOS_PER_MILLI = 1_000_000d;
+
+	private static final long WINDOW = TimeUnit.MINUTES.toNanos(1);
+
+	private final UpgradesAddon addon;
+
+	private final AtomicLong windowStart;
+
+	private final AtomicInteger logged;
+
+	private final AtomicInteger suppressed;
+
+}
@@ -0,0 +1,30 @@
+package world.bentobox.upgrades.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("world.bentobox.upgrades.DataLoad")
+@Label("Upgrades Data Load")
+@Description("Load of the upgrade levels of an island from the database")
+@Category({ "BentoBox", "Upgrades" })
+public class DataLoadEvent extends Event {
+
+	public DataLoadEvent(String islandId) {
+		this.islandId = islandId;
+	}
+
+	public void setFound(boolean found) {
+		this.found = found;
+	}
+
+	@Label("Island Id")
+	String islandId;
+
+	@Label("Found")
+	@Description("False if the island had no upgrade data yet")
+	boolean found;
+
+}
@@ -0,0 +1,29 @@
+package world.bentobox.upgrades.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("world.bentobox.upgrades.DataSave")
+@Label("Upgrades Data Save")
+@Description("Save of the upgrade levels of an island to the database")
+@Category({ "BentoBox", "Upgrades" })
+public class DataSaveEvent extends Event {
+
+	public DataSaveEvent(String islandId) {
+		this.islandId = islandId;
+	}
+
+	public void setSuccess(boolean success) {
+		this.success = success;
+	}
+
+	@Label("Island Id")
+	String islandId;
+
+	@Label("Success")
+	boolean success;
+
+}
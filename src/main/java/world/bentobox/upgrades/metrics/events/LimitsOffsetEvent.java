@@ -0,0 +1,37 @@
+package world.bentobox.upgrades.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("world.bentobox.upgrades.LimitsOffset")
+@Label("Limits Offset Application")
+@Description("Change of a Limits addon offset by a limits upgrade")
+@Category({ "BentoBox", "Upgrades" })
+public class LimitsOffsetEvent extends Event {
+
+	public LimitsOffsetEvent(String islandId, String upgradeName) {
+		this.islandId = islandId;
+		this.upgradeName = upgradeName;
+	}
+
+	public void setOffsets(int oldOffset, int newOffset) {
+		this.oldOffset = oldOffset;
+		this.newOffset = newOffset;
+	}
+
+	@Label("Island Id")
+	String islandId;
+
+	@Label("Upgrade Name")
+	String upgradeName;
+
+	@Label("Old Offset")
+	int oldOffset;
+
+	@Label("New Offset")
+	int newOffset;
+
+}
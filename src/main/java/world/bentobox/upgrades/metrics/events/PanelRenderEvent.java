@@ -0,0 +1,24 @@
+package world.bentobox.upgrades.metrics.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("world.bentobox.upgrades.PanelRender")
+@Label("Upgrades Panel Render")
+@Description("Opening of the upgrade panel of an island")
+public class PanelRenderEvent extends UpgradeOperationEvent {
+
+	public PanelRenderEvent(String islandId) {
+		this.islandId = islandId;
+	}
+
+	public void setUpgradeCount(int upgradeCount) {
+		this.upgradeCount = upgradeCount;
+	}
+
+	@Label("Upgrade Count")
+	@Description("Number of upgrades shown")
+	int upgradeCount;
+
+}
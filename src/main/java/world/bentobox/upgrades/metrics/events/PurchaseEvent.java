@@ -0,0 +1,27 @@
+package world.bentobox.upgrades.metrics.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("world.bentobox.upgrades.Purchase")
+@Label("Upgrade Purchase")
+@Description("Purchase of an upgrade for an island")
+public class PurchaseEvent extends UpgradeOperationEvent {
+
+	public PurchaseEvent(String islandId, String upgradeName) {
+		this.islandId = islandId;
+		this.upgradeName = upgradeName;
+	}
+
+	public void setSuccess(boolean success) {
+		this.success = success;
+	}
+
+	@Label("Upgrade Name")
+	String upgradeName;
+
+	@Label("Success")
+	boolean success;
+
+}
@@ -0,0 +1,77 @@
+package world.bentobox.upgrades.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Timespan;
+import world.bentobox.upgrades.metrics.OperationTrace;
+import world.bentobox.upgrades.metrics.Phase;
+
+/**
+ * Base of the JFR events of traced operations, carries the phase breakdown
+ */
+@Category({ "BentoBox", "Upgrades" })
+abstract class UpgradeOperationEvent extends Event {
+
+	/**
+	 * End the event and commit it with the trace breakdown if it is recorded
+	 *
+	 * @param trace Trace of the operation
+	 */
+	public void commit(OperationTrace trace) {
+		this.end();
+		if (!this.shouldCommit())
+			return;
+
+		this.cacheHit = trace.getCacheMisses() == 0;
+		this.cacheMisses = trace.getCacheMisses();
+		this.tierResolution = trace.getPhase(Phase.TIER_RESOLUTION);
+		this.formulaEval = trace.getPhase(Phase.FORMULA_EVAL);
+		this.permissionScan = trace.getPhase(Phase.PERMISSION_SCAN);
+		this.economy = trace.getPhase(Phase.ECONOMY);
+		this.levelLookup = trace.getPhase(Phase.LEVEL_LOOKUP);
+		this.dbIo = trace.getPhase(Phase.DB_IO);
+		this.commandDispatch = trace.getPhase(Phase.COMMAND_DISPATCH);
+		this.commit();
+	}
+
+	@Label("Island Id")
+	String islandId;
+
+	@Label("Cache Hit")
+	@Description("True if every upgrade data was found in the cache")
+	boolean cacheHit;
+
+	@Label("Cache Misses")
+	int cacheMisses;
+
+	@Label("Tier Resolution")
+	@Timespan(Timespan.NANOSECONDS)
+	long tierResolution;
+
+	@Label("Formula Evaluation")
+	@Timespan(Timespan.NANOSECONDS)
+	long formulaEval;
+
+	@Label("Permission Scan")
+	@Timespan(Timespan.NANOSECONDS)
+	long permissionScan;
+
+	@Label("Economy")
+	@Timespan(Timespan.NANOSECONDS)
+	long economy;
+
+	@Label("Level Lookup")
+	@Timespan(Timespan.NANOSECONDS)
+	long levelLookup;
+
+	@Label("Database I/O")
+	@Timespan(Timespan.NANOSECONDS)
+	long dbIo;
+
+	@Label("Command Dispatch")
+	@Timespan(Timespan.NANOSECONDS)
+	long commandDispatch;
+
+}
@@ -0,0 +1,144 @@
+package world.bentobox.upgrades.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import world.bentobox.bentobox.api.addons.Addon;
+
+/**
+ * Bus sharing the changes through a file, for local runs with several servers
+ * on the same host or a shared folder.
+ *
+ * Changes are appended to the file as lines (under a file lock) and each node
+ * polls the file for the lines added since its last read. Only the changes
+ * published after the node started are read. The file is never compacted, it
+ * can be deleted while the nodes are stopped.
+ */
+public class FileInvalidationBus implements InvalidationBus {
+
+	/**
+	 * @param addon        Addon used to log
+	 * @param file         File shared by the nodes
+	 * @param nodeId       Id of this node
+	 * @param pollInterval Interval in milliseconds between two reads of the file
+	 */
+	public FileInvalidationBus(Addon addon, Path file, String nodeId, long pollInterval) throws IOException {
+		this.addon = addon;
+		this.file = file;
+		this.nodeId = nodeId;
+		this.listeners = new CopyOnWriteArrayList<>();
+
+		if (file.getParent() != null)
+			Files.createDirectories(file.getParent());
+		this.position = Files.exists(file) ? Files.size(file) : 0;
+
+		// Writes and reads are done on the same thread, in order
+		this.thread = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "upgrades-invalidation");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.thread.scheduleWithFixedDelay(this::poll, pollInterval, Math.max(1, pollInterval), TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public String getNodeId() {
+		return this.nodeId;
+	}
+
+	@Override
+	public void publish(LevelChange change) {
+		String line = change.getNodeId() + '\t' + change.getIslandId() + '\t' + change.getLevel() + '\t'
+				+ change.getUpgradeName() + '\n';
+		this.thread.execute(() -> {
+			try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND); FileLock lock = channel.lock()) {
+				channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+			} catch (IOException e) {
+				this.addon.logError("Couldn't publish upgrade change to " + this.file + ": " + e.getMessage());
+			}
+		});
+	}
+
+	@Override
+	public void subscribe(Consumer<LevelChange> listener) {
+		this.listeners.add(listener);
+	}
+
+	@Override
+	public void close() {
+		this.thread.shutdown();
+	}
+
+	private void poll() {
+		try {
+			if (!Files.exists(this.file))
+				return;
+
+			try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+				long size = channel.size();
+				// Deleted and recreated
+				if (size < this.position)
+					this.position = 0;
+				if (size == this.position)
+					return;
+
+				ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - this.position, MAX_READ));
+				channel.read(buffer, this.position);
+				String read = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+
+				// Only complete lines, the last one may still be written
+				int end = read.lastIndexOf('\n');
+				if (end < 0)
+					return;
+				this.position += read.substring(0, end + 1).getBytes(StandardCharsets.UTF_8).length;
+				for (String line : read.substring(0, end).split("\n"))
+					this.dispatch(line);
+			}
+		} catch (IOException | RuntimeException e) {
+			this.addon.logError("Couldn't read upgrade changes from " + this.file + ": " + e.getMessage());
+		}
+	}
+
+	private void dispatch(String line) {
+		String[] split = line.split("\t", 4);
+		if (split.length != 4 || split[0].equals(this.nodeId))
+			return;
+
+		LevelChange change;
+		try {
+			change = new LevelChange(split[0], split[1], split[3], Integer.parseInt(split[2]));
+		} catch (NumberFormatException e) {
+			this.addon.logWarning("Ignoring malformed upgrade change: " + line);
+			return;
+		}
+		this.listeners.forEach(listener -> listener.accept(change));
+	}
+
+	private static final int MAX_READ = 1 << 20;
+
+	private final Addon addon;
+
+	private final Path file;
+
+	private final String nodeId;
+
+	private final List<Consumer<LevelChange>> listeners;
+
+	private final ScheduledExecutorService thread;
+
+	private long position;
+
+}
@@ -0,0 +1,35 @@
+package world.bentobox.upgrades.network;
+
+import java.util.function.Consumer;
+
+/**
+ * Broadcast of the upgrade level changes between the servers (nodes) sharing
+ * the same database, so each node can update its cached upgrades data.
+ *
+ * A node doesn't receive its own changes.
+ */
+public interface InvalidationBus {
+
+	/**
+	 * @return Id of this node
+	 */
+	String getNodeId();
+
+	/**
+	 * Send a change of this node to the other nodes
+	 *
+	 * @param change Level change, its node id is the one of this node
+	 */
+	void publish(LevelChange change);
+
+	/**
+	 * @param listener Called with the changes of the other nodes, from any thread
+	 */
+	void subscribe(Consumer<LevelChange> listener);
+
+	/**
+	 * Stop receiving changes
+	 */
+	void close();
+
+}
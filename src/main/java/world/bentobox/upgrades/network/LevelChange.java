@@ -0,0 +1,45 @@
+package world.bentobox.upgrades.network;
+
+/**
+ * Level of an upgrade of an island changed on a node
+ */
+public class LevelChange {
+
+	public LevelChange(String nodeId, String islandId, String upgradeName, int level) {
+		this.nodeId = nodeId;
+		this.islandId = islandId;
+		this.upgradeName = upgradeName;
+		this.level = level;
+	}
+
+	/**
+	 * @return Id of the node where the level changed
+	 */
+	public String getNodeId() {
+		return this.nodeId;
+	}
+
+	public String getIslandId() {
+		return this.islandId;
+	}
+
+	public String getUpgradeName() {
+		return this.upgradeName;
+	}
+
+	/**
+	 * @return New level of the upgrade
+	 */
+	public int getLevel() {
+		return this.level;
+	}
+
+	private final String nodeId;
+
+	private final String islandId;
+
+	private final String upgradeName;
+
+	private final int level;
+
+}
@@ -0,0 +1,67 @@
+package world.bentobox.upgrades.network;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In process bus, for tests and several nodes run in the same JVM. Nodes
+ * connected to the same {@link Hub} receive the changes of the others.
+ */
+public class LocalInvalidationBus implements InvalidationBus {
+
+	private LocalInvalidationBus(Hub hub, String nodeId) {
+		this.hub = hub;
+		this.nodeId = nodeId;
+		this.listeners = new CopyOnWriteArrayList<>();
+	}
+
+	@Override
+	public String getNodeId() {
+		return this.nodeId;
+	}
+
+	@Override
+	public void publish(LevelChange change) {
+		this.hub.nodes.forEach(node -> {
+			if (node != this)
+				node.listeners.forEach(listener -> listener.accept(change));
+		});
+	}
+
+	@Override
+	public void subscribe(Consumer<LevelChange> listener) {
+		this.listeners.add(listener);
+	}
+
+	@Override
+	public void close() {
+		this.hub.nodes.remove(this);
+	}
+
+	/**
+	 * Shared by the nodes of a local network
+	 */
+	public static class Hub {
+
+		/**
+		 * @param nodeId Id of the node
+		 * @return Bus of the node, connected to the other nodes of the hub
+		 */
+		public LocalInvalidationBus connect(String nodeId) {
+			LocalInvalidationBus bus = new LocalInvalidationBus(this, nodeId);
+			this.nodes.add(bus);
+			return bus;
+		}
+
+		private final List<LocalInvalidationBus> nodes = new CopyOnWriteArrayList<>();
+
+	}
+
+	private final Hub hub;
+
+	private final String nodeId;
+
+	private final List<Consumer<LevelChange>> listeners;
+
+}
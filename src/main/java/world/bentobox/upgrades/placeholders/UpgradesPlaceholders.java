@@ -0,0 +1,162 @@
+package world.bentobox.upgrades.placeholders;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import world.bentobox.bentobox.api.addons.GameModeAddon;
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.bentobox.managers.PlaceholdersManager;
+import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.api.Upgrade;
+
+/**
+ * Placeholders of the upgrades of the island of the user:
+ * [gamemode]_[upgrade]_level, [gamemode]_[upgrade]_cost (of the next level)
+ * and [gamemode]_[upgrade]_tier
+ *
+ * Values are computed on the first request and kept per island until the
+ * upgrade level, the island level or the members of the island change.
+ */
+public class UpgradesPlaceholders {
+
+	public UpgradesPlaceholders(UpgradesAddon addon) {
+		this.addon = addon;
+		this.cache = new ConcurrentHashMap<>();
+		this.gameModes = new ConcurrentHashMap<>();
+		this.registered = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Register the placeholders of the upgrades available for the gamemode.
+	 * Called again after a config reload, it registers the placeholders of the
+	 * new upgrades and unregisters the ones of the removed upgrades.
+	 *
+	 * @param gameMode GameMode addon
+	 */
+	public void register(GameModeAddon gameMode) {
+		PlaceholdersManager manager = this.addon.getPlugin().getPlaceholdersManager();
+		String gameModeName = gameMode.getDescription().getName();
+		String prefix = gameModeName.toLowerCase(Locale.ENGLISH) + "_";
+		this.gameModes.putIfAbsent(gameModeName, gameMode);
+
+		Set<String> registered = this.registered.computeIfAbsent(gameModeName, k -> ConcurrentHashMap.newKeySet());
+		Set<String> available = new HashSet<>();
+		this.addon.getUpgradeRegistry().getCatalog(gameModeName).forEach(upgrade -> {
+			String upgradeName = upgrade.getName();
+			available.add(upgradeName);
+			if (!registered.add(upgradeName))
+				return;
+
+			// The upgrade is looked up on each request, it may be replaced on reload
+			String name = prefix + upgradeName.toLowerCase(Locale.ENGLISH);
+			manager.registerPlaceholder(this.addon, name + "_level",
+					user -> this.getValue(gameMode, user, upgradeName, values -> Integer.toString(values.level)));
+			manager.registerPlaceholder(this.addon, name + "_cost",
+					user -> this.getValue(gameMode, user, upgradeName, values -> values.cost));
+			manager.registerPlaceholder(this.addon, name + "_tier",
+					user -> this.getValue(gameMode, user, upgradeName, values -> values.tier));
+		});
+
+		registered.removeIf(upgradeName -> {
+			if (available.contains(upgradeName))
+				return false;
+			String name = prefix + upgradeName.toLowerCase(Locale.ENGLISH);
+			manager.unregisterPlaceholder(this.addon, name + "_level");
+			manager.unregisterPlaceholder(this.addon, name + "_cost");
+			manager.unregisterPlaceholder(this.addon, name + "_tier");
+			return true;
+		});
+	}
+
+	/**
+	 * Register again the placeholders of every gamemode, after the upgrades
+	 * changed
+	 */
+	public void refresh() {
+		this.gameModes.values().forEach(this::register);
+	}
+
+	/**
+	 * Forget the values of an island
+	 *
+	 * @param islandId Unique id of the island
+	 */
+	public void invalidate(String islandId) {
+		this.cache.remove(islandId);
+	}
+
+	/**
+	 * Forget the values of an upgrade of an island
+	 *
+	 * @param islandId    Unique id of the island
+	 * @param upgradeName Name of the upgrade
+	 */
+	public void invalidate(String islandId, String upgradeName) {
+		Map<String, Values> islandValues = this.cache.get(islandId);
+		if (islandValues != null)
+			islandValues.remove(upgradeName);
+	}
+
+	/**
+	 * Forget the values of an upgrade for every island, after its config
+	 * changed
+	 *
+	 * @param upgradeName Name of the upgrade
+	 */
+	public void invalidateUpgrade(String upgradeName) {
+		this.cache.values().forEach(islandValues -> islandValues.remove(upgradeName));
+	}
+
+	/**
+	 * Forget every values
+	 */
+	public void clear() {
+		this.cache.clear();
+	}
+
+	private String getValue(GameModeAddon gameMode, User user, String upgradeName, Function<Values, String> value) {
+		Upgrade upgrade = this.addon.getUpgradeRegistry().get(upgradeName);
+		if (user == null || upgrade == null)
+			return "";
+		Island island = this.addon.getIslands().getIsland(gameMode.getOverWorld(), user);
+		if (island == null)
+			return "";
+
+		Map<String, Values> islandValues = this.cache.computeIfAbsent(island.getUniqueId(),
+				k -> new ConcurrentHashMap<>());
+		// An invalidation during the computation is applied after it
+		return value.apply(islandValues.computeIfAbsent(upgrade.getName(), k -> new Values(upgrade, island)));
+	}
+
+	private static class Values {
+
+		Values(Upgrade upgrade, Island island) {
+			Upgrade.UpgradeValues next = upgrade.getNextUpgradeValues(island);
+			this.level = upgrade.getUpgradeLevel(island);
+			this.cost = next == null ? "" : Integer.toString(next.getMoneyCost());
+			this.tier = Objects.toString(upgrade.getTierName(island), "");
+		}
+
+		private final int level;
+
+		private final String cost;
+
+		private final String tier;
+
+	}
+
+	private final UpgradesAddon addon;
+
+	private final Map<String, Map<String, Values>> cache;
+
+	private final Map<String, GameModeAddon> gameModes;
+
+	private final Map<String, Set<String>> registered;
+
+}
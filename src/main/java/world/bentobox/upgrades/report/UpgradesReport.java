@@ -0,0 +1,222 @@
+package world.bentobox.upgrades.report;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.bukkit.World;
+
+import world.bentobox.upgrades.api.Upgrade;
+import world.bentobox.upgrades.dataobjects.UpgradesData;
+
+/**
+ * Statistics of the upgrades by gamemode: islands by level of each upgrade,
+ * islands that bought every level, money spent and revenue by tier.
+ *
+ * Only counters are kept, so its size depends on the config and not on the
+ * number of islands. It isn't thread safe: each worker fills its own report
+ * and they are merged at the end.
+ */
+public class UpgradesReport {
+
+	public UpgradesReport() {
+		this.gameModes = new TreeMap<>();
+	}
+
+	/**
+	 * Count an island
+	 *
+	 * @param gameMode Gamemode of the island
+	 * @param world    World of the island
+	 * @param data     Upgrades data of the island
+	 * @param catalog  Upgrades available in the gamemode
+	 */
+	public void addIsland(String gameMode, World world, UpgradesData data, List<Upgrade> catalog) {
+		GameModeStats stats = this.gameMode(gameMode);
+		stats.islands++;
+		stats.moneySpent += data.getMoneySpent();
+
+		Map<String, Integer> levels = data.getUpgradesLevels();
+		for (Upgrade upgrade : catalog) {
+			UpgradeStats upgradeStats = stats.upgrade(upgrade.getName());
+			int level = levels.getOrDefault(upgrade.getName(), 1);
+			upgradeStats.levels.merge(level, 1L, Long::sum);
+			int maxLevel = upgrade.getMaxLevel(world);
+			upgradeStats.maxLevel = Math.max(upgradeStats.maxLevel, maxLevel);
+			if (maxLevel > 0 && level > maxLevel)
+				upgradeStats.islandsAtMax++;
+		}
+	}
+
+	/**
+	 * Count a purchase in the revenue of its tier
+	 *
+	 * @param gameMode    Gamemode of the island
+	 * @param upgradeName Name of the upgrade
+	 * @param tier        Tier of the level bought from
+	 * @param cost        Money paid
+	 */
+	public void addPurchase(String gameMode, String upgradeName, String tier, long cost) {
+		UpgradeStats stats = this.gameMode(gameMode).upgrade(upgradeName);
+		stats.revenue.merge(tier, cost, Long::sum);
+		stats.purchases.merge(tier, 1L, Long::sum);
+		this.withRevenue = true;
+	}
+
+	/**
+	 * Add the counters of other to this report
+	 *
+	 * @param other Report filled by another worker
+	 * @return This report
+	 */
+	public UpgradesReport merge(UpgradesReport other) {
+		other.gameModes.forEach((name, otherStats) -> {
+			GameModeStats stats = this.gameMode(name);
+			stats.islands += otherStats.islands;
+			stats.moneySpent += otherStats.moneySpent;
+			otherStats.upgrades.forEach((upgradeName, otherUpgrade) -> {
+				UpgradeStats upgrade = stats.upgrade(upgradeName);
+				upgrade.maxLevel = Math.max(upgrade.maxLevel, otherUpgrade.maxLevel);
+				upgrade.islandsAtMax += otherUpgrade.islandsAtMax;
+				otherUpgrade.levels.forEach((level, count) -> upgrade.levels.merge(level, count, Long::sum));
+				otherUpgrade.revenue.forEach((tier, sum) -> upgrade.revenue.merge(tier, sum, Long::sum));
+				otherUpgrade.purchases.forEach((tier, count) -> upgrade.purchases.merge(tier, count, Long::sum));
+			});
+		});
+		this.withRevenue |= other.withRevenue;
+		return this;
+	}
+
+	/**
+	 * @return Number of islands counted
+	 */
+	public long getIslands() {
+		return this.gameModes.values().stream().mapToLong(stats -> stats.islands).sum();
+	}
+
+	/**
+	 * @return One line per counter: gamemode, upgrade, metric, key, value
+	 */
+	public String toCsv() {
+		StringBuilder csv = new StringBuilder("gamemode,upgrade,metric,key,value\n");
+		this.gameModes.forEach((name, stats) -> {
+			csvLine(csv, name, "", "islands", "", stats.islands);
+			csvLine(csv, name, "", "money_spent", "", stats.moneySpent);
+			stats.upgrades.forEach((upgradeName, upgrade) -> {
+				csvLine(csv, name, upgradeName, "max_level", "", upgrade.maxLevel);
+				csvLine(csv, name, upgradeName, "islands_at_max", "", upgrade.islandsAtMax);
+				upgrade.levels.forEach((level, count) -> csvLine(csv, name, upgradeName, "level", level.toString(), count));
+				upgrade.revenue.forEach((tier, sum) -> csvLine(csv, name, upgradeName, "revenue", tier, sum));
+				upgrade.purchases.forEach((tier, count) -> csvLine(csv, name, upgradeName, "purchases", tier, count));
+			});
+		});
+		return csv.toString();
+	}
+
+	/**
+	 * @return The report as a JSON object
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"generated\": ").append(jsonString(Instant.now().toString()));
+		json.append(",\n  \"revenue\": ").append(this.withRevenue);
+		json.append(",\n  \"gamemodes\": {");
+		boolean firstGameMode = true;
+		for (Map.Entry<String, GameModeStats> gameMode : this.gameModes.entrySet()) {
+			GameModeStats stats = gameMode.getValue();
+			json.append(firstGameMode ? "\n" : ",\n").append("    ").append(jsonString(gameMode.getKey())).append(": {\n");
+			json.append("      \"islands\": ").append(stats.islands).append(",\n");
+			json.append("      \"moneySpent\": ").append(stats.moneySpent).append(",\n");
+			json.append("      \"upgrades\": {");
+			boolean firstUpgrade = true;
+			for (Map.Entry<String, UpgradeStats> entry : stats.upgrades.entrySet()) {
+				UpgradeStats upgrade = entry.getValue();
+				json.append(firstUpgrade ? "\n" : ",\n").append("        ").append(jsonString(entry.getKey())).append(": {");
+				json.append("\"maxLevel\": ").append(upgrade.maxLevel);
+				json.append(", \"islandsAtMax\": ").append(upgrade.islandsAtMax);
+				json.append(", \"levels\": ").append(jsonObject(upgrade.levels));
+				json.append(", \"revenue\": ").append(jsonObject(upgrade.revenue));
+				json.append(", \"purchases\": ").append(jsonObject(upgrade.purchases)).append('}');
+				firstUpgrade = false;
+			}
+			json.append("\n      }\n    }");
+			firstGameMode = false;
+		}
+		json.append("\n  }\n}\n");
+		return json.toString();
+	}
+
+	private GameModeStats gameMode(String name) {
+		return this.gameModes.computeIfAbsent(name, k -> new GameModeStats());
+	}
+
+	private static void csvLine(StringBuilder csv, String gameMode, String upgrade, String metric, String key,
+			long value) {
+		csv.append(csvValue(gameMode)).append(',').append(csvValue(upgrade)).append(',').append(metric).append(',')
+		.append(csvValue(key)).append(',').append(value).append('\n');
+	}
+
+	private static String csvValue(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+			return value;
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+	private static String jsonObject(Map<?, Long> values) {
+		StringBuilder json = new StringBuilder("{");
+		values.forEach((key, value) -> {
+			if (json.length() > 1)
+				json.append(", ");
+			json.append(jsonString(key.toString())).append(": ").append(value);
+		});
+		return json.append('}').toString();
+	}
+
+	private static String jsonString(String value) {
+		StringBuilder json = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\')
+				json.append('\\').append(c);
+			else if (c < 0x20)
+				json.append(String.format("\\u%04x", (int) c));
+			else
+				json.append(c);
+		}
+		return json.append('"').toString();
+	}
+
+	private static class GameModeStats {
+
+		UpgradeStats upgrade(String name) {
+			return this.upgrades.computeIfAbsent(name, k -> new UpgradeStats());
+		}
+
+		private long islands;
+
+		private long moneySpent;
+
+		private final Map<String, UpgradeStats> upgrades = new TreeMap<>();
+
+	}
+
+	private static class UpgradeStats {
+
+		private int maxLevel;
+
+		private long islandsAtMax;
+
+		private final Map<Integer, Long> levels = new TreeMap<>();
+
+		private final Map<String, Long> revenue = new TreeMap<>();
+
+		private final Map<String, Long> purchases = new TreeMap<>();
+
+	}
+
+	private final Map<String, GameModeStats> gameModes;
+
+	// Only with the audit log
+	private boolean withRevenue;
+
+}
@@ -0,0 +1,157 @@
+package world.bentobox.upgrades.report;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.api.Upgrade;
+import world.bentobox.upgrades.audit.PurchaseAuditLog;
+
+/**
+ * Build an {@link UpgradesReport} of every island, off the server threads.
+ *
+ * BentoBox can only load one object or all of them, so the islands are read
+ * by pages: a few workers each take the next page, load its upgrades data
+ * in the background lane of the I/O executor (cached islands are read from
+ * the cache, the others are not cached) and count it in their own report.
+ * The background lane runs one load at a time, so the loads of the players
+ * never wait behind the report. At most PARALLEL_PAGES pages are in memory
+ * at the same time. The revenue by tier
+ * is then read from the audit log, and the report is written to the reports
+ * folder.
+ */
+public class UpgradesReportGenerator {
+
+	public enum Format {
+		CSV,
+		JSON
+	}
+
+	public UpgradesReportGenerator(UpgradesAddon addon) {
+		this.addon = addon;
+		this.running = new AtomicBoolean();
+		this.executor = ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Start a report. It should be called on the main thread, which gives the
+	 * list of the islands.
+	 *
+	 * @param format Format of the file
+	 * @return Future of the written file, failed if a report is already running
+	 */
+	public CompletableFuture<Path> generate(Format format) {
+		if (!this.running.compareAndSet(false, true))
+			return CompletableFuture.failedFuture(new IllegalStateException("A report is already running"));
+
+		long start = System.nanoTime();
+		// Only islands of a gamemode with upgrades
+		List<Island> islands = this.addon.getIslands().getIslands().stream()
+				.filter(island -> island.getGameMode() != null
+				&& !this.addon.getUpgradeRegistry().getCatalog(island.getGameMode()).isEmpty())
+				.collect(Collectors.toList());
+
+		AtomicInteger nextPage = new AtomicInteger();
+		List<CompletableFuture<UpgradesReport>> workers = new ArrayList<>();
+		for (int i = 0; i < PARALLEL_PAGES; i++)
+			workers.add(this.scan(islands, nextPage, new UpgradesReport()));
+
+		return CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).thenApplyAsync(ignored -> {
+			UpgradesReport report = new UpgradesReport();
+			workers.forEach(worker -> report.merge(worker.join()));
+			this.addRevenue(report);
+			Path file = this.write(report, format);
+			this.addon.log("Upgrades report of " + report.getIslands() + " islands written to " + file + " in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+			return file;
+		}, this.executor).whenComplete((file, e) -> this.running.set(false));
+	}
+
+	/**
+	 * @return If a report is being generated
+	 */
+	public boolean isRunning() {
+		return this.running.get();
+	}
+
+	/**
+	 * Count the next page in report, until there is no page left
+	 */
+	private CompletableFuture<UpgradesReport> scan(List<Island> islands, AtomicInteger nextPage, UpgradesReport report) {
+		int from = nextPage.getAndIncrement() * PAGE_SIZE;
+		if (from >= islands.size())
+			return CompletableFuture.completedFuture(report);
+
+		List<Island> page = islands.subList(from, Math.min(from + PAGE_SIZE, islands.size()));
+		return this.addon.getUpgradesLevels(page.stream().map(Island::getUniqueId).collect(Collectors.toList()))
+				.thenApplyAsync(levels -> {
+					page.forEach(island -> report.addIsland(island.getGameMode(), island.getWorld(),
+							levels.get(island.getUniqueId()), this.addon.getUpgradeRegistry().getCatalog(island.getGameMode())));
+					return report;
+				}, this.executor).thenCompose(filled -> this.scan(islands, nextPage, filled));
+	}
+
+	/**
+	 * Count the successful purchases of the audit log by tier of the level
+	 * bought from. Purchases of deleted islands are skipped.
+	 */
+	private void addRevenue(UpgradesReport report) {
+		PurchaseAuditLog auditLog = this.addon.getAuditLog();
+		if (auditLog == null)
+			return;
+
+		auditLog.forEach(line -> true, purchase -> {
+			if (!purchase.isSuccess())
+				return;
+			Optional<Island> island = this.addon.getIslands().getIslandById(purchase.getIslandId());
+			Upgrade upgrade = this.addon.getUpgradeRegistry().get(purchase.getUpgradeName());
+			if (island.isEmpty() || upgrade == null)
+				return;
+			String tier = upgrade.getTierName(purchase.getFromLevel(), island.get().getWorld());
+			report.addPurchase(island.get().getGameMode(), purchase.getUpgradeName(), tier == null ? "-" : tier,
+					purchase.getCost());
+		});
+	}
+
+	private Path write(UpgradesReport report, Format format) {
+		String name = "upgrades-" + LocalDateTime.now().format(FILE_DATE) + (format == Format.JSON ? ".json" : ".csv");
+		Path file = this.addon.getDataFolder().toPath().resolve(REPORTS_FOLDER).resolve(name);
+		try {
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, format == Format.JSON ? report.toJson() : report.toCsv(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return file;
+	}
+
+	private static final int PAGE_SIZE = 500;
+
+	private static final int PARALLEL_PAGES = 4;
+
+	private static final String REPORTS_FOLDER = "reports";
+
+	private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+	private final UpgradesAddon addon;
+
+	private final AtomicBoolean running;
+
+	private final Executor executor;
+
+}
@@ -0,0 +1,64 @@
+package world.bentobox.upgrades.scheduler;
+
+import java.util.concurrent.Executor;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import world.bentobox.bentobox.api.addons.Addon;
+import world.bentobox.bentobox.database.objects.Island;
+
+/**
+ * Scheduler of a server with a single main thread, it owns every island
+ */
+public class BukkitUpgradeScheduler implements UpgradeScheduler {
+
+	public BukkitUpgradeScheduler(Addon addon) {
+		this.addon = addon;
+		this.mainThread = task -> {
+			if (Bukkit.isPrimaryThread())
+				task.run();
+			else
+				Bukkit.getScheduler().runTask(this.addon.getPlugin(), task);
+		};
+		this.async = task -> Bukkit.getScheduler().runTaskAsynchronously(this.addon.getPlugin(), task);
+	}
+
+	@Override
+	public Executor global() {
+		return this.mainThread;
+	}
+
+	@Override
+	public Executor island(Island island) {
+		return this.mainThread;
+	}
+
+	@Override
+	public Executor player(Player player) {
+		return this.mainThread;
+	}
+
+	@Override
+	public Executor async() {
+		return this.async;
+	}
+
+	@Override
+	public Runnable runAsyncTimer(Runnable task, long periodTicks) {
+		return Bukkit.getScheduler().runTaskTimerAsynchronously(this.addon.getPlugin(), task, periodTicks,
+				periodTicks)::cancel;
+	}
+
+	@Override
+	public boolean isOwnedByCurrentThread(Island island) {
+		return Bukkit.isPrimaryThread();
+	}
+
+	private final Addon addon;
+
+	private final Executor mainThread;
+
+	private final Executor async;
+
+}
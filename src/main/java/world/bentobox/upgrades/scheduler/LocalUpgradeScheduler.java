@@ -0,0 +1,147 @@
+package world.bentobox.upgrades.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.entity.Player;
+
+import world.bentobox.bentobox.database.objects.Island;
+
+/**
+ * In process scheduler with one thread per region, to run the upgrades
+ * outside of a server (load test, tests) as on a region threaded server.
+ *
+ * Islands are spread over the regions by unique id, so an island is always
+ * owned by the same thread. Players are owned by the global thread.
+ */
+public class LocalUpgradeScheduler implements UpgradeScheduler {
+
+	/**
+	 * @param regions Number of region threads, at least 1
+	 */
+	public LocalUpgradeScheduler(int regions) {
+		this.globalThread = new ThreadExecutor("upgrades-global");
+		this.regionThreads = new ArrayList<>(regions);
+		for (int i = 0; i < Math.max(1, regions); i++)
+			this.regionThreads.add(new ThreadExecutor("upgrades-region-" + i));
+		this.asyncPool = Executors.newCachedThreadPool();
+		this.timer = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	@Override
+	public Executor global() {
+		return this.globalThread;
+	}
+
+	@Override
+	public Executor island(Island island) {
+		return this.region(island);
+	}
+
+	@Override
+	public Executor player(Player player) {
+		return this.globalThread;
+	}
+
+	@Override
+	public Executor async() {
+		return this.asyncPool;
+	}
+
+	@Override
+	public Runnable runAsyncTimer(Runnable task, long periodTicks) {
+		ScheduledFuture<?> timer = this.timer.scheduleAtFixedRate(() -> this.asyncPool.execute(task), periodTicks * 50,
+				periodTicks * 50, TimeUnit.MILLISECONDS);
+		return () -> timer.cancel(false);
+	}
+
+	@Override
+	public boolean isOwnedByCurrentThread(Island island) {
+		return this.region(island).isCurrentThread();
+	}
+
+	/**
+	 * @return Number of region threads
+	 */
+	public int getRegions() {
+		return this.regionThreads.size();
+	}
+
+	/**
+	 * @param island Island to locate
+	 * @return Index of the region thread owning the island
+	 */
+	public int getRegion(Island island) {
+		return Math.floorMod(island.getUniqueId().hashCode(), this.regionThreads.size());
+	}
+
+	/**
+	 * Stop every thread, queued tasks are run first
+	 *
+	 * @param timeout Maximum time to wait for each thread
+	 */
+	public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		this.timer.shutdownNow();
+		this.globalThread.shutdown(timeout, unit);
+		for (ThreadExecutor region : this.regionThreads)
+			region.shutdown(timeout, unit);
+		this.asyncPool.shutdown();
+		this.asyncPool.awaitTermination(timeout, unit);
+	}
+
+	private ThreadExecutor region(Island island) {
+		return this.regionThreads.get(this.getRegion(island));
+	}
+
+	/**
+	 * Single thread executor running tasks directly when already on its thread
+	 */
+	private static class ThreadExecutor implements Executor {
+
+		ThreadExecutor(String name) {
+			this.executor = Executors.newSingleThreadExecutor(task -> {
+				Thread thread = new Thread(task, name);
+				thread.setDaemon(true);
+				this.thread = thread;
+				return thread;
+			});
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			if (this.isCurrentThread())
+				task.run();
+			else
+				this.executor.execute(task);
+		}
+
+		boolean isCurrentThread() {
+			return Thread.currentThread() == this.thread;
+		}
+
+		void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+			this.executor.shutdown();
+			this.executor.awaitTermination(timeout, unit);
+		}
+
+		private final ExecutorService executor;
+
+		private volatile Thread thread;
+
+	}
+
+	private final ThreadExecutor globalThread;
+
+	private final List<ThreadExecutor> regionThreads;
+
+	private final ExecutorService asyncPool;
+
+	private final ScheduledExecutorService timer;
+
+}
@@ -0,0 +1,173 @@
+package world.bentobox.upgrades.scheduler;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import world.bentobox.bentobox.api.addons.Addon;
+import world.bentobox.bentobox.database.objects.Island;
+
+/**
+ * Scheduler of a region threaded server (Folia). Islands are owned by the
+ * thread of the region containing their center.
+ *
+ * The region API isn't part of the Spigot API the addon is built against, so
+ * it is called by reflection. Methods are looked up once on the public
+ * scheduler interfaces, the implementation classes aren't accessible.
+ */
+public class RegionUpgradeScheduler implements UpgradeScheduler {
+
+	public RegionUpgradeScheduler(Addon addon) {
+		this.addon = addon;
+		try {
+			this.regionScheduler = Bukkit.class.getMethod("getRegionScheduler").invoke(null);
+			this.globalScheduler = Bukkit.class.getMethod("getGlobalRegionScheduler").invoke(null);
+			this.asyncScheduler = Bukkit.class.getMethod("getAsyncScheduler").invoke(null);
+			this.regionExecute = Class.forName(SCHEDULER_PACKAGE + "RegionScheduler").getMethod("execute",
+					Plugin.class, Location.class, Runnable.class);
+			this.globalExecute = Class.forName(SCHEDULER_PACKAGE + "GlobalRegionScheduler").getMethod("execute",
+					Plugin.class, Runnable.class);
+			Class<?> asyncSchedulerClass = Class.forName(SCHEDULER_PACKAGE + "AsyncScheduler");
+			this.asyncRunNow = asyncSchedulerClass.getMethod("runNow", Plugin.class, Consumer.class);
+			this.asyncRunAtFixedRate = asyncSchedulerClass.getMethod("runAtFixedRate", Plugin.class, Consumer.class,
+					long.class, long.class, TimeUnit.class);
+			this.cancelTask = Class.forName(SCHEDULER_PACKAGE + "ScheduledTask").getMethod("cancel");
+			this.entityScheduler = Entity.class.getMethod("getScheduler");
+			this.entityExecute = Class.forName(SCHEDULER_PACKAGE + "EntityScheduler").getMethod("execute",
+					Plugin.class, Runnable.class, Runnable.class, long.class);
+			this.isOwnedByCurrentRegion = Bukkit.class.getMethod("isOwnedByCurrentRegion", Location.class);
+			this.isOwnedByCurrentEntity = Bukkit.class.getMethod("isOwnedByCurrentRegion", Entity.class);
+			this.isGlobalTickThread = Bukkit.class.getMethod("isGlobalTickThread");
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Region scheduler API not found", e);
+		}
+
+		this.global = task -> {
+			if ((boolean) this.call(this.isGlobalTickThread, null))
+				task.run();
+			else
+				this.call(this.globalExecute, this.globalScheduler, this.addon.getPlugin(), task);
+		};
+		this.async = task -> this.call(this.asyncRunNow, this.asyncScheduler, this.addon.getPlugin(),
+				(Consumer<Object>) scheduledTask -> task.run());
+	}
+
+	/**
+	 * @return If the server is region threaded
+	 */
+	public static boolean isSupported() {
+		try {
+			Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public Executor global() {
+		return this.global;
+	}
+
+	@Override
+	public Executor island(Island island) {
+		Location center = island.getCenter();
+		if (center == null)
+			return this.global;
+
+		return task -> {
+			if ((boolean) this.call(this.isOwnedByCurrentRegion, null, center))
+				task.run();
+			else
+				this.call(this.regionExecute, this.regionScheduler, this.addon.getPlugin(), center, task);
+		};
+	}
+
+	@Override
+	public Executor player(Player player) {
+		return task -> {
+			if ((boolean) this.call(this.isOwnedByCurrentEntity, null, player))
+				task.run();
+			else
+				// Dropped if the player left meanwhile, the entity scheduler delay is at least one tick
+				this.call(this.entityExecute, this.call(this.entityScheduler, player), this.addon.getPlugin(), task,
+						null, 1L);
+		};
+	}
+
+	@Override
+	public Executor async() {
+		return this.async;
+	}
+
+	@Override
+	public Runnable runAsyncTimer(Runnable task, long periodTicks) {
+		long period = periodTicks * 50;
+		Object timer = this.call(this.asyncRunAtFixedRate, this.asyncScheduler, this.addon.getPlugin(),
+				(Consumer<Object>) scheduledTask -> task.run(), period, period, TimeUnit.MILLISECONDS);
+		return () -> this.call(this.cancelTask, timer);
+	}
+
+	@Override
+	public boolean isOwnedByCurrentThread(Island island) {
+		Location center = island.getCenter();
+		if (center == null)
+			return (boolean) this.call(this.isGlobalTickThread, null);
+		return (boolean) this.call(this.isOwnedByCurrentRegion, null, center);
+	}
+
+	private Object call(Method method, Object target, Object... args) {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final String SCHEDULER_PACKAGE = "io.papermc.paper.threadedregions.scheduler.";
+
+	private final Addon addon;
+
+	private final Object regionScheduler;
+
+	private final Object globalScheduler;
+
+	private final Object asyncScheduler;
+
+	private final Method regionExecute;
+
+	private final Method globalExecute;
+
+	private final Method asyncRunNow;
+
+	private final Method asyncRunAtFixedRate;
+
+	private final Method cancelTask;
+
+	private final Method entityScheduler;
+
+	private final Method entityExecute;
+
+	private final Method isOwnedByCurrentRegion;
+
+	private final Method isOwnedByCurrentEntity;
+
+	private final Method isGlobalTickThread;
+
+	private final Executor global;
+
+	private final Executor async;
+
+}
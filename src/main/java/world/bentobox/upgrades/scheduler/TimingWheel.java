@@ -0,0 +1,105 @@
+package world.bentobox.upgrades.scheduler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: timers are put in the slot of their deadline tick,
+ * modulo the number of slots, and only the slots of the elapsed ticks are
+ * looked at when the wheel advances. Scheduling and expiring a timer cost
+ * O(1) whatever the number of timers, and a single task can drive the wheel.
+ *
+ * A timer further than one turn stays in its slot until the turn of its
+ * deadline. Timers are never early, they expire on the first advance after
+ * their deadline.
+ *
+ * @param <T> Value of the timers
+ */
+public class TimingWheel<T> {
+
+	/**
+	 * @param tickMillis Duration of a tick in milliseconds
+	 * @param slots      Number of slots, rounded up to a power of two
+	 * @param now        Current time in milliseconds
+	 */
+	public TimingWheel(long tickMillis, int slots, long now) {
+		this.tickMillis = Math.max(1, tickMillis);
+		int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+		this.mask = size - 1;
+		this.slots = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			this.slots.add(new ArrayList<>());
+		this.currentTick = now / this.tickMillis;
+	}
+
+	/**
+	 * Add a timer, a deadline already passed expires on the next advance
+	 *
+	 * @param deadline Expiry time in milliseconds
+	 * @param value    Value returned once expired
+	 */
+	public synchronized void schedule(long deadline, T value) {
+		long tick = Math.max(deadline / this.tickMillis, this.currentTick);
+		this.slots.get((int) (tick & this.mask)).add(new Timer<>(deadline, value));
+		this.size++;
+	}
+
+	/**
+	 * Advance the wheel up to now
+	 *
+	 * @param now Current time in milliseconds
+	 * @return Values of the expired timers
+	 */
+	public synchronized List<T> advance(long now) {
+		List<T> expired = new ArrayList<>();
+		long target = now / this.tickMillis;
+		// Past one turn, every slot is looked at once
+		long end = Math.min(target, this.currentTick + this.mask);
+		for (long tick = this.currentTick; tick <= end; tick++) {
+			Iterator<Timer<T>> timers = this.slots.get((int) (tick & this.mask)).iterator();
+			while (timers.hasNext()) {
+				Timer<T> timer = timers.next();
+				if (timer.deadline <= now) {
+					expired.add(timer.value);
+					timers.remove();
+				}
+			}
+		}
+		// The current tick may still have timers later in the tick
+		this.currentTick = Math.max(this.currentTick, target);
+		this.size -= expired.size();
+		return expired;
+	}
+
+	/**
+	 * @return Number of pending timers
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	private static class Timer<T> {
+
+		Timer(long deadline, T value) {
+			this.deadline = deadline;
+			this.value = value;
+		}
+
+		private final long deadline;
+
+		private final T value;
+
+	}
+
+	private final long tickMillis;
+
+	private final int mask;
+
+	private final List<List<Timer<T>>> slots;
+
+	private long currentTick;
+
+	private int size;
+
+}
@@ -0,0 +1,96 @@
+package world.bentobox.upgrades.scheduler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.bukkit.entity.Player;
+
+import world.bentobox.bentobox.api.addons.Addon;
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.bentobox.database.objects.Island;
+
+/**
+ * Where the upgrades work is run.
+ *
+ * Island scoped work (panel, purchase, bonus range, limits offsets, commands)
+ * is run on the thread owning the island. On a region threaded server it is
+ * the thread of the island region, so islands of different regions can be
+ * upgraded in parallel. Otherwise every island is owned by the main thread.
+ *
+ * Inventories and messages of a player are handled on the thread owning the
+ * player, which may not own the island the player is upgrading.
+ *
+ * Executors run the task directly when called from the owning thread.
+ */
+public interface UpgradeScheduler {
+
+	/**
+	 * @return Executor of the work that isn't bound to an island
+	 */
+	Executor global();
+
+	/**
+	 * @param island Island concerned by the work
+	 * @return Executor running tasks on the thread owning the island
+	 */
+	Executor island(Island island);
+
+	/**
+	 * @param player Player concerned by the work
+	 * @return Executor running tasks on the thread owning the player, for
+	 *         inventories and messages
+	 */
+	Executor player(Player player);
+
+	/**
+	 * @param user User concerned by the work
+	 * @return Executor running tasks on the thread owning the user, directly
+	 *         when the user isn't a player
+	 */
+	default Executor user(User user) {
+		return user.isPlayer() ? this.player(user.getPlayer()) : Runnable::run;
+	}
+
+	/**
+	 * @return Executor running tasks off the server threads, for IO
+	 */
+	Executor async();
+
+	/**
+	 * Run a task off the server threads every period
+	 *
+	 * @param task        Task to run
+	 * @param periodTicks Period in ticks, the first run is after one period
+	 * @return Task cancelling the timer
+	 */
+	Runnable runAsyncTimer(Runnable task, long periodTicks);
+
+	/**
+	 * @param island Island to check
+	 * @return If the current thread owns the island
+	 */
+	boolean isOwnedByCurrentThread(Island island);
+
+	/**
+	 * Run supplier on the thread owning the island
+	 *
+	 * @param island   Island concerned by the work
+	 * @param supplier Task to run
+	 * @return Future of the supplier result
+	 */
+	default <T> CompletableFuture<T> supply(Island island, Supplier<T> supplier) {
+		return CompletableFuture.supplyAsync(supplier, this.island(island));
+	}
+
+	/**
+	 * @param addon Addon the tasks are scheduled for
+	 * @return The region scheduler when the server is region threaded, the
+	 *         Bukkit one otherwise
+	 */
+	static UpgradeScheduler create(Addon addon) {
+		return RegionUpgradeScheduler.isSupported() ? new RegionUpgradeScheduler(addon)
+				: new BukkitUpgradeScheduler(addon);
+	}
+
+}
@@ -0,0 +1,276 @@
+package world.bentobox.upgrades.timed;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.bukkit.Material;
+import org.bukkit.entity.EntityType;
+
+import world.bentobox.bentobox.api.events.island.IslandEvent;
+import world.bentobox.bentobox.database.Database;
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.limits.objects.IslandBlockCount;
+import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.dataobjects.TimedBonus;
+import world.bentobox.upgrades.dataobjects.TimedUpgradesData;
+import world.bentobox.upgrades.metrics.MetricsRegistry;
+import world.bentobox.upgrades.metrics.events.LimitsOffsetEvent;
+import world.bentobox.upgrades.scheduler.TimingWheel;
+
+/**
+ * Bonuses given to islands for a limited time (rentals, events), on top of
+ * the upgrade levels.
+ *
+ * Bonuses are applied when granted and their expiry time is stored with
+ * them. Every pending expiry sits in a single timing wheel, advanced by one
+ * async task each second. The expired bonuses are grouped by island and
+ * reverted in one batch on the thread owning the island, then the island
+ * data is saved once.
+ */
+public class TimedUpgradeManager {
+
+	public TimedUpgradeManager(UpgradesAddon addon) {
+		this.addon = addon;
+		this.database = new Database<>(addon, TimedUpgradesData.class);
+		this.data = new ConcurrentHashMap<>();
+		this.wheel = new TimingWheel<>(TICK_MILLIS, SLOTS, System.currentTimeMillis());
+	}
+
+	/**
+	 * Load the stored bonuses and start expiring them. The bonuses that expired
+	 * while the server was stopped are reverted on the first tick. Bonuses
+	 * granted before the end of the load are kept with the stored ones.
+	 */
+	public void start() {
+		this.addon.getIoExecutor().submitBackground(TimedUpgradesData.class.getSimpleName(), this.database::loadObjects)
+		.whenComplete((stored, e) -> {
+			if (e != null) {
+				this.addon.logError("Couldn't load the timed upgrades: " + e.getMessage());
+				return;
+			}
+			stored.forEach(islandData -> {
+				List<TimedBonus> bonuses = islandData.getBonuses();
+				TimedUpgradesData merged = this.data.merge(islandData.getUniqueId(), islandData, (granted, loaded) -> {
+					bonuses.forEach(granted::addBonus);
+					return granted;
+				});
+				bonuses.forEach(bonus -> this.wheel.schedule(bonus.getExpiresAt(), bonus));
+				// The grant saved its data without the stored bonuses
+				if (merged != islandData)
+					this.saveOnIsland(merged);
+			});
+			this.addon.log("Loaded " + this.wheel.size() + " timed upgrades");
+		});
+		this.timer = this.addon.getScheduler().runAsyncTimer(this::expire, TICK_MILLIS / 50);
+	}
+
+	/**
+	 * Stop expiring the bonuses. They are still stored and expire after the
+	 * next start.
+	 */
+	public void stop() {
+		if (this.timer != null)
+			this.timer.run();
+	}
+
+	/**
+	 * Give a bonus to an island until it expires. It should be called on the
+	 * thread owning the island.
+	 *
+	 * @param island   Island getting the bonus
+	 * @param type     What the bonus increases
+	 * @param key      Material, entity type or entity group of a limits bonus,
+	 *                 ignored for range
+	 * @param amount   Range or limit added
+	 * @param duration Time before the bonus is reverted
+	 * @return The bonus, empty if it couldn't be applied
+	 */
+	public Optional<TimedBonus> grant(Island island, TimedBonus.Type type, String key, int amount, Duration duration) {
+		TimedBonus bonus = new TimedBonus(island.getUniqueId(), type, type == TimedBonus.Type.RANGE ? "" : key, amount,
+				System.currentTimeMillis() + duration.toMillis());
+		if (!this.apply(island, bonus, true))
+			return Optional.empty();
+
+		TimedUpgradesData islandData = this.data.computeIfAbsent(island.getUniqueId(), TimedUpgradesData::new);
+		islandData.addBonus(bonus);
+		this.save(islandData);
+		this.wheel.schedule(bonus.getExpiresAt(), bonus);
+		this.addon.getMetrics().increment(MetricsRegistry.TIMED_BONUS_GRANTED);
+		return Optional.of(bonus);
+	}
+
+	/**
+	 * @param islandId Unique id of the island
+	 * @return Active bonuses of the island
+	 */
+	public List<TimedBonus> getBonuses(String islandId) {
+		TimedUpgradesData islandData = this.data.get(islandId);
+		return islandData == null ? List.of() : islandData.getBonuses();
+	}
+
+	/**
+	 * @return Number of bonuses waiting for their expiry
+	 */
+	public int getPendingExpiries() {
+		return this.wheel.size();
+	}
+
+	private void expire() {
+		List<TimedBonus> expired = this.wheel.advance(System.currentTimeMillis());
+		if (expired.isEmpty())
+			return;
+
+		expired.stream().collect(Collectors.groupingBy(TimedBonus::getIslandId)).forEach((islandId, bonuses) -> {
+			Optional<Island> island = this.addon.getIslands().getIslandById(islandId);
+			if (island.isPresent()) {
+				this.addon.getScheduler().island(island.get()).execute(() -> this.revert(island.get(), bonuses));
+				return;
+			}
+			// Deleted island, nothing left to revert
+			TimedUpgradesData islandData = this.data.get(islandId);
+			if (islandData != null) {
+				bonuses.forEach(bonus -> islandData.removeBonus(bonus.getId()));
+				this.forgetIfEmpty(islandData);
+				this.save(islandData);
+			}
+		});
+	}
+
+	private void revert(Island island, List<TimedBonus> bonuses) {
+		TimedUpgradesData islandData = this.data.get(island.getUniqueId());
+		if (islandData == null)
+			return;
+
+		long retry = System.currentTimeMillis() + RETRY_MILLIS;
+		for (TimedBonus bonus : bonuses) {
+			if (!islandData.removeBonus(bonus.getId()))
+				continue;
+			if (this.apply(island, bonus, false)) {
+				this.addon.getMetrics().increment(MetricsRegistry.TIMED_BONUS_EXPIRED);
+			} else {
+				// Limits data of the island not loaded, try again later
+				islandData.addBonus(bonus);
+				this.wheel.schedule(retry, bonus);
+			}
+		}
+		this.forgetIfEmpty(islandData);
+		this.save(islandData);
+	}
+
+	// Granting again creates a new data, saved after this one is deleted
+	private void forgetIfEmpty(TimedUpgradesData islandData) {
+		if (islandData.isEmpty())
+			this.data.remove(islandData.getUniqueId(), islandData);
+	}
+
+	/**
+	 * Add or remove the bonus on the island
+	 *
+	 * @return If it was done
+	 */
+	private boolean apply(Island island, TimedBonus bonus, boolean add) {
+		if (bonus.getType() == TimedBonus.Type.RANGE) {
+			int oldRange = island.getProtectionRange();
+			String rangeId = this.addon.getDescription().getName() + "-timed-" + bonus.getId();
+			if (add) {
+				if (oldRange + bonus.getAmount() > island.getRange()) {
+					this.addon.logWarning("Timed range bonus over the max range of island " + island.getUniqueId());
+					return false;
+				}
+				island.addBonusRange(rangeId, bonus.getAmount(), "");
+			} else
+				island.clearBonusRange(rangeId);
+
+			IslandEvent.builder().island(island).location(island.getCenter()).reason(IslandEvent.Reason.RANGE_CHANGE)
+			.admin(true).protectionRange(island.getProtectionRange(), oldRange).build();
+			return true;
+		}
+
+		if (!this.addon.isLimitsProvided())
+			return false;
+		IslandBlockCount isb = this.addon.getLimitsAddon().getBlockLimitListener().getIsland(island);
+		if (isb == null)
+			return false;
+
+		int delta = add ? bonus.getAmount() : -bonus.getAmount();
+		LimitsOffsetEvent event = new LimitsOffsetEvent(island.getUniqueId(), "timed-" + bonus.getKey());
+		event.begin();
+		int oldOffset;
+		switch (bonus.getType()) {
+		case BLOCK_LIMITS:
+			Material material = Material.getMaterial(bonus.getKey());
+			if (material == null)
+				return false;
+			oldOffset = isb.getBlockLimitsOffset().getOrDefault(material, 0);
+			isb.setBlockLimitsOffset(material, oldOffset + delta);
+			break;
+		case ENTITY_LIMITS:
+			EntityType entity = Arrays.stream(EntityType.values()).filter(v -> v.name().equalsIgnoreCase(bonus.getKey()))
+			.findFirst().orElse(null);
+			if (entity == null)
+				return false;
+			oldOffset = isb.getEntityLimitsOffset().getOrDefault(entity, 0);
+			isb.setEntityLimitsOffset(entity, oldOffset + delta);
+			break;
+		default:
+			oldOffset = isb.getEntityGroupLimitsOffset().getOrDefault(bonus.getKey(), 0);
+			isb.setEntityGroupLimitsOffset(bonus.getKey(), oldOffset + delta);
+			break;
+		}
+		event.setOffsets(oldOffset, oldOffset + delta);
+		event.commit();
+		return true;
+	}
+
+	private void saveOnIsland(TimedUpgradesData islandData) {
+		Optional<Island> island = this.addon.getIslands().getIslandById(islandData.getUniqueId());
+		if (island.isPresent())
+			this.addon.getScheduler().island(island.get()).execute(() -> this.save(islandData));
+		else
+			this.save(islandData);
+	}
+
+	/**
+	 * Save a copy of the bonuses, or delete the stored ones if there are none
+	 * left. It should be called on the thread owning the island, so the saves
+	 * are queued in the order of the changes.
+	 */
+	private void save(TimedUpgradesData islandData) {
+		String islandId = islandData.getUniqueId();
+		TimedUpgradesData copy = islandData.copy();
+		this.addon.getIoExecutor().submit(islandId, () -> {
+			if (copy.isEmpty()) {
+				this.database.deleteID(islandId);
+				return true;
+			}
+			return this.database.saveObjectAsync(copy).join();
+		}).whenComplete((saved, e) -> {
+			if (e != null || !Boolean.TRUE.equals(saved))
+				this.addon.logError("Couldn't save the timed upgrades of island " + islandId);
+		});
+	}
+
+	// One second, the timer period is in ticks of 50 ms
+	private static final long TICK_MILLIS = 1000;
+
+	// One hour per turn, longer bonuses wait in their slot for their turn
+	private static final int SLOTS = 4096;
+
+	private static final long RETRY_MILLIS = 60000;
+
+	private final UpgradesAddon addon;
+
+	private final Database<TimedUpgradesData> database;
+
+	private final Map<String, TimedUpgradesData> data;
+
+	private final TimingWheel<TimedBonus> wheel;
+
+	private Runnable timer;
+
+}
@@ -2,6 +2,7 @@ package world.bentobox.upgrades.ui;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import world.bentobox.bentobox.api.panels.builders.PanelBuilder;
 import world.bentobox.bentobox.api.panels.builders.PanelItemBuilder;
@@ -9,6 +10,10 @@ import world.bentobox.bentobox.api.user.User;
 import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.upgrades.UpgradesAddon;
 import world.bentobox.upgrades.api.Upgrade;
+import world.bentobox.upgrades.metrics.MetricsRegistry;
+import world.bentobox.upgrades.metrics.OperationTrace;
+import world.bentobox.upgrades.metrics.Phase;
+import world.bentobox.upgrades.metrics.events.PanelRenderEvent;
 
 public class Panel {
 
@@ -19,15 +24,40 @@ public class Panel {
 	}
 
 	public void showPanel(User user) {
+		PanelRenderEvent event = new PanelRenderEvent(this.island.getUniqueId());
+		event.begin();
+		OperationTrace trace = OperationTrace.begin();
+		long start = this.addon.getMetrics().start();
+		List<Upgrade> upgrades = this.addon.getUpgradeRegistry().getCatalog(this.island.getGameMode());
+
+		// The data is loaded off the server threads if it isn't cached yet
+		CompletableFuture<Void> updates = this.addon.preloadUpgradesLevels(this.island.getUniqueId())
+				.thenComposeAsync(data -> trace.call(() -> CompletableFuture.allOf(upgrades.stream()
+						.map(upgrade -> upgrade.updateUpgradeValueAsync(user, this.island).exceptionally(e -> {
+							this.addon.logError("Couldn't update upgrade " + upgrade.getName() + ": " + e.getMessage());
+							return null;
+						})).toArray(CompletableFuture[]::new))), this.addon.getScheduler().island(this.island));
+
+		// Built-in upgrades complete right away, so the panel is usually built in this call
+		updates.thenRunAsync(() -> {
+			if (user.isOnline())
+				trace.run(() -> this.buildPanel(user, upgrades, event));
+			this.addon.getMetrics().record(MetricsRegistry.PANEL_SHOW, start);
+			trace.end();
+			event.commit(trace);
+			this.addon.getSlowOperationWatchdog().check("panel", this.island.getUniqueId(), trace);
+		}, this.addon.getScheduler().island(this.island));
+	}
+
+	private void buildPanel(User user, List<Upgrade> upgrades, PanelRenderEvent event) {
+		int upgradeCount = 0;
 		int islandLevel = this.addon.getUpgradesManager().getIslandLevel(this.island);
 
 		PanelBuilder pb = new PanelBuilder().name(user.getTranslation("upgrades.ui.upgradepanel.title"));
 
-		this.addon.getAvailableUpgrades().forEach(upgrade -> {
-			upgrade.updateUpgradeValue(user, this.island);
-
+		for (Upgrade upgrade : upgrades) {
 			if (!upgrade.isShowed(user, this.island))
-				return;
+				continue;
 
 			String ownDescription = upgrade.getOwnDescription(user);
 			List<String> fullDescription = new ArrayList<>();
@@ -39,9 +69,11 @@ public class Panel {
 
 			pb.item(new PanelItemBuilder().name(upgrade.getDisplayName()).icon(upgrade.getIcon())
 					.description(fullDescription).clickHandler(new PanelClick(upgrade, this.island)).build());
-		});
+			upgradeCount++;
+		}
 
 		pb.user(user).build();
+		event.setUpgradeCount(upgradeCount);
 	}
 
 	private List<String> getDescription(User user, Upgrade upgrade, int islandLevel) {
@@ -57,7 +89,9 @@ public class Panel {
 			}
 
 			if (this.addon.isVaultProvided()) {
+				long start = OperationTrace.start();
 				boolean hasMoney = this.addon.getVaultHook().has(user, upgrade.getUpgradeValues(user).getMoneyCost());
+				OperationTrace.end(Phase.ECONOMY, start);
 				descrip.add((hasMoney ? "§a" : "§c") + user.getTranslation("upgrades.ui.upgradepanel.moneycost",
 						"[cost]", Integer.toString(upgrade.getUpgradeValues(user).getMoneyCost())));
 			}
@@ -1,12 +1,18 @@
 package world.bentobox.upgrades.ui;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.bukkit.event.inventory.ClickType;
 
 import world.bentobox.bentobox.api.panels.Panel;
 import world.bentobox.bentobox.api.panels.PanelItem.ClickHandler;
 import world.bentobox.bentobox.api.user.User;
 import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.upgrades.UpgradesAddon;
 import world.bentobox.upgrades.api.Upgrade;
+import world.bentobox.upgrades.metrics.MetricsRegistry;
+import world.bentobox.upgrades.metrics.OperationTrace;
+import world.bentobox.upgrades.metrics.events.PurchaseEvent;
 
 public class PanelClick implements ClickHandler {
 
@@ -20,12 +26,49 @@ public class PanelClick implements ClickHandler {
 		if (this.upgrade == null || this.upgrade.getUpgradeValues(user) == null)
 			return true;
 		
-		if (!this.upgrade.canUpgrade(user, this.island)) {
+		UpgradesAddon addon = this.upgrade.getUpgradesAddon();
+		String islandId = this.island.getUniqueId();
+		// Held until the async purchase completes
+		if (!addon.beginPurchase(islandId)) {
+			user.sendMessage("upgrades.error.purchaseinprogress");
 			return true;
 		}
 		
-		user.closeInventory();
-		this.upgrade.doUpgrade(user, this.island);
+		PurchaseEvent event = new PurchaseEvent(islandId, this.upgrade.getName());
+		event.begin();
+		// Only attached to a thread while a part of the purchase runs on it
+		OperationTrace trace = OperationTrace.begin();
+		MetricsRegistry metrics = addon.getMetrics();
+		
+		// Null when the user can't upgrade
+		trace.call(() -> this.upgrade.canUpgradeAsync(user, this.island)).thenComposeAsync(can -> trace.call(() -> {
+			if (!can) {
+				trace.end();
+				return CompletableFuture.completedFuture((Boolean) null);
+			}
+			
+			addon.getScheduler().user(user).execute(user::closeInventory);
+			long start = metrics.start();
+			CompletableFuture<Boolean> upgrade = this.upgrade.doUpgradeAsync(user, this.island);
+			// The purchase ran on this thread, the journal sync left is timed by its own metric
+			metrics.record(MetricsRegistry.UPGRADE_PURCHASE, start);
+			trace.end();
+			return upgrade.thenApply(upgraded -> {
+				metrics.increment(upgraded ? MetricsRegistry.UPGRADE_PURCHASE_SUCCESS : MetricsRegistry.UPGRADE_PURCHASE_FAILURE);
+				return upgraded;
+			});
+		}), addon.getScheduler().island(this.island)).whenCompleteAsync((upgraded, e) -> {
+			addon.endPurchase(islandId);
+			if (e != null) {
+				metrics.increment(MetricsRegistry.UPGRADE_PURCHASE_FAILURE);
+				addon.logError("Upgrade " + this.upgrade.getName() + " failed for " + user.getName() + ": " + e.getMessage());
+			}
+			// Already ended unless a step threw
+			trace.end();
+			event.setSuccess(Boolean.TRUE.equals(upgraded));
+			event.commit(trace);
+			addon.getSlowOperationWatchdog().check("purchase", islandId, trace);
+		}, addon.getScheduler().island(this.island));
 		return true;
 	}
 	
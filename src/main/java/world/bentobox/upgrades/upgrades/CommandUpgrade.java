@@ -2,17 +2,21 @@ package world.bentobox.upgrades.upgrades;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
-import org.apache.commons.lang.math.NumberUtils;
 import org.bukkit.Material;
-import org.bukkit.entity.Player;
-import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.bukkit.World;
 
 import world.bentobox.bentobox.api.user.User;
 import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.api.PurchaseTransaction;
 import world.bentobox.upgrades.api.Upgrade;
+import world.bentobox.upgrades.config.Settings;
 import world.bentobox.upgrades.dataobjects.UpgradesData;
+import world.bentobox.upgrades.metrics.MetricsRegistry;
+import world.bentobox.upgrades.metrics.OperationTrace;
+import world.bentobox.upgrades.metrics.Phase;
 
 public class CommandUpgrade extends Upgrade {
 	
@@ -24,30 +28,68 @@ public class CommandUpgrade extends Upgrade {
 	@Override
 	public void updateUpgradeValue(User user, Island island) {
 		UpgradesAddon upgradesAddon = this.getUpgradesAddon();
-		UpgradesData islandData = upgradesAddon.getUpgradesLevels(island.getUniqueId());
-		int upgradeLevel = islandData.getUpgradeLevel(this.getName());
-		int numberPeople = island.getMemberSet().size();
-		int islandLevel = upgradesAddon.getUpgradesManager().getIslandLevel(island);
-		
-		Map<String, Integer> upgradeInfos = upgradesAddon.getUpgradesManager().getCommandUpgradeInfos(this.cmdId, upgradeLevel, islandLevel, numberPeople, island.getWorld());
-		UpgradeValues upgrade;
+		int upgradeLevel = this.getUpgradeLevel(island);
+		UpgradeValues upgrade = this.getNextUpgradeValues(island);
 
-		if (upgradeInfos == null) {
-			upgrade = null;
-		} else {
+		if (upgrade != null) {
 			String description = user.getTranslation("upgrades.ui.upgradepanel.tiernameandlevel",
-					"[name]",  upgradesAddon.getUpgradesManager().getCommandUpgradeTierName(this.cmdId, upgradeLevel, island.getWorld()),
+					"[name]", this.getTierName(island),
 					"[current]", Integer.toString(upgradeLevel),
 					"[max]", Integer.toString(upgradesAddon.getUpgradesManager().getCommandUpgradeMax(this.cmdId, island.getWorld())));
 			
 			this.setOwnDescription(user, description);
-		
-			upgrade = new UpgradeValues(upgradeInfos.get("islandMinLevel"), upgradeInfos.get("vaultCost"), upgradeInfos.get("upgrade"));
 		}
 		
 		this.setUpgradeValues(user, upgrade);
 	}
 	
+	@Override
+	public boolean isAvailableFor(String gameMode) {
+		Settings settings = this.getUpgradesAddon().getSettings();
+		return settings.getDefaultCommandUpgradeTierMap().containsKey(this.cmdId)
+				|| settings.getAddonCommandUpgradeTierMap(gameMode).containsKey(this.cmdId);
+	}
+	
+	@Override
+	public boolean isUnchanged(Settings previous) {
+		Settings settings = this.getUpgradesAddon().getSettings();
+		return settings.getCommandIcon(this.cmdId) == previous.getCommandIcon(this.cmdId)
+				&& Objects.equals(settings.getCommandName(this.cmdId), previous.getCommandName(this.cmdId))
+				&& settings.hasSameTiers(previous, (config, gameMode) -> gameMode == null
+						? config.getDefaultCommandUpgradeTierMap().get(this.cmdId)
+						: config.getAddonCommandUpgradeTierMap(gameMode).get(this.cmdId));
+	}
+
+	@Override
+	public UpgradeValues getNextUpgradeValues(Island island) {
+		UpgradesAddon upgradesAddon = this.getUpgradesAddon();
+		int upgradeLevel = this.getUpgradeLevel(island);
+		int numberPeople = island.getMemberSet().size();
+		int islandLevel = upgradesAddon.getUpgradesManager().getIslandLevel(island);
+		
+		Map<String, Integer> upgradeInfos = upgradesAddon.getUpgradesManager().getCommandUpgradeInfos(this.cmdId, upgradeLevel, islandLevel, numberPeople, island.getWorld());
+		
+		if (upgradeInfos == null)
+			return null;
+		
+		return new UpgradeValues(upgradeInfos.get("islandMinLevel"), upgradeInfos.get("vaultCost"), upgradeInfos.get("upgrade"));
+	}
+	
+	@Override
+	public String getTierName(Island island) {
+		return this.getUpgradesAddon().getUpgradesManager().getCommandUpgradeTierName(this.cmdId, this.getUpgradeLevel(island), island.getWorld());
+	}
+
+	@Override
+	public String getTierName(int level, World world) {
+		return this.getUpgradesAddon().getUpgradesManager().getCommandUpgradeTierName(this.cmdId, level, world);
+	}
+
+	@Override
+	public int getMaxLevel(World world) {
+		return this.getUpgradesAddon().getUpgradesManager().getCommandUpgradeMax(this.cmdId, world);
+	}
+	
 	@Override
 	public boolean isShowed(User user, Island island) {
 		UpgradesAddon upgradeAddon = this.getUpgradesAddon();
@@ -58,65 +100,34 @@ public class CommandUpgrade extends Upgrade {
 		if (permissionLevel == 0)
 			return true;
 		
-		Player player = user.getPlayer();
-		String gamemode = island.getGameMode();
-		String permissionStart = gamemode + ".upgrades." + this.getName() + ".";
-		permissionStart = permissionStart.toLowerCase();
-		
-		upgradeAddon.log("permission: " + permissionStart);
-		for (PermissionAttachmentInfo perms : player.getEffectivePermissions()) {
-			
-			// If permission is the one we search 
-			if (!perms.getValue() || !perms.getPermission().startsWith(permissionStart))
-				continue;
-			
-			if (perms.getPermission().contains(permissionStart + "*")) {
-				this.logError(player.getName(), perms.getPermission(), "Wildcards are not allowed.");
-				return false;
-			}
-			
-			String[] split = perms.getPermission().split("\\.");
-			if (split.length != 4) {
-				logError(player.getName(), perms.getPermission(), "format must be '" + permissionStart + "LEVEL'");
-				return false;
-			}
-			
-			if (!NumberUtils.isDigits(split[3])) {
-				logError(player.getName(), perms.getPermission(), "The last part must be a number");
-				return false;
-			}
-			
-			if (permissionLevel <= Integer.parseInt(split[3]))
-				return true;
-		}
-		
-		return false;
+		return this.hasPermissionLevel(user, island, permissionLevel);
 	}
-	
-	private void logError(String name, String perm, String error) {
-        this.getUpgradesAddon().logError("Player " + name + " has permission: '" + perm + "' but " + error + " Ignoring...");
-    }
-	
+
 	@Override
-	public boolean doUpgrade(User user, Island island) {
+	protected void addPurchaseSteps(PurchaseTransaction transaction, User user, Island island,
+			UpgradeValues upgradeValues) {
 		UpgradesAddon upgradeAddon = this.getUpgradesAddon();
 		UpgradesData islandData = upgradeAddon.getUpgradesLevels(island.getUniqueId());
+		// Level before the level step of the purchase
 		int upgradeLevel = islandData.getUpgradeLevel(this.getName());
-		
-		if (!super.doUpgrade(user, island))
-			return false;
-		
-		List<String> commands = upgradeAddon.getUpgradesManager().getCommandList(this.cmdId, upgradeLevel, island, user.getName());
-		Boolean isConsole = upgradeAddon.getUpgradesManager().isCommantConsole(this.cmdId, upgradeLevel, island.getWorld());
-		
-		commands.forEach(cmd -> {
-			if (isConsole) {
-				upgradeAddon.getServer().dispatchCommand(upgradeAddon.getServer().getConsoleSender(), cmd);
-			} else {
-				upgradeAddon.getServer().dispatchCommand(user.getSender(), cmd);
-			}
+
+		// Commands can't be undone, so they are the last step
+		transaction.step(() -> {
+			List<String> commands = upgradeAddon.getUpgradesManager().getCommandList(this.cmdId, upgradeLevel, island, user.getName());
+			Boolean isConsole = upgradeAddon.getUpgradesManager().isCommantConsole(this.cmdId, upgradeLevel, island.getWorld());
+
+			long start = upgradeAddon.getMetrics().start();
+			commands.forEach(cmd -> {
+				if (isConsole) {
+					upgradeAddon.getServer().dispatchCommand(upgradeAddon.getServer().getConsoleSender(), cmd);
+				} else {
+					upgradeAddon.getServer().dispatchCommand(user.getSender(), cmd);
+				}
+			});
+			upgradeAddon.getMetrics().record(MetricsRegistry.COMMAND_DISPATCH, start);
+			OperationTrace.end(Phase.COMMAND_DISPATCH, start);
+			return true;
 		});
-		return true;
 	}
 	
 	private String cmdId;
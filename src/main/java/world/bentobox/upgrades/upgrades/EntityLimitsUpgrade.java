@@ -2,18 +2,20 @@ package world.bentobox.upgrades.upgrades;
 
 import java.util.Map;
 
-import org.apache.commons.lang.math.NumberUtils;
+import org.bukkit.World;
 import org.bukkit.entity.EntityType;
-import org.bukkit.entity.Player;
-import org.bukkit.permissions.PermissionAttachmentInfo;
 
 import world.bentobox.bentobox.api.user.User;
 import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.limits.listeners.BlockLimitsListener;
 import world.bentobox.limits.objects.IslandBlockCount;
 import world.bentobox.upgrades.UpgradesAddon;
+import world.bentobox.upgrades.api.PurchaseStep;
+import world.bentobox.upgrades.api.PurchaseTransaction;
 import world.bentobox.upgrades.api.Upgrade;
+import world.bentobox.upgrades.config.Settings;
 import world.bentobox.upgrades.dataobjects.UpgradesData;
+import world.bentobox.upgrades.metrics.events.LimitsOffsetEvent;
 
 public class EntityLimitsUpgrade extends Upgrade {
 
@@ -26,33 +28,18 @@ public class EntityLimitsUpgrade extends Upgrade {
     @Override
     public void updateUpgradeValue(User user, Island island) {
         UpgradesAddon upgradeAddon = this.getUpgradesAddon();
-        UpgradesData islandData = upgradeAddon.getUpgradesLevels(island.getUniqueId());
-        int upgradeLevel = islandData.getUpgradeLevel(this.getName());
-        int numberPeople = island.getMemberSet().size();
-        int islandLevel;
+        int upgradeLevel = this.getUpgradeLevel(island);
+        UpgradeValues upgrade = this.getNextUpgradeValues(island);
 
-        if (upgradeAddon.isLevelProvided())
-            islandLevel = upgradeAddon.getUpgradesManager().getIslandLevel(island);
-        else
-            islandLevel = 0;
-
-        Map<String, Integer> upgradeInfos = upgradeAddon.getUpgradesManager().getEntityLimitsUpgradeInfos(this.entity,
-                upgradeLevel, islandLevel, numberPeople, island.getWorld());
-        UpgradeValues upgrade;
-
-        if (upgradeInfos == null) {
-            upgrade = null;
-        } else {
+        if (upgrade != null) {
             // Get new description
             String description = user.getTranslation("upgrades.ui.upgradepanel.tiernameandlevel",
-                    "[name]", upgradeAddon.getUpgradesManager().getEntityLimitsUpgradeTierName(this.entity, upgradeLevel, island.getWorld()),
+                    "[name]", this.getTierName(island),
                     "[current]", Integer.toString(upgradeLevel),
                     "[max]", Integer.toString(upgradeAddon.getUpgradesManager().getEntityLimitsUpgradeMax(this.entity, island.getWorld())));
 
             // Set new description
             this.setOwnDescription(user, description);
-
-            upgrade = new UpgradeValues(upgradeInfos.get("islandMinLevel"), upgradeInfos.get("vaultCost"), upgradeInfos.get("upgrade"));
         }
 
         this.setUpgradeValues(user, upgrade);
@@ -70,6 +57,55 @@ public class EntityLimitsUpgrade extends Upgrade {
         this.setDisplayName(newDisplayName);
     }
 
+    @Override
+    public boolean isAvailableFor(String gameMode) {
+        Settings settings = this.getUpgradesAddon().getSettings();
+        return settings.getDefaultEntityLimitsUpgradeTierMap().containsKey(this.entity)
+                || settings.getAddonEntityLimitsUpgradeTierMap(gameMode).containsKey(this.entity);
+    }
+
+    @Override
+    public boolean isUnchanged(Settings previous) {
+        Settings settings = this.getUpgradesAddon().getSettings();
+        return settings.getEntityIcon(this.entity) == previous.getEntityIcon(this.entity)
+                && settings.hasSameTiers(previous, (config, gameMode) -> gameMode == null
+                        ? config.getDefaultEntityLimitsUpgradeTierMap().get(this.entity)
+                        : config.getAddonEntityLimitsUpgradeTierMap(gameMode).get(this.entity));
+    }
+
+    @Override
+    public UpgradeValues getNextUpgradeValues(Island island) {
+        UpgradesAddon upgradeAddon = this.getUpgradesAddon();
+        int upgradeLevel = this.getUpgradeLevel(island);
+        int numberPeople = island.getMemberSet().size();
+        int islandLevel = upgradeAddon.getUpgradesManager().getIslandLevel(island);
+
+        Map<String, Integer> upgradeInfos = upgradeAddon.getUpgradesManager().getEntityLimitsUpgradeInfos(this.entity,
+                upgradeLevel, islandLevel, numberPeople, island.getWorld());
+
+        if (upgradeInfos == null)
+            return null;
+
+        return new UpgradeValues(upgradeInfos.get("islandMinLevel"), upgradeInfos.get("vaultCost"),
+                upgradeInfos.get("upgrade"));
+    }
+
+    @Override
+    public String getTierName(Island island) {
+        return this.getUpgradesAddon().getUpgradesManager().getEntityLimitsUpgradeTierName(this.entity, this.getUpgradeLevel(island),
+                island.getWorld());
+    }
+
+    @Override
+    public String getTierName(int level, World world) {
+        return this.getUpgradesAddon().getUpgradesManager().getEntityLimitsUpgradeTierName(this.entity, level, world);
+    }
+
+    @Override
+    public int getMaxLevel(World world) {
+        return this.getUpgradesAddon().getUpgradesManager().getEntityLimitsUpgradeMax(this.entity, world);
+    }
+
     @Override
     public boolean isShowed(User user, Island island) {
         // Get the addon
@@ -86,66 +122,50 @@ public class EntityLimitsUpgrade extends Upgrade {
         if (permissionLevel == 0)
             return true;
 
-        Player player = user.getPlayer();
-        String gamemode = island.getGameMode();
-        String permissionStart = gamemode + ".upgrades." + this.getName() + ".";
-        permissionStart = permissionStart.toLowerCase();
+        return this.hasPermissionLevel(user, island, permissionLevel);
+    }
 
-        // For each permission of the player
-        for (PermissionAttachmentInfo perms : player.getEffectivePermissions()) {
+    @Override
+    protected void addPurchaseSteps(PurchaseTransaction transaction, User user, Island island,
+            UpgradeValues upgradeValues) {
+        UpgradesAddon islandAddon = this.getUpgradesAddon();
 
-            // If permission is the one we search
-            if (!perms.getValue() || !perms.getPermission().startsWith(permissionStart))
-                continue;
+        transaction.step(new PurchaseStep() {
 
-            if (perms.getPermission().contains(permissionStart + "*")) {
-                this.logError(player.getName(), perms.getPermission(), "Wildcards are not allowed.");
-                return false;
-            }
+            @Override
+            public boolean prepare() {
+                if (!islandAddon.isLimitsProvided())
+                    return false;
 
-            String[] split = perms.getPermission().split("\\.");
-            if (split.length != 4) {
-                logError(player.getName(), perms.getPermission(), "format must be '" + permissionStart + "LEVEL'");
-                return false;
+                BlockLimitsListener bLListener = islandAddon.getLimitsAddon().getBlockLimitListener();
+                this.isb = bLListener.getIsland(island);
+                return this.isb != null;
             }
 
-            if (!NumberUtils.isDigits(split[3])) {
-                logError(player.getName(), perms.getPermission(), "The last part must be a number");
-                return false;
-            }
+            @Override
+            public boolean commit() {
+                LimitsOffsetEvent event = new LimitsOffsetEvent(island.getUniqueId(), getName());
+                event.begin();
+                this.oldCount = this.isb.getEntityLimitsOffset().getOrDefault(EntityLimitsUpgrade.this.entity, 0);
+                int newCount = this.oldCount + upgradeValues.getUpgradeValue();
 
-            if (permissionLevel <= Integer.parseInt(split[3]))
+                this.isb.setEntityLimitsOffset(EntityLimitsUpgrade.this.entity, newCount);
+                event.setOffsets(this.oldCount, newCount);
+                event.commit();
                 return true;
-        }
-
-        return false;
-    }
-
-    private void logError(String name, String perm, String error) {
-        this.getUpgradesAddon()
-        .logError("Player " + name + " has permission: '" + perm + "' but " + error + " Ignoring...");
-    }
-
-    @Override
-    public boolean doUpgrade(User user, Island island) {
-        UpgradesAddon islandAddon = this.getUpgradesAddon();
-
-        if (!islandAddon.isLimitsProvided())
-            return false;
-
-        BlockLimitsListener bLListener = islandAddon.getLimitsAddon().getBlockLimitListener();
-        IslandBlockCount isb = bLListener.getIsland(island);
-        if (!super.doUpgrade(user, island))
-            return false;
-        int oldCount = isb.getEntityLimitsOffset().getOrDefault(entity, 0);
-        int newCount = oldCount + this.getUpgradeValues(user).getUpgradeValue();
+            }
 
-        isb.setEntityLimitsOffset(this.entity, newCount);
+            @Override
+            public void compensate() {
+                this.isb.setEntityLimitsOffset(EntityLimitsUpgrade.this.entity, this.oldCount);
+            }
 
-        user.sendMessage("upgrades.ui.upgradepanel.limitsupgradedone", "[block]", this.entity.toString(), "[level]",
-                Integer.toString(this.getUpgradeValues(user).getUpgradeValue()));
+            private IslandBlockCount isb;
+            private int oldCount;
+        });
 
-        return true;
+        transaction.onSuccess(() -> sendMessage(user, "upgrades.ui.upgradepanel.limitsupgradedone", "[block]",
+                EntityLimitsUpgrade.this.entity.toString(), "[level]", Integer.toString(upgradeValues.getUpgradeValue())));
     }
 
     private EntityType entity;
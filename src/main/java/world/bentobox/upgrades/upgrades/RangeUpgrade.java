@@ -2,17 +2,18 @@ package world.bentobox.upgrades.upgrades;
 
 import java.util.Map;
 
-import org.apache.commons.lang.math.NumberUtils;
 import org.bukkit.Material;
-import org.bukkit.entity.Player;
-import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.bukkit.World;
 
 import world.bentobox.bentobox.api.events.island.IslandEvent;
 import world.bentobox.bentobox.api.user.User;
 import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.upgrades.UpgradesAddon;
 import world.bentobox.upgrades.dataobjects.UpgradesData;
+import world.bentobox.upgrades.api.PurchaseStep;
+import world.bentobox.upgrades.api.PurchaseTransaction;
 import world.bentobox.upgrades.api.Upgrade;
+import world.bentobox.upgrades.config.Settings;
 
 /**
  * Upgrade Object for range upgrade
@@ -33,34 +34,21 @@ public class RangeUpgrade extends Upgrade {
     public void updateUpgradeValue(User user, Island island) {
         // Get the addon
         UpgradesAddon islandAddon = this.getUpgradesAddon();
-        // Get the data from IslandUpgrade
-        UpgradesData islandData = islandAddon.getUpgradesLevels(island.getUniqueId());
         // The level of this upgrade
-        int upgradeLevel = islandData.getUpgradeLevel(getName());
-        // The number of members on the island
-        int numberPeople = island.getMemberSet().size();
-        // The level of the island from Level Addon
-        int islandLevel = islandAddon.getUpgradesManager().getIslandLevel(island);
-
-        // Get upgrades infos of range upgrade from settings
-        Map<String, Integer> upgradeInfos = islandAddon.getUpgradesManager().getRangeUpgradeInfos(upgradeLevel,
-                islandLevel, numberPeople, island.getWorld());
-        UpgradeValues upgrade;
+        int upgradeLevel = this.getUpgradeLevel(island);
+        // Get the values of the next upgrade from settings
+        UpgradeValues upgrade = this.getNextUpgradeValues(island);
 
         // If null -> no next upgrades
-        if (upgradeInfos == null) {
-            upgrade = null;
-        } else {
+        if (upgrade != null) {
             // Get new description
             String description = user.getTranslation("upgrades.ui.upgradepanel.tiernameandlevel",
-                    "[name]",  islandAddon.getUpgradesManager().getRangeUpgradeTierName(upgradeLevel, island.getWorld()),
+                    "[name]", this.getTierName(island),
                     "[current]", Integer.toString(upgradeLevel),
                     "[max]", Integer.toString(islandAddon.getUpgradesManager().getRangeUpgradeMax(island.getWorld())));
 
             // Set new description
             this.setOwnDescription(user, description);
-
-            upgrade = new UpgradeValues(upgradeInfos.get("islandMinLevel"), upgradeInfos.get("vaultCost"), upgradeInfos.get("upgrade"));
         }
         // Update the upgrade values
         this.setUpgradeValues(user, upgrade);
@@ -80,6 +68,58 @@ public class RangeUpgrade extends Upgrade {
         this.setDisplayName(newDisplayName);
     }
 
+    @Override
+    public boolean isAvailableFor(String gameMode) {
+        Settings settings = this.getUpgradesAddon().getSettings();
+        return !settings.getDefaultRangeUpgradeTierMap().isEmpty()
+                || !settings.getAddonRangeUpgradeTierMap(gameMode).isEmpty();
+    }
+
+    @Override
+    public boolean isUnchanged(Settings previous) {
+        return this.getUpgradesAddon().getSettings().hasSameTiers(previous, (settings, gameMode) -> gameMode == null
+                ? settings.getDefaultRangeUpgradeTierMap()
+                : settings.getAddonRangeUpgradeTierMap(gameMode));
+    }
+
+    @Override
+    public UpgradeValues getNextUpgradeValues(Island island) {
+        // Get the addon
+        UpgradesAddon islandAddon = this.getUpgradesAddon();
+        // The level of this upgrade
+        int upgradeLevel = this.getUpgradeLevel(island);
+        // The number of members on the island
+        int numberPeople = island.getMemberSet().size();
+        // The level of the island from Level Addon
+        int islandLevel = islandAddon.getUpgradesManager().getIslandLevel(island);
+
+        // Get upgrades infos of range upgrade from settings
+        Map<String, Integer> upgradeInfos = islandAddon.getUpgradesManager().getRangeUpgradeInfos(upgradeLevel,
+                islandLevel, numberPeople, island.getWorld());
+
+        // If null -> no next upgrades
+        if (upgradeInfos == null)
+            return null;
+
+        return new UpgradeValues(upgradeInfos.get("islandMinLevel"), upgradeInfos.get("vaultCost"), upgradeInfos.get("upgrade"));
+    }
+
+    @Override
+    public String getTierName(Island island) {
+        return this.getUpgradesAddon().getUpgradesManager().getRangeUpgradeTierName(this.getUpgradeLevel(island),
+                island.getWorld());
+    }
+
+    @Override
+    public String getTierName(int level, World world) {
+        return this.getUpgradesAddon().getUpgradesManager().getRangeUpgradeTierName(level, world);
+    }
+
+    @Override
+    public int getMaxLevel(World world) {
+        return this.getUpgradesAddon().getUpgradesManager().getRangeUpgradeMax(world);
+    }
+
     @Override
     public boolean isShowed(User user, Island island) {
         // Get the addon
@@ -96,80 +136,57 @@ public class RangeUpgrade extends Upgrade {
         if (permissionLevel == 0)
             return true;
 
-        Player player = user.getPlayer();
-        String gamemode = island.getGameMode();
-        String permissionStart = gamemode + ".upgrades." + this.getName() + ".";
-        permissionStart = permissionStart.toLowerCase();
-
-        // For each permission of the player
-        for (PermissionAttachmentInfo perms : player.getEffectivePermissions()) {
-
-            // If permission is the one we search
-            if (!perms.getValue() || !perms.getPermission().startsWith(permissionStart))
-                continue;
-
-            if (perms.getPermission().contains(permissionStart + "*")) {
-                this.logError(player.getName(), perms.getPermission(), "Wildcards are not allowed.");
-                return false;
-            }
-
-            String[] split = perms.getPermission().split("\\.");
-            if (split.length != 4) {
-                logError(player.getName(), perms.getPermission(), "format must be '" + permissionStart + "LEVEL'");
-                return false;
-            }
-
-            if (!NumberUtils.isDigits(split[3])) {
-                logError(player.getName(), perms.getPermission(), "The last part must be a number");
-                return false;
-            }
-
-            if (permissionLevel <= Integer.parseInt(split[3]))
-                return true;
-        }
-
-        return false;
-    }
-
-    private void logError(String name, String perm, String error) {
-        this.getUpgradesAddon()
-        .logError("Player " + name + " has permission: '" + perm + "' but " + error + " Ignoring...");
+        return this.hasPermissionLevel(user, island, permissionLevel);
     }
 
     /**
      * When user do upgrade
      */
     @Override
-    public boolean doUpgrade(User user, Island island) {
-        // Get the new range
-        int newRange = island.getProtectionRange() + this.getUpgradeValues(user).getUpgradeValue();
-
-        // If newRange is more than the authorized range (Config problem)
-        if (newRange > island.getRange()) {
-            this.getUpgradesAddon().logWarning(
-                    "User tried to upgrade their island range over the max. This is probably a configuration problem.");
-            user.sendMessage("upgrades.error.rangeovermax");
-            return false;
-        }
-
-        // if super doUpgrade not worked
-        if (!super.doUpgrade(user, island))
-            return false;
+    protected void addPurchaseSteps(PurchaseTransaction transaction, User user, Island island,
+            UpgradeValues upgradeValues) {
+        String bonusId = this.getUpgradesAddon().getDescription().getName();
+
+        transaction.step(new PurchaseStep() {
+
+            @Override
+            public boolean prepare() {
+                // Get the new range
+                int newRange = island.getProtectionRange() + upgradeValues.getUpgradeValue();
+
+                // If newRange is more than the authorized range (Config problem)
+                if (newRange > island.getRange()) {
+                    getUpgradesAddon().logWarning(
+                            "User tried to upgrade their island range over the max. This is probably a configuration problem.");
+                    sendMessage(user, "upgrades.error.rangeovermax");
+                    return false;
+                }
+                return true;
+            }
 
-        // Save oldRange for rangeChange event
-        int oldRange = island.getProtectionRange();
+            @Override
+            public boolean commit() {
+                // Save oldRange for rangeChange event
+                int oldRange = island.getProtectionRange();
 
-        // Add range bonus
-        island.addBonusRange(this.getUpgradesAddon().getDescription().getName(), this.getUpgradeValues(user).getUpgradeValue(), "");
+                // Add range bonus
+                island.addBonusRange(bonusId, upgradeValues.getUpgradeValue(), "");
 
-        // Launch range change event
-        IslandEvent.builder().island(island).location(island.getCenter()).reason(IslandEvent.Reason.RANGE_CHANGE)
-        .involvedPlayer(user.getUniqueId()).admin(false).protectionRange(island.getProtectionRange(), oldRange).build();
+                // Launch range change event
+                IslandEvent.builder().island(island).location(island.getCenter()).reason(IslandEvent.Reason.RANGE_CHANGE)
+                .involvedPlayer(user.getUniqueId()).admin(false).protectionRange(island.getProtectionRange(), oldRange).build();
+                return true;
+            }
 
-        user.sendMessage("upgrades.ui.upgradepanel.rangeupgradedone", "[rangelevel]",
-                Integer.toString(this.getUpgradeValues(user).getUpgradeValue()));
+            @Override
+            public void compensate() {
+                // Bonus ranges are summed, so a negative one cancels the range added
+                island.addBonusRange(bonusId, -upgradeValues.getUpgradeValue(), "");
+            }
+        });
 
-        return true;
+        transaction.onSuccess(() -> sendMessage(user, "upgrades.ui.upgradepanel.rangeupgradedone", "[rangelevel]",
+                Integer.toString(upgradeValues.getUpgradeValue())));
     }
 
 }
@@ -0,0 +1,164 @@
+package world.bentobox.upgrades.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import world.bentobox.bentobox.api.addons.Addon;
+import world.bentobox.upgrades.config.Settings.CommandUpgradeTier;
+import world.bentobox.upgrades.config.Settings.CompiledSection;
+import world.bentobox.upgrades.config.Settings.UpgradeTier;
+
+/**
+ * Tests of {@link CompiledConfigCache}
+ */
+public class CompiledConfigCacheTest {
+
+	@Before
+	public void setUp() throws IOException {
+		this.addon = mock(Addon.class);
+		this.folder = Files.createTempDirectory("upgrades-cache");
+		this.file = this.folder.resolve("compiled-config.bin");
+		this.cache = new CompiledConfigCache(this.addon, this.file);
+
+		Map<String, UpgradeTier> range = new TreeMap<>();
+		range.put("tier1", new UpgradeTier("tier1", "Tier 1", 5, 0, Settings.parse("1"), Settings.parse("2"),
+				Settings.parse("[level]*100")));
+		range.put("tier2", new UpgradeTier("tier2", "Tier 2", 10, 2, Settings.parse("3"), Settings.parse("4"),
+				Settings.parse("([level]-2)*[numberPlayer]*700")));
+		Map<String, CommandUpgradeTier> command = new TreeMap<>();
+		command.put("tier1", new CommandUpgradeTier("tier1", "Command", 3, 0, Settings.parse("6"),
+				Settings.parse("[level]*[numberPlayer]*500"), true, List.of("say [player] [level]", "give [owner]")));
+		this.sections = new TreeMap<>();
+		this.sections.put("range-upgrade", new CompiledSection("range", range));
+		this.sections.put("command-upgrade.kit", new CompiledSection("command", command));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(this.folder)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	/**
+	 * Test method for {@link CompiledConfigCache#write} then
+	 * {@link CompiledConfigCache#load(String)}
+	 */
+	@Test
+	public void testWriteLoad() {
+		this.cache.write(HASH, this.sections);
+		Map<String, CompiledSection> loaded = this.cache.load(HASH);
+
+		assertEquals(this.sections.keySet(), loaded.keySet());
+		for (Map.Entry<String, CompiledSection> section : this.sections.entrySet()) {
+			CompiledSection read = loaded.get(section.getKey());
+			assertEquals(section.getValue().fingerprint, read.fingerprint);
+			Map<?, ?> tiers = (Map<?, ?>) section.getValue().tiers;
+			Map<?, ?> readTiers = (Map<?, ?>) read.tiers;
+			assertEquals(tiers.keySet(), readTiers.keySet());
+			for (Object id : tiers.keySet())
+				assertSameTier((UpgradeTier) tiers.get(id), (UpgradeTier) readTiers.get(id));
+		}
+		verify(this.addon, never()).logWarning(anyString());
+	}
+
+	/**
+	 * Test method for {@link CompiledConfigCache#load(String)} with a cache
+	 * written for another config
+	 */
+	@Test
+	public void testLoadOtherHash() {
+		this.cache.write(HASH, this.sections);
+		assertTrue(this.cache.load("other").isEmpty());
+	}
+
+	/**
+	 * Test method for {@link CompiledConfigCache#load(String)} without a cache
+	 */
+	@Test
+	public void testLoadMissing() {
+		assertTrue(this.cache.load(HASH).isEmpty());
+		verify(this.addon, never()).logWarning(anyString());
+	}
+
+	/**
+	 * Test method for {@link CompiledConfigCache#load(String)} with a truncated
+	 * cache, the config is compiled instead
+	 */
+	@Test
+	public void testLoadTruncated() throws IOException {
+		this.cache.write(HASH, this.sections);
+		byte[] bytes = Files.readAllBytes(this.file);
+		Files.write(this.file, Arrays.copyOf(bytes, bytes.length / 2));
+
+		assertTrue(this.cache.load(HASH).isEmpty());
+		verify(this.addon).logWarning(anyString());
+	}
+
+	/**
+	 * Test method for {@link CompiledConfigCache#load(String)} with a garbled
+	 * formula program, rejected on load rather than failing at evaluation
+	 */
+	@Test
+	public void testLoadCorrupted() throws IOException {
+		this.cache.write(HASH, this.sections);
+		byte[] bytes = Files.readAllBytes(this.file);
+		// Every count and instruction after the header becomes huge
+		for (int i = bytes.length / 2; i < bytes.length; i++)
+			bytes[i] = (byte) 0x7F;
+		Files.write(this.file, bytes);
+
+		assertTrue(this.cache.load(HASH).isEmpty());
+		verify(this.addon).logWarning(anyString());
+	}
+
+	private static void assertSameTier(UpgradeTier expected, UpgradeTier actual) {
+		assertEquals(expected.getClass(), actual.getClass());
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getTierName(), actual.getTierName());
+		assertEquals(expected.getMaxLevel(), actual.getMaxLevel());
+		assertEquals(expected.getPermissionLevel(), actual.getPermissionLevel());
+		for (double level = 0; level < 12; level++) {
+			assertEquals(expected.calculateUpgrade(level, 40, 3), actual.calculateUpgrade(level, 40, 3), 0);
+			assertEquals(expected.calculateIslandMinLevel(level, 40, 3), actual.calculateIslandMinLevel(level, 40, 3),
+					0);
+			assertEquals(expected.calculateVaultCost(level, 40, 3), actual.calculateVaultCost(level, 40, 3), 0);
+		}
+		if (expected instanceof CommandUpgradeTier) {
+			assertEquals(((CommandUpgradeTier) expected).getConsole(), ((CommandUpgradeTier) actual).getConsole());
+			assertEquals(((CommandUpgradeTier) expected).getCommandList(),
+					((CommandUpgradeTier) actual).getCommandList());
+		}
+	}
+
+	private static final String HASH = "0123456789abcdef";
+
+	private Addon addon;
+
+	private Path folder;
+
+	private Path file;
+
+	private CompiledConfigCache cache;
+
+	private Map<String, CompiledSection> sections;
+
+}
@@ -0,0 +1,111 @@
+package world.bentobox.upgrades.config;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link FormulaProgram}
+ */
+public class FormulaProgramTest {
+
+	/**
+	 * Test method for {@link FormulaProgram#eval(double[])} with the formulas of
+	 * the default config, against the values of the parser it replaced
+	 */
+	@Test
+	public void testDefaultConfigFormulas() {
+		for (Object[] row : DEFAULT_CONFIG_VALUES) {
+			FormulaProgram program = FormulaProgram.compile((String) row[0]);
+			for (int i = 0; i < ARGUMENTS.length; i++)
+				assertEquals(row[0] + " with " + i, (double) row[i + 1], program.eval(ARGUMENTS[i]), 0);
+		}
+	}
+
+	/**
+	 * Test method for {@link FormulaProgram#compile(String)} with unary minus,
+	 * which the previous parser rejected
+	 */
+	@Test
+	public void testUnaryMinus() {
+		assertEquals(-6, FormulaProgram.compile("-[level]*2").eval(ARGUMENTS[1]), 0);
+		assertEquals(-6, FormulaProgram.compile("2*-3").eval(ARGUMENTS[0]), 0);
+		assertEquals(-9, FormulaProgram.compile("-(1+2)^2").eval(ARGUMENTS[0]), 0);
+		assertEquals(1, FormulaProgram.compile("--1").eval(ARGUMENTS[0]), 0);
+		assertEquals(1400, FormulaProgram.compile("-(2-[level])*[numberPlayer]*700").eval(ARGUMENTS[1]), 0);
+	}
+
+	/**
+	 * Test method for {@link FormulaProgram#compile(String)} with spaces around
+	 * the names
+	 */
+	@Test
+	public void testSpaces() {
+		assertEquals(6, FormulaProgram.compile(" [level] * 2 ").eval(ARGUMENTS[1]), 0);
+		assertEquals(8, FormulaProgram.compile("2 ^ [level]").eval(ARGUMENTS[1]), 0);
+		assertEquals(2, FormulaProgram.compile("sqrt [numberPlayer]").eval(ARGUMENTS[2]), 0);
+		assertEquals(-3, FormulaProgram.compile("- [level]").eval(ARGUMENTS[1]), 0);
+	}
+
+	/**
+	 * Test method for {@link FormulaProgram#eval(double[])} with an unknown
+	 * variable, the formula compiles and fails when evaluated
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testUnknownVariable() {
+		FormulaProgram program = FormulaProgram.compile("[unknown]+1");
+		program.eval(ARGUMENTS[0]);
+	}
+
+	/**
+	 * Test method for {@link FormulaProgram#compile(String)} with a syntax error
+	 */
+	@Test(expected = RuntimeException.class)
+	public void testSyntaxError() {
+		FormulaProgram.compile("[level]*)");
+	}
+
+	/**
+	 * Test method for {@link FormulaProgram#write} and
+	 * {@link FormulaProgram#read(ByteBuffer)}
+	 */
+	@Test
+	public void testWriteRead() throws IOException {
+		FormulaProgram program = FormulaProgram.compile("([level]-2)*[numberPlayer]*700 + sqrt [islandLevel]");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		program.write(new DataOutputStream(bytes));
+
+		FormulaProgram read = FormulaProgram.read(ByteBuffer.wrap(bytes.toByteArray()));
+		assertEquals(program.getSource(), read.getSource());
+		for (double[] arguments : ARGUMENTS)
+			assertEquals(program.eval(arguments), read.eval(arguments), 0);
+	}
+
+	/**
+	 * [level], [islandLevel] and [numberPlayer] of each evaluation
+	 */
+	private static final double[][] ARGUMENTS = { { 1, 0, 1 }, { 3, 12, 2 }, { 10, 250.5, 4 } };
+
+	/**
+	 * Formulas of the default config, with the value of the previous parser for
+	 * each of the arguments
+	 */
+	private static final Object[][] DEFAULT_CONFIG_VALUES = {
+			{ "1", 1.0, 1.0, 1.0 },
+			{ "2", 2.0, 2.0, 2.0 },
+			{ "3", 3.0, 3.0, 3.0 },
+			{ "4", 4.0, 4.0, 4.0 },
+			{ "5", 5.0, 5.0, 5.0 },
+			{ "6", 6.0, 6.0, 6.0 },
+			{ "[level]*100", 100.0, 300.0, 1000.0 },
+			{ "[level]*200", 200.0, 600.0, 2000.0 },
+			{ "[level]*[numberPlayer]*200", 200.0, 1200.0, 8000.0 },
+			{ "[level]*[numberPlayer]*500", 500.0, 3000.0, 20000.0 },
+			{ "([level]-2)*[numberPlayer]*700", -700.0, 1400.0, 22400.0 } };
+
+}